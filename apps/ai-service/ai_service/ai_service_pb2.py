@@ -25,7 +25,7 @@ _sym_db = _symbol_database.Default()
 from google.protobuf import timestamp_pb2 as google_dot_protobuf_dot_timestamp__pb2
 
 
-DESCRIPTOR = _descriptor_pool.Default().AddSerializedFile(b'\n\x10\x61i_service.proto\x12\x0e\x65\x64unexus.ai.v1\x1a\x1fgoogle/protobuf/timestamp.proto\"\xb8\x03\n\x0b\x43hatRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x12\n\nsession_id\x18\x02 \x01(\t\x12\x12\n\nstudent_id\x18\x03 \x01(\t\x12?\n\rteacher_scope\x18\x04 \x01(\x0b\x32(.edunexus.ai.v1.ChatRequest.TeacherScope\x12\x0f\n\x07message\x18\x05 \x01(\t\x12\x0e\n\x06stream\x18\x06 \x01(\x08\x12\x34\n\x07\x63ontext\x18\x07 \x01(\x0b\x32#.edunexus.ai.v1.ChatRequest.Context\x1a\x34\n\x0cTeacherScope\x12\x12\n\nteacher_id\x18\x01 \x01(\t\x12\x10\n\x08\x63lass_id\x18\x02 \x01(\t\x1a\xa0\x01\n\x07\x43ontext\x12<\n\x07history\x18\x01 \x03(\x0b\x32+.edunexus.ai.v1.ChatRequest.Context.Message\x1aW\n\x07Message\x12\x0c\n\x04role\x18\x01 \x01(\t\x12\x0f\n\x07\x63ontent\x18\x02 \x01(\t\x12-\n\ttimestamp\x18\x03 \x01(\x0b\x32\x1a.google.protobuf.Timestamp\"f\n\x08\x43itation\x12\x13\n\x0b\x64ocument_id\x18\x01 \x01(\t\x12\x10\n\x08\x66ilename\x18\x02 \x01(\t\x12\x13\n\x0b\x63hunk_index\x18\x03 \x01(\x05\x12\x0f\n\x07\x63ontent\x18\x04 \x01(\t\x12\r\n\x05score\x18\x05 \x01(\x02\"\xf0\x01\n\x0c\x43hatResponse\x12\x0e\n\x06\x61nswer\x18\x01 \x01(\t\x12+\n\tcitations\x18\x02 \x03(\x0b\x32\x18.edunexus.ai.v1.Citation\x12\x10\n\x08provider\x18\x03 \x01(\t\x12\r\n\x05model\x18\x04 \x01(\t\x12<\n\x0btoken_usage\x18\x05 \x01(\x0b\x32\'.edunexus.ai.v1.ChatResponse.TokenUsage\x12\x12\n\nlatency_ms\x18\x06 \x01(\x05\x1a\x30\n\nTokenUsage\x12\x0e\n\x06prompt\x18\x01 \x01(\x05\x12\x12\n\ncompletion\x18\x02 \x01(\x05\"P\n\x12\x43hatStreamResponse\x12\r\n\x05\x64\x65lta\x18\x01 \x01(\t\x12+\n\tcitations\x18\x02 \x03(\x0b\x32\x18.edunexus.ai.v1.Citation\"\xb9\x01\n\x17\x45xerciseAnalysisRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x10\n\x08question\x18\x03 \x01(\t\x12\x13\n\x0buser_answer\x18\x04 \x01(\t\x12\x16\n\x0e\x63orrect_answer\x18\x05 \x01(\t\x12\x18\n\x10knowledge_points\x18\x06 \x03(\t\x12\x1a\n\x12teacher_suggestion\x18\x07 \x01(\t\"x\n\x18\x45xerciseAnalysisResponse\x12\x11\n\tencourage\x18\x01 \x01(\t\x12\x0f\n\x07\x63oncept\x18\x02 \x01(\t\x12\r\n\x05steps\x18\x03 \x03(\t\x12\x12\n\nroot_cause\x18\x04 \x01(\t\x12\x15\n\rnext_practice\x18\x05 \x01(\t\"\xdb\x01\n\x19\x41iQuestionGenerateRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x12\n\nstudent_id\x18\x03 \x01(\t\x12\r\n\x05\x63ount\x18\x04 \x01(\x05\x12\x0f\n\x07subject\x18\x05 \x01(\t\x12\x12\n\ndifficulty\x18\x06 \x01(\t\x12\x14\n\x0c\x63oncept_tags\x18\x07 \x03(\t\x12\x18\n\x10weakness_profile\x18\x08 \x01(\t\x12\x1b\n\x13teacher_suggestions\x18\t \x01(\t\"\xf3\x01\n\x11GeneratedQuestion\x12\x15\n\rquestion_type\x18\x01 \x01(\t\x12\x0f\n\x07\x63ontent\x18\x02 \x01(\t\x12?\n\x07options\x18\x03 \x03(\x0b\x32..edunexus.ai.v1.GeneratedQuestion.OptionsEntry\x12\x16\n\x0e\x63orrect_answer\x18\x04 \x01(\t\x12\x13\n\x0b\x65xplanation\x18\x05 \x01(\t\x12\x18\n\x10knowledge_points\x18\x06 \x03(\t\x1a.\n\x0cOptionsEntry\x12\x0b\n\x03key\x18\x01 \x01(\t\x12\r\n\x05value\x18\x02 \x01(\t:\x02\x38\x01\"k\n\x1a\x41iQuestionGenerateResponse\x12\x34\n\tquestions\x18\x01 \x03(\x0b\x32!.edunexus.ai.v1.GeneratedQuestion\x12\x17\n\x0frouter_decision\x18\x02 \x01(\t\"\x95\x01\n\x19LessonPlanGenerateRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\r\n\x05topic\x18\x03 \x01(\t\x12\x13\n\x0bgrade_level\x18\x04 \x01(\t\x12\x15\n\rduration_mins\x18\x05 \x01(\x05\x12\x12\n\nteacher_id\x18\x06 \x01(\t\"e\n\x1aLessonPlanGenerateResponse\x12\x12\n\ncontent_md\x18\x01 \x01(\t\x12\x10\n\x08provider\x18\x02 \x01(\t\x12\r\n\x05model\x18\x03 \x01(\t\x12\x12\n\nlatency_ms\x18\x04 \x01(\x05\"\xc2\x01\n\x0fKbIngestRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x0e\n\x06job_id\x18\x03 \x01(\t\x12\x13\n\x0b\x64ocument_id\x18\x04 \x01(\t\x12\x12\n\nteacher_id\x18\x05 \x01(\t\x12\x10\n\x08\x63lass_id\x18\x06 \x01(\t\x12\x10\n\x08\x66ilename\x18\x07 \x01(\t\x12\x11\n\tfile_type\x18\x08 \x01(\t\x12\x14\n\x0c\x66ile_content\x18\t \x01(\x0c\"V\n\x10KbIngestResponse\x12\x0e\n\x06status\x18\x01 \x01(\t\x12\x0e\n\x06job_id\x18\x02 \x01(\t\x12\x12\n\nbackground\x18\x03 \x01(\x08\x12\x0e\n\x06\x63hunks\x18\x04 \x01(\x05\"Q\n\x0fKbDeleteRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x13\n\x0b\x64ocument_id\x18\x03 \x01(\t\"\"\n\x10KbDeleteResponse\x12\x0e\n\x06status\x18\x01 \x01(\t2\xa4\x01\n\x0eRagChatService\x12\x41\n\x04\x43hat\x12\x1b.edunexus.ai.v1.ChatRequest\x1a\x1c.edunexus.ai.v1.ChatResponse\x12O\n\nChatStream\x12\x1b.edunexus.ai.v1.ChatRequest\x1a\".edunexus.ai.v1.ChatStreamResponse0\x01\x32w\n\x17\x45xerciseAnalysisService\x12\\\n\x07\x41nalyze\x12\'.edunexus.ai.v1.ExerciseAnalysisRequest\x1a(.edunexus.ai.v1.ExerciseAnalysisResponse2v\n\x11\x41iQuestionService\x12\x61\n\x08Generate\x12).edunexus.ai.v1.AiQuestionGenerateRequest\x1a*.edunexus.ai.v1.AiQuestionGenerateResponse2v\n\x11LessonPlanService\x12\x61\n\x08Generate\x12).edunexus.ai.v1.LessonPlanGenerateRequest\x1a*.edunexus.ai.v1.LessonPlanGenerateResponse2\xb0\x01\n\x14KnowledgeBaseService\x12K\n\x06Ingest\x12\x1f.edunexus.ai.v1.KbIngestRequest\x1a .edunexus.ai.v1.KbIngestResponse\x12K\n\x06\x44\x65lete\x12\x1f.edunexus.ai.v1.KbDeleteRequest\x1a .edunexus.ai.v1.KbDeleteResponseB/\n\x1b\x63om.edunexus.api.grpc.ai.v1B\x0e\x41iServiceProtoP\x01\x62\x06proto3')
+DESCRIPTOR = _descriptor_pool.Default().AddSerializedFile(b'\n\x10\x61i_service.proto\x12\x0e\x65\x64unexus.ai.v1\x1a\x1fgoogle/protobuf/timestamp.proto\"\xb8\x03\n\x0b\x43hatRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x12\n\nsession_id\x18\x02 \x01(\t\x12\x12\n\nstudent_id\x18\x03 \x01(\t\x12?\n\rteacher_scope\x18\x04 \x01(\x0b\x32(.edunexus.ai.v1.ChatRequest.TeacherScope\x12\x0f\n\x07message\x18\x05 \x01(\t\x12\x0e\n\x06stream\x18\x06 \x01(\x08\x12\x34\n\x07\x63ontext\x18\x07 \x01(\x0b\x32#.edunexus.ai.v1.ChatRequest.Context\x1a\x34\n\x0cTeacherScope\x12\x12\n\nteacher_id\x18\x01 \x01(\t\x12\x10\n\x08\x63lass_id\x18\x02 \x01(\t\x1a\xa0\x01\n\x07\x43ontext\x12<\n\x07history\x18\x01 \x03(\x0b\x32+.edunexus.ai.v1.ChatRequest.Context.Message\x1aW\n\x07Message\x12\x0c\n\x04role\x18\x01 \x01(\t\x12\x0f\n\x07\x63ontent\x18\x02 \x01(\t\x12-\n\ttimestamp\x18\x03 \x01(\x0b\x32\x1a.google.protobuf.Timestamp\"f\n\x08\x43itation\x12\x13\n\x0b\x64ocument_id\x18\x01 \x01(\t\x12\x10\n\x08\x66ilename\x18\x02 \x01(\t\x12\x13\n\x0b\x63hunk_index\x18\x03 \x01(\x05\x12\x0f\n\x07\x63ontent\x18\x04 \x01(\t\x12\r\n\x05score\x18\x05 \x01(\x02\"\xf0\x01\n\x0c\x43hatResponse\x12\x0e\n\x06\x61nswer\x18\x01 \x01(\t\x12+\n\tcitations\x18\x02 \x03(\x0b\x32\x18.edunexus.ai.v1.Citation\x12\x10\n\x08provider\x18\x03 \x01(\t\x12\r\n\x05model\x18\x04 \x01(\t\x12<\n\x0btoken_usage\x18\x05 \x01(\x0b\x32\'.edunexus.ai.v1.ChatResponse.TokenUsage\x12\x12\n\nlatency_ms\x18\x06 \x01(\x05\x1a\x30\n\nTokenUsage\x12\x0e\n\x06prompt\x18\x01 \x01(\x05\x12\x12\n\ncompletion\x18\x02 \x01(\x05\"P\n\x12\x43hatStreamResponse\x12\r\n\x05\x64\x65lta\x18\x01 \x01(\t\x12+\n\tcitations\x18\x02 \x03(\x0b\x32\x18.edunexus.ai.v1.Citation\"\xb9\x01\n\x17\x45xerciseAnalysisRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x10\n\x08question\x18\x03 \x01(\t\x12\x13\n\x0buser_answer\x18\x04 \x01(\t\x12\x16\n\x0e\x63orrect_answer\x18\x05 \x01(\t\x12\x18\n\x10knowledge_points\x18\x06 \x03(\t\x12\x1a\n\x12teacher_suggestion\x18\x07 \x01(\t\"x\n\x18\x45xerciseAnalysisResponse\x12\x11\n\tencourage\x18\x01 \x01(\t\x12\x0f\n\x07\x63oncept\x18\x02 \x01(\t\x12\r\n\x05steps\x18\x03 \x03(\t\x12\x12\n\nroot_cause\x18\x04 \x01(\t\x12\x15\n\rnext_practice\x18\x05 \x01(\t\"\xdb\x01\n\x19\x41iQuestionGenerateRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x12\n\nstudent_id\x18\x03 \x01(\t\x12\r\n\x05\x63ount\x18\x04 \x01(\x05\x12\x0f\n\x07subject\x18\x05 \x01(\t\x12\x12\n\ndifficulty\x18\x06 \x01(\t\x12\x14\n\x0c\x63oncept_tags\x18\x07 \x03(\t\x12\x18\n\x10weakness_profile\x18\x08 \x01(\t\x12\x1b\n\x13teacher_suggestions\x18\t \x01(\t\"\xf3\x01\n\x11GeneratedQuestion\x12\x15\n\rquestion_type\x18\x01 \x01(\t\x12\x0f\n\x07\x63ontent\x18\x02 \x01(\t\x12?\n\x07options\x18\x03 \x03(\x0b\x32..edunexus.ai.v1.GeneratedQuestion.OptionsEntry\x12\x16\n\x0e\x63orrect_answer\x18\x04 \x01(\t\x12\x13\n\x0b\x65xplanation\x18\x05 \x01(\t\x12\x18\n\x10knowledge_points\x18\x06 \x03(\t\x1a.\n\x0cOptionsEntry\x12\x0b\n\x03key\x18\x01 \x01(\t\x12\r\n\x05value\x18\x02 \x01(\t:\x02\x38\x01\"k\n\x1a\x41iQuestionGenerateResponse\x12\x34\n\tquestions\x18\x01 \x03(\x0b\x32!.edunexus.ai.v1.GeneratedQuestion\x12\x17\n\x0frouter_decision\x18\x02 \x01(\t\"\x95\x01\n\x19LessonPlanGenerateRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\r\n\x05topic\x18\x03 \x01(\t\x12\x13\n\x0bgrade_level\x18\x04 \x01(\t\x12\x15\n\rduration_mins\x18\x05 \x01(\x05\x12\x12\n\nteacher_id\x18\x06 \x01(\t\"e\n\x1aLessonPlanGenerateResponse\x12\x12\n\ncontent_md\x18\x01 \x01(\t\x12\x10\n\x08provider\x18\x02 \x01(\t\x12\r\n\x05model\x18\x03 \x01(\t\x12\x12\n\nlatency_ms\x18\x04 \x01(\x05\"\xc2\x01\n\x0fKbIngestRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x0e\n\x06job_id\x18\x03 \x01(\t\x12\x13\n\x0b\x64ocument_id\x18\x04 \x01(\t\x12\x12\n\nteacher_id\x18\x05 \x01(\t\x12\x10\n\x08\x63lass_id\x18\x06 \x01(\t\x12\x10\n\x08\x66ilename\x18\x07 \x01(\t\x12\x11\n\tfile_type\x18\x08 \x01(\t\x12\x14\n\x0c\x66ile_content\x18\t \x01(\x0c\"\xbe\x01\n\x0eKbIngestHeader\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x0e\n\x06job_id\x18\x03 \x01(\t\x12\x13\n\x0b\x64ocument_id\x18\x04 \x01(\t\x12\x12\n\nteacher_id\x18\x05 \x01(\t\x12\x10\n\x08\x63lass_id\x18\x06 \x01(\t\x12\x10\n\x08\x66ilename\x18\x07 \x01(\t\x12\x11\n\tfile_type\x18\x08 \x01(\t\x12\x11\n\tfile_size\x18\t \x01(\x03\"\\\n\rKbIngestChunk\x12\x30\n\x06header\x18\x01 \x01(\x0b\x32\x1e.edunexus.ai.v1.KbIngestHeaderH\x00\x12\x0e\n\x04\x64\x61ta\x18\x02 \x01(\x0cH\x00\x42\t\n\x07payload\"V\n\x10KbIngestResponse\x12\x0e\n\x06status\x18\x01 \x01(\t\x12\x0e\n\x06job_id\x18\x02 \x01(\t\x12\x12\n\nbackground\x18\x03 \x01(\x08\x12\x0e\n\x06\x63hunks\x18\x04 \x01(\x05\"Q\n\x0fKbDeleteRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x13\n\x0b\x64ocument_id\x18\x03 \x01(\t\"\"\n\x10KbDeleteResponse\x12\x0e\n\x06status\x18\x01 \x01(\t\"W\n\x14KbDeleteBatchRequest\x12\x10\n\x08trace_id\x18\x01 \x01(\t\x12\x17\n\x0fidempotency_key\x18\x02 \x01(\t\x12\x14\n\x0c\x64ocument_ids\x18\x03 \x03(\t\"\x9c\x01\n\x15KbDeleteBatchResponse\x12=\n\x07results\x18\x01 \x03(\x0b\x32,.edunexus.ai.v1.KbDeleteBatchResponse.Result\x1a\x44\n\x06Result\x12\x13\n\x0b\x64ocument_id\x18\x01 \x01(\t\x12\x0e\n\x06status\x18\x02 \x01(\t\x12\x15\n\rerror_message\x18\x03 \x01(\t2\xa4\x01\n\x0eRagChatService\x12\x41\n\x04\x43hat\x12\x1b.edunexus.ai.v1.ChatRequest\x1a\x1c.edunexus.ai.v1.ChatResponse\x12O\n\nChatStream\x12\x1b.edunexus.ai.v1.ChatRequest\x1a\".edunexus.ai.v1.ChatStreamResponse0\x01\x32w\n\x17\x45xerciseAnalysisService\x12\\\n\x07\x41nalyze\x12\'.edunexus.ai.v1.ExerciseAnalysisRequest\x1a(.edunexus.ai.v1.ExerciseAnalysisResponse2v\n\x11\x41iQuestionService\x12\x61\n\x08Generate\x12).edunexus.ai.v1.AiQuestionGenerateRequest\x1a*.edunexus.ai.v1.AiQuestionGenerateResponse2v\n\x11LessonPlanService\x12\x61\n\x08Generate\x12).edunexus.ai.v1.LessonPlanGenerateRequest\x1a*.edunexus.ai.v1.LessonPlanGenerateResponse2\xdf\x02\n\x14KnowledgeBaseService\x12K\n\x06Ingest\x12\x1f.edunexus.ai.v1.KbIngestRequest\x1a .edunexus.ai.v1.KbIngestResponse\x12Q\n\x0cIngestStream\x12\x1d.edunexus.ai.v1.KbIngestChunk\x1a .edunexus.ai.v1.KbIngestResponse(\x01\x12K\n\x06\x44\x65lete\x12\x1f.edunexus.ai.v1.KbDeleteRequest\x1a .edunexus.ai.v1.KbDeleteResponse\x12Z\n\x0b\x44\x65leteBatch\x12$.edunexus.ai.v1.KbDeleteBatchRequest\x1a%.edunexus.ai.v1.KbDeleteBatchResponseB/\n\x1b\x63om.edunexus.api.grpc.ai.v1B\x0e\x41iServiceProtoP\x01\x62\x06proto3')
 
 _globals = globals()
 _builder.BuildMessageAndEnumDescriptors(DESCRIPTOR, _globals)
@@ -69,20 +69,30 @@ if not _descriptor._USE_C_DESCRIPTORS:
   _globals['_LESSONPLANGENERATERESPONSE']._serialized_end=2081
   _globals['_KBINGESTREQUEST']._serialized_start=2084
   _globals['_KBINGESTREQUEST']._serialized_end=2278
-  _globals['_KBINGESTRESPONSE']._serialized_start=2280
-  _globals['_KBINGESTRESPONSE']._serialized_end=2366
-  _globals['_KBDELETEREQUEST']._serialized_start=2368
-  _globals['_KBDELETEREQUEST']._serialized_end=2449
-  _globals['_KBDELETERESPONSE']._serialized_start=2451
-  _globals['_KBDELETERESPONSE']._serialized_end=2485
-  _globals['_RAGCHATSERVICE']._serialized_start=2488
-  _globals['_RAGCHATSERVICE']._serialized_end=2652
-  _globals['_EXERCISEANALYSISSERVICE']._serialized_start=2654
-  _globals['_EXERCISEANALYSISSERVICE']._serialized_end=2773
-  _globals['_AIQUESTIONSERVICE']._serialized_start=2775
-  _globals['_AIQUESTIONSERVICE']._serialized_end=2893
-  _globals['_LESSONPLANSERVICE']._serialized_start=2895
-  _globals['_LESSONPLANSERVICE']._serialized_end=3013
-  _globals['_KNOWLEDGEBASESERVICE']._serialized_start=3016
-  _globals['_KNOWLEDGEBASESERVICE']._serialized_end=3192
+  _globals['_KBINGESTHEADER']._serialized_start=2281
+  _globals['_KBINGESTHEADER']._serialized_end=2471
+  _globals['_KBINGESTCHUNK']._serialized_start=2473
+  _globals['_KBINGESTCHUNK']._serialized_end=2565
+  _globals['_KBINGESTRESPONSE']._serialized_start=2567
+  _globals['_KBINGESTRESPONSE']._serialized_end=2653
+  _globals['_KBDELETEREQUEST']._serialized_start=2655
+  _globals['_KBDELETEREQUEST']._serialized_end=2736
+  _globals['_KBDELETERESPONSE']._serialized_start=2738
+  _globals['_KBDELETERESPONSE']._serialized_end=2772
+  _globals['_KBDELETEBATCHREQUEST']._serialized_start=2774
+  _globals['_KBDELETEBATCHREQUEST']._serialized_end=2861
+  _globals['_KBDELETEBATCHRESPONSE']._serialized_start=2864
+  _globals['_KBDELETEBATCHRESPONSE']._serialized_end=3020
+  _globals['_KBDELETEBATCHRESPONSE_RESULT']._serialized_start=2952
+  _globals['_KBDELETEBATCHRESPONSE_RESULT']._serialized_end=3020
+  _globals['_RAGCHATSERVICE']._serialized_start=3023
+  _globals['_RAGCHATSERVICE']._serialized_end=3187
+  _globals['_EXERCISEANALYSISSERVICE']._serialized_start=3189
+  _globals['_EXERCISEANALYSISSERVICE']._serialized_end=3308
+  _globals['_AIQUESTIONSERVICE']._serialized_start=3310
+  _globals['_AIQUESTIONSERVICE']._serialized_end=3428
+  _globals['_LESSONPLANSERVICE']._serialized_start=3430
+  _globals['_LESSONPLANSERVICE']._serialized_end=3548
+  _globals['_KNOWLEDGEBASESERVICE']._serialized_start=3551
+  _globals['_KNOWLEDGEBASESERVICE']._serialized_end=3902
 # @@protoc_insertion_point(module_scope)
@@ -228,6 +228,36 @@ class KbIngestRequest(_message.Message):
     file_content: bytes
     def __init__(self, trace_id: _Optional[str] = ..., idempotency_key: _Optional[str] = ..., job_id: _Optional[str] = ..., document_id: _Optional[str] = ..., teacher_id: _Optional[str] = ..., class_id: _Optional[str] = ..., filename: _Optional[str] = ..., file_type: _Optional[str] = ..., file_content: _Optional[bytes] = ...) -> None: ...
 
+class KbIngestHeader(_message.Message):
+    __slots__ = ("trace_id", "idempotency_key", "job_id", "document_id", "teacher_id", "class_id", "filename", "file_type", "file_size")
+    TRACE_ID_FIELD_NUMBER: _ClassVar[int]
+    IDEMPOTENCY_KEY_FIELD_NUMBER: _ClassVar[int]
+    JOB_ID_FIELD_NUMBER: _ClassVar[int]
+    DOCUMENT_ID_FIELD_NUMBER: _ClassVar[int]
+    TEACHER_ID_FIELD_NUMBER: _ClassVar[int]
+    CLASS_ID_FIELD_NUMBER: _ClassVar[int]
+    FILENAME_FIELD_NUMBER: _ClassVar[int]
+    FILE_TYPE_FIELD_NUMBER: _ClassVar[int]
+    FILE_SIZE_FIELD_NUMBER: _ClassVar[int]
+    trace_id: str
+    idempotency_key: str
+    job_id: str
+    document_id: str
+    teacher_id: str
+    class_id: str
+    filename: str
+    file_type: str
+    file_size: int
+    def __init__(self, trace_id: _Optional[str] = ..., idempotency_key: _Optional[str] = ..., job_id: _Optional[str] = ..., document_id: _Optional[str] = ..., teacher_id: _Optional[str] = ..., class_id: _Optional[str] = ..., filename: _Optional[str] = ..., file_type: _Optional[str] = ..., file_size: _Optional[int] = ...) -> None: ...
+
+class KbIngestChunk(_message.Message):
+    __slots__ = ("header", "data")
+    HEADER_FIELD_NUMBER: _ClassVar[int]
+    DATA_FIELD_NUMBER: _ClassVar[int]
+    header: KbIngestHeader
+    data: bytes
+    def __init__(self, header: _Optional[_Union[KbIngestHeader, _Mapping]] = ..., data: _Optional[bytes] = ...) -> None: ...
+
 class KbIngestResponse(_message.Message):
     __slots__ = ("status", "job_id", "background", "chunks")
     STATUS_FIELD_NUMBER: _ClassVar[int]
@@ -255,3 +285,28 @@ class KbDeleteResponse(_message.Message):
     STATUS_FIELD_NUMBER: _ClassVar[int]
     status: str
     def __init__(self, status: _Optional[str] = ...) -> None: ...
+
+class KbDeleteBatchRequest(_message.Message):
+    __slots__ = ("trace_id", "idempotency_key", "document_ids")
+    TRACE_ID_FIELD_NUMBER: _ClassVar[int]
+    IDEMPOTENCY_KEY_FIELD_NUMBER: _ClassVar[int]
+    DOCUMENT_IDS_FIELD_NUMBER: _ClassVar[int]
+    trace_id: str
+    idempotency_key: str
+    document_ids: _containers.RepeatedScalarFieldContainer[str]
+    def __init__(self, trace_id: _Optional[str] = ..., idempotency_key: _Optional[str] = ..., document_ids: _Optional[_Iterable[str]] = ...) -> None: ...
+
+class KbDeleteBatchResponse(_message.Message):
+    __slots__ = ("results",)
+    class Result(_message.Message):
+        __slots__ = ("document_id", "status", "error_message")
+        DOCUMENT_ID_FIELD_NUMBER: _ClassVar[int]
+        STATUS_FIELD_NUMBER: _ClassVar[int]
+        ERROR_MESSAGE_FIELD_NUMBER: _ClassVar[int]
+        document_id: str
+        status: str
+        error_message: str
+        def __init__(self, document_id: _Optional[str] = ..., status: _Optional[str] = ..., error_message: _Optional[str] = ...) -> None: ...
+    RESULTS_FIELD_NUMBER: _ClassVar[int]
+    results: _containers.RepeatedCompositeFieldContainer[KbDeleteBatchResponse.Result]
+    def __init__(self, results: _Optional[_Iterable[_Union[KbDeleteBatchResponse.Result, _Mapping]]] = ...) -> None: ...
@@ -446,12 +446,24 @@ class KnowledgeBaseServiceStub(object):
             response_deserializer=ai__service__pb2.KbIngestResponse.FromString,
             _registered_method=True,
         )
+        self.IngestStream = channel.stream_unary(
+            "/edunexus.ai.v1.KnowledgeBaseService/IngestStream",
+            request_serializer=ai__service__pb2.KbIngestChunk.SerializeToString,
+            response_deserializer=ai__service__pb2.KbIngestResponse.FromString,
+            _registered_method=True,
+        )
         self.Delete = channel.unary_unary(
             "/edunexus.ai.v1.KnowledgeBaseService/Delete",
             request_serializer=ai__service__pb2.KbDeleteRequest.SerializeToString,
             response_deserializer=ai__service__pb2.KbDeleteResponse.FromString,
             _registered_method=True,
         )
+        self.DeleteBatch = channel.unary_unary(
+            "/edunexus.ai.v1.KnowledgeBaseService/DeleteBatch",
+            request_serializer=ai__service__pb2.KbDeleteBatchRequest.SerializeToString,
+            response_deserializer=ai__service__pb2.KbDeleteBatchResponse.FromString,
+            _registered_method=True,
+        )
 
 
 class KnowledgeBaseServiceServicer(object):
@@ -466,12 +478,24 @@ class KnowledgeBaseServiceServicer(object):
         context.set_details("Method not implemented!")
         raise NotImplementedError("Method not implemented!")
 
+    def IngestStream(self, request_iterator, context):
+        """大文件分块上传：首帧为 header，其后为定长 data 分块，避免整文件进入单条消息"""
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details("Method not implemented!")
+        raise NotImplementedError("Method not implemented!")
+
     def Delete(self, request, context):
         """Missing associated documentation comment in .proto file."""
         context.set_code(grpc.StatusCode.UNIMPLEMENTED)
         context.set_details("Method not implemented!")
         raise NotImplementedError("Method not implemented!")
 
+    def DeleteBatch(self, request, context):
+        """批量删除：一次调用删除多个文档的向量，按文档返回各自结果"""
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details("Method not implemented!")
+        raise NotImplementedError("Method not implemented!")
+
 
 def add_KnowledgeBaseServiceServicer_to_server(servicer, server):
     rpc_method_handlers = {
@@ -480,11 +504,21 @@ def add_KnowledgeBaseServiceServicer_to_server(servicer, server):
             request_deserializer=ai__service__pb2.KbIngestRequest.FromString,
             response_serializer=ai__service__pb2.KbIngestResponse.SerializeToString,
         ),
+        "IngestStream": grpc.stream_unary_rpc_method_handler(
+            servicer.IngestStream,
+            request_deserializer=ai__service__pb2.KbIngestChunk.FromString,
+            response_serializer=ai__service__pb2.KbIngestResponse.SerializeToString,
+        ),
         "Delete": grpc.unary_unary_rpc_method_handler(
             servicer.Delete,
             request_deserializer=ai__service__pb2.KbDeleteRequest.FromString,
             response_serializer=ai__service__pb2.KbDeleteResponse.SerializeToString,
         ),
+        "DeleteBatch": grpc.unary_unary_rpc_method_handler(
+            servicer.DeleteBatch,
+            request_deserializer=ai__service__pb2.KbDeleteBatchRequest.FromString,
+            response_serializer=ai__service__pb2.KbDeleteBatchResponse.SerializeToString,
+        ),
     }
     generic_handler = grpc.method_handlers_generic_handler(
         "edunexus.ai.v1.KnowledgeBaseService", rpc_method_handlers
@@ -532,6 +566,36 @@ class KnowledgeBaseService(object):
             _registered_method=True,
         )
 
+    @staticmethod
+    def IngestStream(
+        request_iterator,
+        target,
+        options=(),
+        channel_credentials=None,
+        call_credentials=None,
+        insecure=False,
+        compression=None,
+        wait_for_ready=None,
+        timeout=None,
+        metadata=None,
+    ):
+        return grpc.experimental.stream_unary(
+            request_iterator,
+            target,
+            "/edunexus.ai.v1.KnowledgeBaseService/IngestStream",
+            ai__service__pb2.KbIngestChunk.SerializeToString,
+            ai__service__pb2.KbIngestResponse.FromString,
+            options,
+            channel_credentials,
+            insecure,
+            call_credentials,
+            compression,
+            wait_for_ready,
+            timeout,
+            metadata,
+            _registered_method=True,
+        )
+
     @staticmethod
     def Delete(
         request,
@@ -561,3 +625,33 @@ class KnowledgeBaseService(object):
             metadata,
             _registered_method=True,
         )
+
+    @staticmethod
+    def DeleteBatch(
+        request,
+        target,
+        options=(),
+        channel_credentials=None,
+        call_credentials=None,
+        insecure=False,
+        compression=None,
+        wait_for_ready=None,
+        timeout=None,
+        metadata=None,
+    ):
+        return grpc.experimental.unary_unary(
+            request,
+            target,
+            "/edunexus.ai.v1.KnowledgeBaseService/DeleteBatch",
+            ai__service__pb2.KbDeleteBatchRequest.SerializeToString,
+            ai__service__pb2.KbDeleteBatchResponse.FromString,
+            options,
+            channel_credentials,
+            insecure,
+            call_credentials,
+            compression,
+            wait_for_ready,
+            timeout,
+            metadata,
+            _registered_method=True,
+        )
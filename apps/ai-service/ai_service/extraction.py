@@ -3,6 +3,7 @@ from __future__ import annotations
 import logging
 from io import BytesIO
 from pathlib import Path
+from typing import BinaryIO
 
 from docx import Document as DocxDocument
 from pypdf import PdfReader
@@ -21,12 +22,16 @@ def extract_text(file_path: str) -> str:
 
 
 def extract_text_from_bytes(filename: str, file_content: bytes) -> str:
+    return extract_text_from_file(filename, BytesIO(file_content))
+
+
+def extract_text_from_file(filename: str, source: BinaryIO) -> str:
     suffix = Path(filename).suffix.lower()
     if suffix == ".pdf":
-        return extract_pdf_bytes(file_content)
+        return _extract_pdf_file(source)
     if suffix in {".docx", ".doc"}:
-        return extract_docx_bytes(file_content)
-    return file_content.decode("utf-8", errors="ignore")
+        return _extract_docx_file(source)
+    return source.read().decode("utf-8", errors="ignore")
 
 
 def extract_pdf(path: Path) -> str:
@@ -38,8 +43,12 @@ def extract_pdf(path: Path) -> str:
 
 
 def extract_pdf_bytes(file_content: bytes) -> str:
+    return _extract_pdf_file(BytesIO(file_content))
+
+
+def _extract_pdf_file(source: BinaryIO) -> str:
     try:
-        reader = PdfReader(BytesIO(file_content))
+        reader = PdfReader(source)
         return "\n".join((page.extract_text() or "") for page in reader.pages)
     except Exception as ex:
         logger.error("Failed to extract pdf bytes: %s", ex, exc_info=True)
@@ -55,8 +64,12 @@ def extract_docx(path: Path) -> str:
 
 
 def extract_docx_bytes(file_content: bytes) -> str:
+    return _extract_docx_file(BytesIO(file_content))
+
+
+def _extract_docx_file(source: BinaryIO) -> str:
     try:
-        document = DocxDocument(BytesIO(file_content))
+        document = DocxDocument(source)
         return "\n".join(row.text for row in document.paragraphs if row.text)
     except Exception as ex:
         logger.error("Failed to extract docx bytes: %s", ex, exc_info=True)
@@ -34,7 +34,14 @@ async def serve_grpc(
     idempotency_store: IdempotencyStore,
     settings: Settings,
 ) -> None:
-    server = grpc.aio.server()
+    server = grpc.aio.server(
+        options=[
+            # Accept the API's keepalive pings, including on idle pooled channels.
+            ("grpc.keepalive_permit_without_calls", 1),
+            ("grpc.http2.min_ping_interval_without_data_ms", 10_000),
+            ("grpc.http2.max_pings_without_data", 0),
+        ]
+    )
     add_RagChatServiceServicer_to_server(
         RagChatServicer(llm_service, kb_service, settings),
         server,
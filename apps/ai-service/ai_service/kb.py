@@ -1,16 +1,18 @@
 from __future__ import annotations
 
+import io
 import logging
 import uuid
 from collections.abc import Iterable
 from pathlib import Path
-from typing import Any, cast
+from typing import Any, BinaryIO, cast
 
 from qdrant_client import QdrantClient
 from qdrant_client.models import (
     Distance,
     FieldCondition,
     Filter,
+    MatchAny,
     MatchValue,
     PointStruct,
     VectorParams,
@@ -19,7 +21,7 @@ from qdrant_client.models import (
 from .chunking import chunk_text, sha1
 from .config import Settings
 from .errors import bad_request, dependency_error
-from .extraction import extract_text_from_bytes
+from .extraction import extract_text_from_file
 from .models import KbDeleteRequest, KbIngestRequest
 
 logger = logging.getLogger("edunexus.ai.kb")
@@ -52,15 +54,18 @@ class KnowledgeBaseService:
         except Exception as ex:
             raise dependency_error(f"qdrant unavailable: {ex}") from ex
 
-    def extract_and_chunk(self, req: KbIngestRequest) -> list[str]:
-        if not req.file_content:
+    def extract_and_chunk(self, req: KbIngestRequest, source: BinaryIO | None = None) -> list[str]:
+        if source is None:
+            source = io.BytesIO(req.file_content)
+        if source.seek(0, io.SEEK_END) == 0:
             raise bad_request("document file is empty")
+        source.seek(0)
 
         suffix = Path(req.filename).suffix.lower()
         if suffix in IMAGE_SUFFIXES:
             raise bad_request("image document is not supported for knowledge ingest")
 
-        text = extract_text_from_bytes(req.filename, req.file_content)
+        text = extract_text_from_file(req.filename, source)
 
         if not text.strip():
             raise bad_request("document content is empty")
@@ -114,6 +119,35 @@ class KnowledgeBaseService:
             raise dependency_error(f"qdrant delete failed: {ex}") from ex
         return {"status": "ok"}
 
+    def delete_many(self, document_ids: list[str]) -> dict[str, str | None]:
+        """Delete several documents' points; returns document id -> error message or None."""
+        self.ensure_collection()
+        flt = Filter(must=[FieldCondition(key="document_id", match=MatchAny(any=document_ids))])
+        try:
+            self._qdrant.delete(
+                collection_name=self.settings.qdrant_collection, points_selector=flt
+            )
+            return dict.fromkeys(document_ids)
+        except Exception as ex:
+            logger.warning("kb_delete_batch_failed count=%s error=%s", len(document_ids), ex)
+
+        # Fall back to one filter per document so a single bad id cannot fail the whole batch.
+        results: dict[str, str | None] = {}
+        for document_id in document_ids:
+            try:
+                self._qdrant.delete(
+                    collection_name=self.settings.qdrant_collection,
+                    points_selector=Filter(
+                        must=[
+                            FieldCondition(key="document_id", match=MatchValue(value=document_id))
+                        ]
+                    ),
+                )
+                results[document_id] = None
+            except Exception as ex:
+                results[document_id] = f"qdrant delete failed: {ex}"
+        return results
+
     async def retrieve(
         self,
         question: str,
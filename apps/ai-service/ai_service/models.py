@@ -154,7 +154,8 @@ class KbIngestRequest(BaseModel):
     class_id: str
     filename: str
     file_type: str | None = None
-    file_content: bytes
+    # Empty when the servicer passes the upload to extract_and_chunk as a file object instead.
+    file_content: bytes = b""
 
     @model_validator(mode="before")
     @classmethod
@@ -12,6 +12,8 @@ PROMPT_INJECTION_PATTERNS = (
     r"忽略(所有)?(之前|上文)指令",
 )
 
+MAX_HISTORY_TURNS = 40
+
 
 def sanitize_text(text: str, limit: int = 3000) -> str:
     compact = re.sub(r"\s+", " ", (text or "").replace("```", "")).strip()
@@ -27,15 +29,26 @@ def uncertain_answer() -> str:
 def chat_prompt(
     message: str, context_text: str, history: list[dict[str, str]] | None = None
 ) -> str:
+    # The API already packs history under a token budget; SYSTEM rows carry the rolling
+    # summary of older turns and are rendered separately.
     history_lines: list[str] = []
-    for row in (history or [])[-8:]:
+    summary_lines: list[str] = []
+    for row in (history or [])[-MAX_HISTORY_TURNS:]:
         role = sanitize_text(row.get("role", "USER"), 20).upper()
+        if role == "SYSTEM":
+            for line in (row.get("content") or "").splitlines():
+                line = sanitize_text(line, 200)
+                if line:
+                    summary_lines.append(line)
+            continue
         content = sanitize_text(row.get("content", ""), 600)
         if not content:
             continue
         history_lines.append(f"{role}: {content}")
 
     conversation = "\n".join(history_lines) if history_lines else "无"
+    summary = "\n".join(summary_lines)
+    summary_block = f"<Summary>\n{summary}\n</Summary>\n\n" if summary_lines else ""
     return (
         "你是 EduNexus AI 教学助手。\n"
         "规则：\n"
@@ -44,6 +57,7 @@ def chat_prompt(
         "3) 回答使用 Markdown，可用 LaTeX；\n"
         "4) 回答末尾必须给出来源引用，格式为 [文件名]（如 [physics_ch3.pdf]）。"
         "每条引用单独一行，可用多个引用。\n\n"
+        f"{summary_block}"
         f"<History>\n{conversation}\n</History>\n\n"
         f"<Context>\n{context_text}\n</Context>\n\n"
         f"<Question>{sanitize_text(message, 1200)}</Question>"
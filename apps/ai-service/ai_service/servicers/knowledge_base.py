@@ -2,12 +2,15 @@ from __future__ import annotations
 
 import asyncio
 import hashlib
+import io
+import tempfile
 import uuid
+from typing import BinaryIO
 
 import grpc
 from pydantic import ValidationError
 
-from ..ai_service_pb2 import KbDeleteResponse, KbIngestResponse
+from ..ai_service_pb2 import KbDeleteBatchResponse, KbDeleteResponse, KbIngestResponse
 from ..ai_service_pb2_grpc import KnowledgeBaseServiceServicer
 from ..config import Settings
 from ..errors import InternalServiceError, bad_request
@@ -18,6 +21,11 @@ from ..utils import stable_json_hash
 from ..worker import AsyncWorker
 from .base import abort_internal_error, require_internal_auth
 
+# Keep in sync with AiClient.MAX_DELETE_BATCH on the Java side.
+MAX_DELETE_BATCH = 500
+# Streamed uploads stay in memory up to this size and spill to a temp file beyond it.
+INGEST_SPOOL_BYTES = 8 * 1024 * 1024
+
 
 class KnowledgeBaseServicer(KnowledgeBaseServiceServicer):
     def __init__(
@@ -36,6 +44,68 @@ class KnowledgeBaseServicer(KnowledgeBaseServiceServicer):
         trace_id, metadata_idem = await require_internal_auth(
             context, self.settings, require_trace=True
         )
+        content = bytes(request.file_content)
+        return await self._ingest(
+            context,
+            trace_id,
+            metadata_idem,
+            request,
+            io.BytesIO(content),
+            hashlib.sha256(content).hexdigest(),
+        )
+
+    async def IngestStream(self, request_iterator, context: grpc.aio.ServicerContext):
+        trace_id, metadata_idem = await require_internal_auth(
+            context, self.settings, require_trace=True
+        )
+        with tempfile.SpooledTemporaryFile(max_size=INGEST_SPOOL_BYTES) as spool:
+            header = None
+            received = 0
+            digest = hashlib.sha256()
+            async for chunk in request_iterator:
+                kind = chunk.WhichOneof("payload")
+                if kind == "header":
+                    if header is not None:
+                        await context.abort(
+                            grpc.StatusCode.INVALID_ARGUMENT, "ingest header must be sent once"
+                        )
+                    header = chunk.header
+                elif kind == "data":
+                    if header is None:
+                        await context.abort(
+                            grpc.StatusCode.INVALID_ARGUMENT, "ingest header must precede data"
+                        )
+                    received += len(chunk.data)
+                    if header.file_size and received > header.file_size:
+                        await context.abort(
+                            grpc.StatusCode.INVALID_ARGUMENT,
+                            "ingest data exceeds declared file_size",
+                        )
+                    digest.update(chunk.data)
+                    spool.write(chunk.data)
+
+            if header is None:
+                await context.abort(grpc.StatusCode.INVALID_ARGUMENT, "ingest header is required")
+                return KbIngestResponse(status="error")
+            if header.file_size and received != header.file_size:
+                await context.abort(
+                    grpc.StatusCode.INVALID_ARGUMENT,
+                    f"ingest stream truncated: {received}/{header.file_size} bytes",
+                )
+            spool.seek(0)
+            return await self._ingest(
+                context, trace_id, metadata_idem, header, spool, digest.hexdigest()
+            )
+
+    async def _ingest(
+        self,
+        context: grpc.aio.ServicerContext,
+        trace_id: str,
+        metadata_idem: str,
+        request,
+        source: BinaryIO,
+        content_sha: str,
+    ):
         class_id = str(request.class_id or "").strip()
         if not class_id:
             await context.abort(grpc.StatusCode.INVALID_ARGUMENT, "classId is required")
@@ -49,7 +119,6 @@ class KnowledgeBaseServicer(KnowledgeBaseServiceServicer):
                 "Idempotency-Key length must be between 8 and 128",
             )
 
-        content_sha = hashlib.sha256(bytes(request.file_content)).hexdigest()
         payload = {
             "traceId": trace_id,
             "jobId": request.job_id,
@@ -81,9 +150,8 @@ class KnowledgeBaseServicer(KnowledgeBaseServiceServicer):
                 class_id=class_id,
                 filename=request.filename,
                 file_type=request.file_type or None,
-                file_content=bytes(request.file_content),
             )
-            chunks = self.kb.extract_and_chunk(kb_request)
+            chunks = self.kb.extract_and_chunk(kb_request, source)
         except ValidationError as error:
             await context.abort(grpc.StatusCode.INVALID_ARGUMENT, str(error))
         except InternalServiceError as error:
@@ -131,14 +199,7 @@ class KnowledgeBaseServicer(KnowledgeBaseServiceServicer):
         trace_id, metadata_idem = await require_internal_auth(
             context, self.settings, require_trace=True
         )
-        idem_key = (request.idempotency_key or metadata_idem or "").strip()
-        if not idem_key:
-            await context.abort(grpc.StatusCode.INVALID_ARGUMENT, "Idempotency-Key is required")
-        if len(idem_key) < 8 or len(idem_key) > 128:
-            await context.abort(
-                grpc.StatusCode.INVALID_ARGUMENT,
-                "Idempotency-Key length must be between 8 and 128",
-            )
+        idem_key = await self._require_idempotency_key(context, request, metadata_idem)
 
         payload = {
             "traceId": trace_id,
@@ -163,3 +224,64 @@ class KnowledgeBaseServicer(KnowledgeBaseServiceServicer):
         result = {"status": "ok"}
         await self.idempotency_store.set("kb.delete", idem_key, request_hash, result)
         return KbDeleteResponse(status="ok")
+
+    async def DeleteBatch(self, request, context: grpc.aio.ServicerContext):
+        trace_id, metadata_idem = await require_internal_auth(
+            context, self.settings, require_trace=True
+        )
+        idem_key = await self._require_idempotency_key(context, request, metadata_idem)
+        document_ids = list(
+            dict.fromkeys(doc_id.strip() for doc_id in request.document_ids if doc_id.strip())
+        )
+        if not document_ids:
+            await context.abort(grpc.StatusCode.INVALID_ARGUMENT, "document_ids is required")
+        if len(document_ids) > MAX_DELETE_BATCH:
+            await context.abort(
+                grpc.StatusCode.INVALID_ARGUMENT,
+                f"document_ids must not exceed {MAX_DELETE_BATCH}",
+            )
+
+        payload = {
+            "traceId": trace_id,
+            "documentIds": document_ids,
+        }
+        request_hash = stable_json_hash(payload)
+        replay = await self.idempotency_store.get("kb.delete_batch", idem_key, request_hash)
+        if replay is not None:
+            return self._delete_batch_response(replay.get("results", {}))
+
+        try:
+            errors = self.kb.delete_many(document_ids)
+        except InternalServiceError as error:
+            await abort_internal_error(context, error)
+
+        result = {"results": errors}
+        await self.idempotency_store.set("kb.delete_batch", idem_key, request_hash, result)
+        return self._delete_batch_response(errors)
+
+    @staticmethod
+    def _delete_batch_response(errors: dict[str, str | None]) -> KbDeleteBatchResponse:
+        return KbDeleteBatchResponse(
+            results=[
+                KbDeleteBatchResponse.Result(
+                    document_id=document_id,
+                    status="failed" if error else "ok",
+                    error_message=error or "",
+                )
+                for document_id, error in errors.items()
+            ]
+        )
+
+    @staticmethod
+    async def _require_idempotency_key(
+        context: grpc.aio.ServicerContext, request, metadata_idem: str | None
+    ) -> str:
+        idem_key = (request.idempotency_key or metadata_idem or "").strip()
+        if not idem_key:
+            await context.abort(grpc.StatusCode.INVALID_ARGUMENT, "Idempotency-Key is required")
+        if len(idem_key) < 8 or len(idem_key) > 128:
+            await context.abort(
+                grpc.StatusCode.INVALID_ARGUMENT,
+                "Idempotency-Key length must be between 8 and 128",
+            )
+        return idem_key
@@ -1,5 +1,11 @@
+import tempfile
+from types import SimpleNamespace
+
+from qdrant_client.models import MatchAny
+
 from ai_service.chunking import chunk_text, sha1
-from ai_service.extraction import extract_text
+from ai_service.extraction import extract_text, extract_text_from_file
+from ai_service.kb import KnowledgeBaseService
 
 
 def test_chunk_text_single_short_paragraph() -> None:
@@ -45,3 +51,58 @@ def test_sha1_deterministic() -> None:
 def test_extract_text_missing_file() -> None:
     result = extract_text("/nonexistent/path/to/file.pdf")
     assert result == ""
+
+
+def test_extract_text_from_spooled_file() -> None:
+    with tempfile.SpooledTemporaryFile(max_size=4) as spool:
+        spool.write("超过内存阈值的文本".encode())
+        spool.seek(0)
+        assert extract_text_from_file("notes.txt", spool) == "超过内存阈值的文本"
+
+
+class FakeQdrant:
+    def __init__(self, fail_batch: bool = False, bad_ids: frozenset[str] = frozenset()) -> None:
+        self.fail_batch = fail_batch
+        self.bad_ids = bad_ids
+        self.deleted: list[object] = []
+
+    def get_collections(self):
+        return SimpleNamespace(collections=[SimpleNamespace(name="kb")])
+
+    def delete(self, collection_name, points_selector):
+        match = points_selector.must[0].match
+        if isinstance(match, MatchAny):
+            if self.fail_batch:
+                raise RuntimeError("filter too large")
+            self.deleted.append(list(match.any))
+            return
+        if match.value in self.bad_ids:
+            raise RuntimeError("timeout")
+        self.deleted.append(match.value)
+
+
+def kb_with(qdrant: FakeQdrant) -> KnowledgeBaseService:
+    kb = object.__new__(KnowledgeBaseService)
+    kb.settings = SimpleNamespace(qdrant_collection="kb", embedding_dim=8)
+    kb._qdrant = qdrant
+    return kb
+
+
+def test_delete_many_removes_batch_with_one_filter() -> None:
+    qdrant = FakeQdrant()
+
+    results = kb_with(qdrant).delete_many(["doc-1", "doc-2"])
+
+    assert results == {"doc-1": None, "doc-2": None}
+    assert qdrant.deleted == [["doc-1", "doc-2"]]
+
+
+def test_delete_many_falls_back_per_document_when_batch_fails() -> None:
+    qdrant = FakeQdrant(fail_batch=True, bad_ids=frozenset({"doc-2"}))
+
+    results = kb_with(qdrant).delete_many(["doc-1", "doc-2", "doc-3"])
+
+    assert results["doc-1"] is None
+    assert results["doc-3"] is None
+    assert "timeout" in (results["doc-2"] or "")
+    assert qdrant.deleted == ["doc-1", "doc-3"]
@@ -0,0 +1,162 @@
+import asyncio
+from types import SimpleNamespace
+
+import grpc
+import pytest
+
+from ai_service.ai_service_pb2 import KbDeleteBatchRequest, KbIngestChunk, KbIngestHeader
+from ai_service.idempotency import IdempotencyStore
+from ai_service.servicers.knowledge_base import MAX_DELETE_BATCH, KnowledgeBaseServicer
+
+SERVICE_TOKEN = "test-service-token"
+
+
+class AbortError(Exception):
+    def __init__(self, code: grpc.StatusCode, details: str) -> None:
+        super().__init__(details)
+        self.code = code
+
+
+class FakeContext:
+    def invocation_metadata(self):
+        return (("x-service-token", SERVICE_TOKEN), ("x-trace-id", "trace-kb"))
+
+    async def abort(self, code, details):
+        raise AbortError(code, details)
+
+
+class RecordingKb:
+    def __init__(self) -> None:
+        self.requests = []
+        self.contents: list[bytes] = []
+        self.deleted: list[list[str]] = []
+
+    def extract_and_chunk(self, req, source=None):
+        self.requests.append(req)
+        self.contents.append(source.read())
+        return ["chunk"]
+
+    def delete_many(self, document_ids):
+        self.deleted.append(document_ids)
+        return {
+            doc_id: "qdrant delete failed" if doc_id == "bad" else None
+            for doc_id in document_ids
+        }
+
+
+class RecordingWorker:
+    def __init__(self) -> None:
+        self.calls = []
+
+    async def run_document_embed(self, *args):
+        self.calls.append(args)
+
+
+def make_servicer(kb=None) -> KnowledgeBaseServicer:
+    return KnowledgeBaseServicer(
+        kb or RecordingKb(),
+        RecordingWorker(),
+        IdempotencyStore(),
+        SimpleNamespace(service_token=SERVICE_TOKEN),
+    )
+
+
+def header(file_size: int) -> KbIngestChunk:
+    return KbIngestChunk(
+        header=KbIngestHeader(
+            idempotency_key="ingest-key-1",
+            job_id="job-1",
+            document_id="doc-1",
+            teacher_id="teacher-1",
+            class_id="class-1",
+            filename="notes.txt",
+            file_type="txt",
+            file_size=file_size,
+        )
+    )
+
+
+async def stream(*chunks: KbIngestChunk):
+    for chunk in chunks:
+        yield chunk
+
+
+def test_ingest_stream_reassembles_chunks_without_keeping_bytes_on_request() -> None:
+    kb = RecordingKb()
+    servicer = make_servicer(kb)
+    parts = [b"first ", b"second ", b"third"]
+    chunks = [header(sum(len(p) for p in parts))] + [KbIngestChunk(data=p) for p in parts]
+
+    response = asyncio.run(servicer.IngestStream(stream(*chunks), FakeContext()))
+
+    assert response.status == "ok"
+    assert response.chunks == 1
+    assert kb.contents == [b"first second third"]
+    assert kb.requests[0].file_content == b""
+
+
+def test_ingest_stream_replays_same_upload_from_idempotency_store() -> None:
+    servicer = make_servicer()
+    chunks = [header(5), KbIngestChunk(data=b"hello")]
+
+    async def ingest_twice():
+        first = await servicer.IngestStream(stream(*chunks), FakeContext())
+        second = await servicer.IngestStream(stream(*chunks), FakeContext())
+        return first, second
+
+    first, second = asyncio.run(ingest_twice())
+
+    assert second.job_id == first.job_id
+    assert second.chunks == first.chunks
+
+
+def test_ingest_stream_rejects_truncated_upload() -> None:
+    servicer = make_servicer()
+    chunks = [header(10), KbIngestChunk(data=b"short")]
+
+    with pytest.raises(AbortError) as error:
+        asyncio.run(servicer.IngestStream(stream(*chunks), FakeContext()))
+
+    assert error.value.code == grpc.StatusCode.INVALID_ARGUMENT
+    assert "truncated" in str(error.value)
+
+
+def test_ingest_stream_rejects_data_before_header() -> None:
+    servicer = make_servicer()
+
+    with pytest.raises(AbortError) as error:
+        asyncio.run(servicer.IngestStream(stream(KbIngestChunk(data=b"x")), FakeContext()))
+
+    assert error.value.code == grpc.StatusCode.INVALID_ARGUMENT
+
+
+def test_delete_batch_dedupes_ids_and_reports_per_document_status() -> None:
+    kb = RecordingKb()
+    servicer = make_servicer(kb)
+    request = KbDeleteBatchRequest(
+        idempotency_key="delete-key-1", document_ids=["doc-1", " doc-1 ", "bad", ""]
+    )
+
+    response = asyncio.run(servicer.DeleteBatch(request, FakeContext()))
+
+    assert kb.deleted == [["doc-1", "bad"]]
+    assert [(r.document_id, r.status) for r in response.results] == [
+        ("doc-1", "ok"),
+        ("bad", "failed"),
+    ]
+    assert response.results[1].error_message == "qdrant delete failed"
+
+
+def test_delete_batch_rejects_more_than_max_batch() -> None:
+    kb = RecordingKb()
+    servicer = make_servicer(kb)
+    request = KbDeleteBatchRequest(
+        idempotency_key="delete-key-2",
+        document_ids=[f"doc-{i}" for i in range(MAX_DELETE_BATCH + 1)],
+    )
+
+    with pytest.raises(AbortError) as error:
+        asyncio.run(servicer.DeleteBatch(request, FakeContext()))
+
+    assert error.value.code == grpc.StatusCode.INVALID_ARGUMENT
+    assert kb.deleted == []
@@ -11,17 +11,23 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
+    private static final String METRICS_PATH = "/actuator/prometheus";
+
     private final JwtUtil jwtUtil;
     private final DbService db;
+    private final byte[] metricsScrapeToken;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private static final Set<String> PUBLIC_PATHS =
             Set.of(
@@ -44,9 +50,13 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                     "/api/v1/teacher/", "TEACHER",
                     "/api/v1/admin/", "ADMIN");
 
-    public JwtAuthFilter(JwtUtil jwtUtil, DbService db) {
+    public JwtAuthFilter(
+            JwtUtil jwtUtil,
+            DbService db,
+            @Value("${app.metrics-scrape-token:}") String metricsScrapeToken) {
         this.jwtUtil = jwtUtil;
         this.db = db;
+        this.metricsScrapeToken = metricsScrapeToken.getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
@@ -59,6 +69,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
         String auth = request.getHeader("Authorization");
+        if (METRICS_PATH.equals(path)) {
+            // Scrapers carry the shared scrape token, not a user JWT; unset keeps metrics closed.
+            if (isMetricsScrape(auth)) {
+                filterChain.doFilter(request, response);
+            } else {
+                writeError(request, response, 401, ErrorCode.AUTH_TOKEN_INVALID);
+            }
+            return;
+        }
         if (auth == null || !auth.startsWith("Bearer ")) {
             writeError(request, response, 401, ErrorCode.AUTH_TOKEN_INVALID);
             return;
@@ -108,6 +127,14 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         return PUBLIC_PATHS.contains(path);
     }
 
+    private boolean isMetricsScrape(String auth) {
+        if (metricsScrapeToken.length == 0 || auth == null || !auth.startsWith("Bearer ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                metricsScrapeToken, auth.substring(7).getBytes(StandardCharsets.UTF_8));
+    }
+
     private String resolveRequiredRole(String path) {
         for (Map.Entry<String, String> entry : PATH_ROLE_MAP.entrySet()) {
             if (path.startsWith(entry.getKey())) {
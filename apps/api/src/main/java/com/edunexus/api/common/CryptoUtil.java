@@ -1,7 +1,12 @@
 package com.edunexus.api.common;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /** 公共加密工具类 — 消除 AuthController / TeacherController / GovernanceService 中的 sha256 重复代码。 */
 public final class CryptoUtil {
@@ -12,16 +17,31 @@ public final class CryptoUtil {
     }
 
     public static String sha256(byte[] input) {
+        return toHex(sha256Digest().digest(input));
+    }
+
+    /** Hashes the stream to its end in fixed-size reads, without buffering the whole content. */
+    public static String sha256(InputStream input) throws IOException {
+        MessageDigest digest = sha256Digest();
+        try (DigestInputStream in = new DigestInputStream(input, digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256Digest() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception ex) {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
             throw new RuntimeException(ex);
         }
     }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
 }
@@ -4,8 +4,12 @@ import java.net.URI;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -17,30 +21,81 @@ import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
 
+    /**
+     * Runs ingest jobs claimed from {@code job_runs}, with one extra thread for the startup document
+     * sweep. The worker never claims more jobs than it has threads for, so nothing waits here.
+     */
     @Bean(name = "documentIngestExecutor")
-    public TaskExecutor documentIngestExecutor() {
+    public TaskExecutor documentIngestExecutor(
+            @Value("${app.document-ingest-parallelism:2}") int parallelism) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(4);
+        executor.setCorePoolSize(Math.max(1, parallelism) + 1);
+        executor.setMaxPoolSize(Math.max(1, parallelism) + 1);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("doc-ingest-");
         executor.initialize();
         return executor;
     }
 
+    /**
+     * Finishes chat streams (persisting the reply and sending the final frames). Streams no longer
+     * hold a thread while tokens arrive, so each completion gets its own virtual thread.
+     */
     @Bean(name = "chatStreamExecutor")
     public TaskExecutor chatStreamExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("chat-stream-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /**
+     * Reads upload bytes from object storage for streamed knowledge-base ingests, keeping those
+     * blocking reads off gRPC's callback threads. Closed with the context.
+     */
+    @Bean(name = "ingestUploadExecutor")
+    public TaskExecutor ingestUploadExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ingest-upload-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /** Fires delayed SSE delta flushes; the writes themselves run on {@code chatStreamExecutor}. */
+    @Bean(name = "sseFlushScheduler")
+    public TaskScheduler sseFlushScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("sse-flush-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * Periodic housekeeping such as polling cache invalidation versions; also runs the
+     * {@code @Scheduled} chat storage jobs, so a long compaction does not delay the polls.
+     */
+    @Bean(name = "taskScheduler")
+    public TaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("scheduler-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean(name = "wrongAnalysisExecutor")
+    public TaskExecutor wrongAnalysisExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(200);
-        executor.setThreadNamePrefix("chat-stream-");
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("wrong-analysis-");
         executor.initialize();
         return executor;
     }
@@ -9,6 +9,7 @@ import com.edunexus.api.service.AiQuestionService;
 import com.edunexus.api.service.ChatService;
 import com.edunexus.api.service.ExerciseService;
 import com.edunexus.api.service.GovernanceService;
+import com.edunexus.api.service.SingleFlightRegistry;
 import com.edunexus.api.service.VoMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -36,6 +37,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Validated
 @RestController
@@ -46,6 +48,7 @@ public class StudentController implements ControllerSupport {
     private final ExerciseService exerciseService;
     private final AiQuestionService aiQuestionService;
     private final GovernanceService governance;
+    private final SingleFlightRegistry singleFlight;
     private final VoMapper voMapper;
 
     public StudentController(
@@ -53,11 +56,13 @@ public class StudentController implements ControllerSupport {
             ExerciseService exerciseService,
             AiQuestionService aiQuestionService,
             GovernanceService governance,
+            SingleFlightRegistry singleFlight,
             VoMapper voMapper) {
         this.chatService = chatService;
         this.exerciseService = exerciseService;
         this.aiQuestionService = aiQuestionService;
         this.governance = governance;
+        this.singleFlight = singleFlight;
         this.voMapper = voMapper;
     }
 
@@ -137,6 +142,18 @@ public class StudentController implements ControllerSupport {
         return ResponseEntity.ok(ApiResponse.ok(data, trace(request)));
     }
 
+    @GetMapping(
+            value = "/chat/session/{sessionId}/message/{messageId}/stream",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter resumeMessageStream(
+            @PathVariable("sessionId") UUID sessionId,
+            @PathVariable("messageId") UUID messageId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        requireRole("STUDENT");
+        chatService.ensureSessionOwner(sessionId, currentUser().userId());
+        return chatService.resumeStream(sessionId, messageId, lastEventId);
+    }
+
     // ── Exercise ─────────────────────────────────────────────────────────────
 
     @GetMapping("/exercise/questions")
@@ -296,31 +313,42 @@ public class StudentController implements ControllerSupport {
 
         String requestHash =
                 governance.requestHash(Map.of("studentId", user.userId(), "payload", req));
-        Map<String, Object> replay =
-                governance.getIdempotentReplay("student.aiq.generate", idempotencyKey, requestHash);
-        if (replay != null) return ResponseEntity.ok(ApiResponse.ok(replay, trace(request)));
-
-        var result =
-                aiQuestionService.generateQuestions(
-                        user.userId(),
-                        req.count(),
-                        req.subject(),
-                        difficulty,
-                        req.conceptTags(),
-                        trace(request),
-                        idempotencyKey);
-
-        var data =
-                Map.of("sessionId", result.sessionId().toString(), "questions", result.questions());
+        // Retries of the same generation share one AI call instead of racing.
+        Map<String, Object> data =
+                singleFlight.execute(
+                        "student.aiq.generate",
+                        requestHash,
+                        () -> {
+                            Map<String, Object> replay =
+                                    governance.getIdempotentReplay(
+                                            "student.aiq.generate", idempotencyKey, requestHash);
+                            if (replay != null) return replay;
+
+                            var result =
+                                    aiQuestionService.generateQuestions(
+                                            user.userId(),
+                                            req.count(),
+                                            req.subject(),
+                                            difficulty,
+                                            req.conceptTags(),
+                                            trace(request),
+                                            idempotencyKey);
+                            governance.audit(
+                                    user.userId(),
+                                    user.role(),
+                                    "GENERATE_AIQ",
+                                    "AIQ_SESSION",
+                                    result.sessionId().toString(),
+                                    trace(request));
+                            return Map.of(
+                                    "sessionId",
+                                    result.sessionId().toString(),
+                                    "questions",
+                                    result.questions());
+                        },
+                        () -> governance.getCoalescedReplay("student.aiq.generate", requestHash));
         governance.storeIdempotency(
                 "student.aiq.generate", idempotencyKey, requestHash, data, Duration.ofHours(24));
-        governance.audit(
-                user.userId(),
-                user.role(),
-                "GENERATE_AIQ",
-                "AIQ_SESSION",
-                result.sessionId().toString(),
-                trace(request));
         return ResponseEntity.ok(ApiResponse.ok(data, trace(request)));
     }
 
@@ -7,6 +7,7 @@ import com.edunexus.api.service.AnalyticsService;
 import com.edunexus.api.service.GovernanceService;
 import com.edunexus.api.service.KnowledgeService;
 import com.edunexus.api.service.LessonPlanService;
+import com.edunexus.api.service.SingleFlightRegistry;
 import com.edunexus.api.service.SuggestionService;
 import com.edunexus.api.service.VoMapper;
 import jakarta.servlet.http.HttpServletRequest;
@@ -35,6 +36,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Validated
 @RestController
@@ -46,6 +48,7 @@ public class TeacherController implements ControllerSupport {
     private final LessonPlanService lessonPlanService;
     private final SuggestionService suggestionService;
     private final GovernanceService governance;
+    private final SingleFlightRegistry singleFlight;
     private final VoMapper voMapper;
 
     public TeacherController(
@@ -54,12 +57,14 @@ public class TeacherController implements ControllerSupport {
             LessonPlanService lessonPlanService,
             SuggestionService suggestionService,
             GovernanceService governance,
+            SingleFlightRegistry singleFlight,
             VoMapper voMapper) {
         this.analyticsService = analyticsService;
         this.knowledgeService = knowledgeService;
         this.lessonPlanService = lessonPlanService;
         this.suggestionService = suggestionService;
         this.governance = governance;
+        this.singleFlight = singleFlight;
         this.voMapper = voMapper;
     }
 
@@ -172,6 +177,14 @@ public class TeacherController implements ControllerSupport {
 
     // ── Knowledge Base ───────────────────────────────────────────────────────
 
+    @GetMapping(
+            value = "/knowledge/documents/events",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDocumentStatus() {
+        requireRole("TEACHER");
+        return knowledgeService.streamDocumentStatus(currentUser().userId());
+    }
+
     @PostMapping("/knowledge/documents")
     public ResponseEntity<ApiResponse> uploadDocument(
             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
@@ -192,7 +205,8 @@ public class TeacherController implements ControllerSupport {
                 || lowered.endsWith(".md")))
             throw new IllegalArgumentException("仅支持 PDF/Docx/TXT/MD 文件");
 
-        byte[] fileBytes = file.getBytes();
+        // The container spools the part to disk; hashing and the S3 upload both stream from it.
+        String contentSha256 = KnowledgeService.computeHash(file);
         String requestHash =
                 governance.requestHash(
                         Map.of(
@@ -207,7 +221,7 @@ public class TeacherController implements ControllerSupport {
                                 "fileSize",
                                 file.getSize(),
                                 "contentSha256",
-                                KnowledgeService.computeHash(fileBytes)));
+                                contentSha256));
         Map<String, Object> replay =
                 governance.getIdempotentReplay(
                         "teacher.knowledge.upload", idempotencyKey, requestHash);
@@ -223,7 +237,8 @@ public class TeacherController implements ControllerSupport {
                                 ? "application/octet-stream"
                                 : file.getContentType(),
                         file.getSize(),
-                        fileBytes,
+                        file,
+                        contentSha256,
                         trace(request),
                         idempotencyKey);
 
@@ -293,33 +308,41 @@ public class TeacherController implements ControllerSupport {
         AuthUser user = currentUser();
         String requestHash =
                 governance.requestHash(Map.of("teacherId", user.userId(), "payload", req));
-        Map<String, Object> replay =
-                governance.getIdempotentReplay(
-                        "teacher.plan.generate", idempotencyKey, requestHash);
-        if (replay != null) return ResponseEntity.ok(ApiResponse.ok(replay, trace(request)));
-
-        var plan =
-                lessonPlanService.generateAndSave(
-                        user.userId(),
-                        req.topic(),
-                        req.gradeLevel(),
-                        req.durationMins(),
-                        trace(request),
-                        idempotencyKey);
-        var data = voMapper.toLessonPlanVo(plan);
+        // Double clicks and retries of the same plan share one generation instead of racing.
+        Map<String, Object> data =
+                singleFlight.execute(
+                        "teacher.plan.generate",
+                        requestHash,
+                        () -> {
+                            Map<String, Object> replay =
+                                    governance.getIdempotentReplay(
+                                            "teacher.plan.generate", idempotencyKey, requestHash);
+                            if (replay != null) return replay;
+
+                            var plan =
+                                    lessonPlanService.generateAndSave(
+                                            user.userId(),
+                                            req.topic(),
+                                            req.gradeLevel(),
+                                            req.durationMins(),
+                                            trace(request),
+                                            idempotencyKey);
+                            governance.audit(
+                                    user.userId(),
+                                    user.role(),
+                                    "GENERATE_PLAN",
+                                    "LESSON_PLAN",
+                                    plan.id().toString(),
+                                    trace(request));
+                            return voMapper.toLessonPlanVo(plan);
+                        },
+                        () -> governance.getCoalescedReplay("teacher.plan.generate", requestHash));
         governance.storeIdempotency(
                 "teacher.plan.generate",
                 idempotencyKey,
                 requestHash,
                 data,
                 java.time.Duration.ofHours(24));
-        governance.audit(
-                user.userId(),
-                user.role(),
-                "GENERATE_PLAN",
-                "LESSON_PLAN",
-                plan.id().toString(),
-                trace(request));
         return ResponseEntity.ok(ApiResponse.ok(data, trace(request)));
     }
 
@@ -0,0 +1,6 @@
+package com.edunexus.api.domain;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record TeacherBinding(UUID teacherId, UUID classroomId, Instant revokedAt) {}
@@ -0,0 +1,12 @@
+package com.edunexus.api.domain;
+
+import java.util.UUID;
+
+public record WrongAnswerAnalysis(
+        String contentKey,
+        UUID questionId,
+        String encourage,
+        String concept,
+        String rootCause,
+        String nextPractice,
+        String stepsJson) {}
@@ -4,8 +4,23 @@ import com.edunexus.api.common.ApiDataMapper;
 import com.edunexus.api.common.ResourceNotFoundException;
 import com.edunexus.api.domain.ChatMessage;
 import com.edunexus.api.domain.ChatSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
@@ -34,8 +49,18 @@ public class ChatRepository {
                             rs.getInt("token_usage"),
                             ApiDataMapper.toInstant(rs.getTimestamp("created_at")));
 
+    /** Independent of the web mapper's settings, so archived blobs stay readable. */
+    private static final ObjectMapper ARCHIVE_JSON =
+            JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
     private final JdbcTemplate jdbc;
 
+    /** {@code historyVersion} is the session's history version after this turn was saved. */
+    public record Turn(
+            ChatMessage userMessage, ChatMessage assistantMessage, long historyVersion) {}
+
+    public record ContextSummary(String text, Instant through) {}
+
     public ChatRepository(JdbcTemplate jdbc) {
         this.jdbc = jdbc;
     }
@@ -90,89 +115,319 @@ public class ChatRepository {
                 sessionId);
     }
 
-    public UUID createUserMessage(UUID sessionId, String content) {
-        UUID id = UUID.randomUUID();
-        jdbc.update(
-                "insert into chat_messages(id,session_id,role,content,citations,token_usage) values (?,?,'USER',?,null,0)",
-                id,
-                sessionId,
-                content);
-        return id;
+    /**
+     * Stores a finished turn in a single statement: both messages, the session's {@code updated_at}
+     * and {@code history_version} and, while the session still has its default title, a title
+     * taken from the question. The
+     * user message keeps its send time; the reply is stamped strictly after it so the pair always
+     * sorts in order.
+     */
+    public Turn saveTurn(
+            UUID sessionId,
+            UUID userMessageId,
+            String question,
+            Instant askedAt,
+            String answer,
+            String citationsJson,
+            int tokenUsage) {
+        UUID assistantMessageId = UUID.randomUUID();
+        Timestamp askedAtTs = Timestamp.from(askedAt);
+        String title = question.length() > 20 ? question.substring(0, 20) : question;
+        long[] historyVersion = new long[1];
+        List<ChatMessage> rows =
+                jdbc.query(
+                        """
+                        with user_msg as (
+                          insert into chat_messages(id,session_id,role,content,citations,token_usage,created_at)
+                          values (?,?,'USER',?,null,0,?)
+                          returning id,session_id,role,content,citations,token_usage,created_at
+                        ), assistant_msg as (
+                          insert into chat_messages(id,session_id,role,content,citations,token_usage,created_at)
+                          values (?,?,'ASSISTANT',?,?::jsonb,?,
+                                  greatest(clock_timestamp(), ?::timestamptz + interval '1 microsecond'))
+                          returning id,session_id,role,content,citations,token_usage,created_at
+                        ), touched as (
+                          update chat_sessions
+                          set updated_at=now(),
+                              history_version=history_version+1,
+                              title=case when title='新建对话' then ? else title end
+                          where id=?
+                          returning history_version
+                        )
+                        select m.*, (select history_version from touched) as history_version
+                        from (select * from user_msg union all select * from assistant_msg) m
+                        """,
+                        (rs, rn) -> {
+                            historyVersion[0] = rs.getLong("history_version");
+                            return MESSAGE_MAPPER.mapRow(rs, rn);
+                        },
+                        userMessageId,
+                        sessionId,
+                        question,
+                        askedAtTs,
+                        assistantMessageId,
+                        sessionId,
+                        answer,
+                        citationsJson,
+                        tokenUsage,
+                        askedAtTs,
+                        title,
+                        sessionId);
+        ChatMessage userMessage = null;
+        ChatMessage assistantMessage = null;
+        for (ChatMessage row : rows) {
+            if (row.id().equals(userMessageId)) userMessage = row;
+            else assistantMessage = row;
+        }
+        return new Turn(userMessage, assistantMessage, historyVersion[0]);
     }
 
-    public UUID createAssistantMessage(
-            UUID sessionId, String content, String citationsJson, int tokenUsage) {
-        UUID id = UUID.randomUUID();
-        jdbc.update(
-                "insert into chat_messages(id,session_id,role,content,citations,token_usage) values (?,?,'ASSISTANT',?,?::jsonb,?)",
-                id,
-                sessionId,
-                content,
-                citationsJson,
-                tokenUsage);
-        return id;
+    /** Current history version of the session; {@code -1} once the session row is gone. */
+    public long findHistoryVersion(UUID sessionId) {
+        List<Long> versions =
+                jdbc.queryForList(
+                        "select history_version from chat_sessions where id=?",
+                        Long.class,
+                        sessionId);
+        return versions.isEmpty() ? -1L : versions.getFirst();
     }
 
+    /** Every message of the session, oldest first: the compacted archive, then the live rows. */
     public List<ChatMessage> listMessages(UUID sessionId) {
-        return jdbc.query(
-                """
-                select id,session_id,role,content,citations,token_usage,created_at
-                from chat_messages
-                where session_id=?
-                order by created_at asc
-                """,
-                MESSAGE_MAPPER,
-                sessionId);
+        List<ChatMessage> live =
+                jdbc.query(
+                        """
+                        select id,session_id,role,content,citations,token_usage,created_at
+                        from chat_messages
+                        where session_id=?
+                        order by created_at asc
+                        """,
+                        MESSAGE_MAPPER,
+                        sessionId);
+        List<ChatMessage> archived = findArchivedMessages(sessionId);
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<ChatMessage> all = new ArrayList<>(archived.size() + live.size());
+        all.addAll(archived);
+        all.addAll(live);
+        return all;
     }
 
+    /** The latest {@code limit} messages of the session, oldest first. */
     public List<ChatMessage> listRecentHistory(UUID sessionId, int limit) {
+        List<ChatMessage> live =
+                jdbc.query(
+                        """
+                        select id,session_id,role,content,citations,token_usage,created_at
+                        from (
+                          select id,session_id,role,content,citations,token_usage,created_at
+                          from chat_messages
+                          where session_id=?
+                          order by created_at desc
+                          limit ?
+                        ) recent
+                        order by created_at asc
+                        """,
+                        MESSAGE_MAPPER,
+                        sessionId,
+                        limit);
+        if (live.size() >= limit) {
+            return live;
+        }
+        List<ChatMessage> archived = findArchivedMessages(sessionId);
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<ChatMessage> recent = new ArrayList<>(limit);
+        recent.addAll(
+                archived.subList(
+                        Math.max(0, archived.size() - (limit - live.size())), archived.size()));
+        recent.addAll(live);
+        return recent;
+    }
+
+    /** Sessions not updated since {@code idleBefore} that still have rows in chat_messages. */
+    public List<UUID> listCompactionCandidates(Instant idleBefore, int limit) {
         return jdbc.query(
-                "select id,session_id,role,content,citations,token_usage,created_at from chat_messages where session_id=? order by created_at asc limit ?",
-                MESSAGE_MAPPER,
-                sessionId,
+                """
+                select s.id
+                from chat_sessions s
+                where s.updated_at < ?
+                  and exists (select 1 from chat_messages m where m.session_id=s.id)
+                order by s.updated_at asc
+                limit ?
+                """,
+                (rs, rn) -> (UUID) rs.getObject("id"),
+                Timestamp.from(idleBefore),
                 limit);
     }
 
-    public ChatMessage findMessage(UUID messageId) {
-        List<ChatMessage> rows =
+    /**
+     * Folds the session's rows into its archive blob and deletes them, in one statement. The
+     * archive is only replaced if it still holds the message count read here and the session is
+     * still idle, so a concurrent compaction or a new turn makes this a no-op.
+     *
+     * @return number of rows moved into the archive
+     */
+    public int compactSession(UUID sessionId, Instant idleBefore) {
+        List<ChatMessage> live =
                 jdbc.query(
-                        "select id,session_id,role,content,citations,token_usage,created_at from chat_messages where id=?",
+                        """
+                        select id,session_id,role,content,citations,token_usage,created_at
+                        from chat_messages
+                        where session_id=?
+                        order by created_at asc
+                        """,
                         MESSAGE_MAPPER,
-                        messageId);
-        if (rows.isEmpty()) throw new ResourceNotFoundException("消息不存在");
-        return rows.getFirst();
+                        sessionId);
+        if (live.isEmpty()) {
+            return 0;
+        }
+        List<ChatMessage> archived = findArchivedMessages(sessionId);
+        List<ChatMessage> merged = new ArrayList<>(archived.size() + live.size());
+        merged.addAll(archived);
+        merged.addAll(live);
+        Timestamp lastMessageAt = Timestamp.from(live.getLast().createdAt());
+        Integer moved =
+                jdbc.queryForObject(
+                        """
+                        with saved as (
+                          insert into chat_session_archives(session_id,message_count,payload,last_message_at)
+                          select id,?,?,?
+                          from chat_sessions
+                          where id=? and updated_at < ?
+                          on conflict (session_id) do update
+                          set message_count=excluded.message_count,
+                              payload=excluded.payload,
+                              last_message_at=excluded.last_message_at,
+                              compacted_at=now()
+                          where chat_session_archives.message_count=?
+                          returning session_id
+                        ), removed as (
+                          delete from chat_messages
+                          where session_id=? and created_at <= ?
+                            and exists (select 1 from saved)
+                          returning 1
+                        )
+                        select count(*) from removed
+                        """,
+                        Integer.class,
+                        merged.size(),
+                        encodeArchive(merged),
+                        lastMessageAt,
+                        sessionId,
+                        Timestamp.from(idleBefore),
+                        archived.size(),
+                        sessionId,
+                        lastMessageAt);
+        return moved == null ? 0 : moved;
     }
 
-    public void touchSession(UUID sessionId) {
-        jdbc.update("update chat_sessions set updated_at=now() where id=?", sessionId);
+    /** Creates monthly chat_messages partitions through {@code monthsAhead} months from now. */
+    public int ensureMessagePartitions(int monthsAhead) {
+        Integer created =
+                jdbc.queryForObject(
+                        "select ensure_chat_message_partitions(now(), ?)",
+                        Integer.class,
+                        monthsAhead);
+        return created == null ? 0 : created;
     }
 
-    public void updateSessionTitleIfNeeded(UUID sessionId) {
-        List<String> rows =
-                jdbc.queryForList(
-                        "select content from chat_messages where session_id=? and role='USER' order by created_at asc limit 1",
-                        String.class,
+    /** Drops monthly partitions that ended before {@code before} and have been emptied. */
+    public int dropEmptyMessagePartitions(Instant before) {
+        Integer dropped =
+                jdbc.queryForObject(
+                        "select drop_empty_chat_message_partitions(?)",
+                        Integer.class,
+                        Timestamp.from(before));
+        return dropped == null ? 0 : dropped;
+    }
+
+    public ContextSummary findContextSummary(UUID sessionId) {
+        List<ContextSummary> rows =
+                jdbc.query(
+                        "select context_summary,context_summary_through from chat_sessions where id=?",
+                        (rs, rn) ->
+                                new ContextSummary(
+                                        rs.getString("context_summary"),
+                                        ApiDataMapper.toInstant(
+                                                rs.getTimestamp("context_summary_through"))),
                         sessionId);
-        if (rows.isEmpty()) return;
-        String title = rows.getFirst();
-        title = title.length() > 20 ? title.substring(0, 20) : title;
-        jdbc.update(
-                "update chat_sessions set title=?,updated_at=now() where id=? and title='新建对话'",
-                title,
-                sessionId);
+        return rows.isEmpty() ? new ContextSummary(null, null) : rows.getFirst();
     }
 
-    public String findTeacherBinding(UUID studentId) {
-        List<String> rows =
-                jdbc.queryForList(
-                        """
-                select teacher_id || ':' || coalesce(classroom_id::text,'')
-                from teacher_student_bindings
-                where student_id=? and status='ACTIVE' and (revoked_at is null or revoked_at > now())
-                order by coalesce(effective_from,created_at) asc limit 1
+    /** Only moves the summary forward, so a stale writer cannot roll it back. */
+    public void updateContextSummary(UUID sessionId, String text, Instant through) {
+        Timestamp throughTs = Timestamp.from(through);
+        jdbc.update(
+                """
+                update chat_sessions set context_summary=?,context_summary_through=?
+                where id=? and (context_summary_through is null or context_summary_through < ?)
                 """,
-                        String.class,
-                        studentId);
-        return rows.isEmpty() ? null : rows.getFirst();
+                text,
+                throughTs,
+                sessionId,
+                throughTs);
+    }
+
+    /** The session's compacted messages, oldest first; empty if it was never compacted. */
+    private List<ChatMessage> findArchivedMessages(UUID sessionId) {
+        List<List<ChatMessage>> rows =
+                jdbc.query(
+                        "select payload from chat_session_archives where session_id=?",
+                        (rs, rn) -> decodeArchive(sessionId, rs.getBytes("payload")),
+                        sessionId);
+        return rows.isEmpty() ? List.of() : rows.getFirst();
+    }
+
+    static byte[] encodeArchive(List<ChatMessage> messages) {
+        List<ArchivedMessage> archived =
+                messages.stream()
+                        .map(
+                                m ->
+                                        new ArchivedMessage(
+                                                m.id(),
+                                                m.role(),
+                                                m.content(),
+                                                m.citationsJson(),
+                                                m.tokenUsage(),
+                                                m.createdAt()))
+                        .toList();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            ARCHIVE_JSON.writeValue(gzip, archived);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<ChatMessage> decodeArchive(UUID sessionId, byte[] payload) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return Arrays.stream(ARCHIVE_JSON.readValue(gzip, ArchivedMessage[].class))
+                    .map(
+                            m ->
+                                    new ChatMessage(
+                                            m.id(),
+                                            sessionId,
+                                            m.role(),
+                                            m.content(),
+                                            m.citations(),
+                                            m.tokenUsage(),
+                                            m.createdAt()))
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
+
+    /** One message inside a compacted session blob; the session id is implied by the row. */
+    private record ArchivedMessage(
+            UUID id,
+            String role,
+            String content,
+            String citations,
+            int tokenUsage,
+            Instant createdAt) {}
 }
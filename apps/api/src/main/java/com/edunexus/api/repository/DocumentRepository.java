@@ -37,6 +37,8 @@ public class DocumentRepository {
                             ApiDataMapper.toInstant(rs.getTimestamp("created_at")),
                             ApiDataMapper.toInstant(rs.getTimestamp("updated_at")));
 
+    private static final String PURGE_CHECKPOINT = "document-purge";
+
     private final JdbcTemplate jdbc;
 
     public DocumentRepository(JdbcTemplate jdbc) {
@@ -49,20 +51,40 @@ public class DocumentRepository {
             String filename,
             String fileType,
             long fileSize,
-            String storagePath) {
+            String storagePath,
+            String contentSha256) {
         UUID id = UUID.randomUUID();
         jdbc.update(
-                "insert into documents(id,teacher_id,classroom_id,filename,file_type,file_size,storage_path,status,error_message) values (?,?,?,?,?,?,?,'UPLOADING',null)",
+                "insert into documents(id,teacher_id,classroom_id,filename,file_type,file_size,storage_path,content_sha256,status,error_message) values (?,?,?,?,?,?,?,?,'UPLOADING',null)",
                 id,
                 teacherId,
                 classroomId,
                 filename,
                 fileType,
                 fileSize,
-                storagePath);
+                storagePath,
+                contentSha256);
         return id;
     }
 
+    /** The newest READY document in the class with exactly this content, or {@code null}. */
+    public Document findReadyByContentHash(UUID teacherId, UUID classroomId, String contentSha256) {
+        List<Document> rows =
+                jdbc.query(
+                        SELECT_COLUMNS
+                                + """
+                                where d.classroom_id=? and d.content_sha256=? and d.teacher_id=?
+                                  and d.status='READY' and d.deleted_at is null
+                                order by d.created_at desc, d.id desc
+                                limit 1
+                                """,
+                        ROW_MAPPER,
+                        classroomId,
+                        contentSha256,
+                        teacherId);
+        return rows.isEmpty() ? null : rows.getFirst();
+    }
+
     public Document findById(UUID id) {
         List<Document> rows =
                 jdbc.query(
@@ -106,7 +128,8 @@ public class DocumentRepository {
                 join documents dup
                   on dup.teacher_id = current_doc.teacher_id
                  and dup.classroom_id = current_doc.classroom_id
-                 and lower(dup.filename) = lower(current_doc.filename)
+                 and (lower(dup.filename) = lower(current_doc.filename)
+                      or dup.content_sha256 = current_doc.content_sha256)
                  and dup.deleted_at is null
                  and dup.status = 'READY'
                  and dup.id <> current_doc.id
@@ -127,7 +150,12 @@ public class DocumentRepository {
                          row_number() over (
                            partition by d.teacher_id, d.classroom_id, lower(d.filename)
                            order by d.created_at desc, d.id desc
-                         ) as row_num
+                         ) as row_num,
+                         row_number() over (
+                           partition by d.teacher_id, d.classroom_id,
+                                        coalesce(d.content_sha256, d.id::text)
+                           order by d.created_at desc, d.id desc
+                         ) as content_row_num
                   from documents d
                   where d.deleted_at is null
                     and d.status = 'READY'
@@ -137,7 +165,7 @@ public class DocumentRepository {
                 from ranked_documents rd
                 join documents d on d.id = rd.id
                 left join classrooms c on c.id = d.classroom_id
-                where rd.row_num > 1
+                where rd.row_num > 1 or rd.content_row_num > 1
                 order by d.teacher_id, d.classroom_id, lower(d.filename), d.created_at desc, d.id desc
                 """,
                 ROW_MAPPER);
@@ -152,7 +180,8 @@ public class DocumentRepository {
         return rows.isEmpty() ? null : rows.getFirst();
     }
 
-    public List<Document> listSoftDeletedDocuments() {
+    /** Soft-deleted documents not yet purged with ids after {@code afterId}, in id order. */
+    public List<Document> listUnpurgedDeletedDocuments(UUID afterId, int limit) {
         return jdbc.query(
                 """
                 select d.id,d.teacher_id,d.classroom_id,c.name as classroom_name,d.filename,d.file_type,d.file_size,
@@ -160,9 +189,47 @@ public class DocumentRepository {
                 from documents d
                 left join classrooms c on c.id = d.classroom_id
                 where d.deleted_at is not null
-                order by d.created_at desc, d.id desc
+                  and d.purged_at is null
+                  and d.id > ?
+                order by d.id
+                limit ?
                 """,
-                ROW_MAPPER);
+                ROW_MAPPER,
+                afterId,
+                limit);
+    }
+
+    public void markPurged(List<UUID> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate(
+                "update documents set purged_at=now() where id=? and purged_at is null",
+                documentIds.stream().map(id -> new Object[] {id}).toList());
+    }
+
+    /** The last document id the purge sweep finished, or {@code null} to start from the top. */
+    public UUID purgeCheckpoint() {
+        List<String> rows =
+                jdbc.queryForList(
+                        "select position from maintenance_checkpoints where name=?",
+                        String.class,
+                        PURGE_CHECKPOINT);
+        return rows.isEmpty() ? null : UUID.fromString(rows.getFirst());
+    }
+
+    public void savePurgeCheckpoint(UUID lastId) {
+        if (lastId == null) {
+            jdbc.update("delete from maintenance_checkpoints where name=?", PURGE_CHECKPOINT);
+            return;
+        }
+        jdbc.update(
+                """
+                insert into maintenance_checkpoints(name,position,updated_at) values (?,?,now())
+                on conflict (name) do update set position=excluded.position,updated_at=now()
+                """,
+                PURGE_CHECKPOINT,
+                lastId.toString());
     }
 
     public Document ensureOwner(UUID documentId, UUID teacherId) {
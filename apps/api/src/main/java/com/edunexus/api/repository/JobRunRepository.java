@@ -0,0 +1,147 @@
+package com.edunexus.api.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class JobRunRepository {
+
+    public record ClaimedJob(
+            UUID id, UUID businessId, int attempt, String traceId, String idempotencyKey) {}
+
+    private static final RowMapper<ClaimedJob> CLAIMED_MAPPER =
+            (rs, rn) ->
+                    new ClaimedJob(
+                            (UUID) rs.getObject("id"),
+                            (UUID) rs.getObject("business_id"),
+                            rs.getInt("attempt"),
+                            rs.getString("trace_id"),
+                            rs.getString("idempotency_key"));
+
+    private final JdbcTemplate jdbc;
+
+    public JobRunRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Claims up to {@code limit} ingest jobs for {@code owner}, oldest first: PENDING ones whose
+     * retry backoff has passed and RUNNING ones whose lease or hand-off deadline has lapsed, which
+     * count as another attempt. Rows another node is claiming at the same moment are skipped rather
+     * than waited on.
+     */
+    public List<ClaimedJob> claimIngestJobs(String owner, int limit, Duration lease) {
+        return jdbc.query(
+                """
+                with next_jobs as (
+                  select id
+                  from job_runs
+                  where job_type = 'DOCUMENT_INGEST'
+                    and ((status = 'PENDING'
+                          and (next_attempt_at is null or next_attempt_at <= now()))
+                         or (status = 'RUNNING' and lease_expires_at < now()))
+                  order by created_at
+                  limit ?
+                  for update skip locked
+                )
+                update job_runs j
+                set status = 'RUNNING',
+                    attempt = case when j.status = 'RUNNING' then j.attempt + 1 else j.attempt end,
+                    lease_owner = ?,
+                    lease_expires_at = now() + make_interval(secs => ?),
+                    next_attempt_at = null,
+                    started_at = coalesce(j.started_at, now()),
+                    updated_at = now()
+                from next_jobs n
+                where j.id = n.id
+                returning j.id, j.business_id, j.attempt,
+                          coalesce(nullif(j.payload->>'traceId', ''), 'ingest-' || j.id) as trace_id,
+                          coalesce(j.payload->>'idempotencyKey', 'kb-ingest-' || j.business_id)
+                            as idempotency_key
+                """,
+                CLAIMED_MAPPER,
+                limit,
+                owner,
+                lease.toMillis() / 1000.0);
+    }
+
+    /**
+     * Extends {@code owner}'s lease on the given jobs only. A job the node gave up on keeps its
+     * lease until it lapses, so another attempt can claim it.
+     */
+    public int renewIngestLeases(String owner, Collection<UUID> jobIds, Duration lease) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(lease.toMillis() / 1000.0);
+        args.add(owner);
+        args.addAll(jobIds);
+        String placeholders = String.join(",", Collections.nCopies(jobIds.size(), "?"));
+        return jdbc.update(
+                """
+                update job_runs
+                set lease_expires_at = now() + make_interval(secs => ?), updated_at = now()
+                where lease_owner = ? and status = 'RUNNING' and job_type = 'DOCUMENT_INGEST'
+                  and id in (%s)
+                """
+                        .formatted(placeholders),
+                args.toArray());
+    }
+
+    /**
+     * Drops {@code owner}'s lease once it has finished with the job. A job still RUNNING was handed
+     * to the AI service, which reports its outcome itself; {@code handOffTimeout} bounds how long
+     * that report may take before the job is claimed again.
+     */
+    public void clearLease(UUID jobId, String owner, Duration handOffTimeout) {
+        jdbc.update(
+                """
+                update job_runs
+                set lease_owner = null, lease_expires_at = now() + make_interval(secs => ?)
+                where id = ? and lease_owner = ?
+                """,
+                handOffTimeout.toMillis() / 1000.0,
+                jobId,
+                owner);
+    }
+
+    /**
+     * Puts a job that failed transiently back in the queue as its next attempt, not to be claimed
+     * before {@code backoff} has passed.
+     */
+    public void retryLater(UUID jobId, String owner, Duration backoff, String errorMessage) {
+        jdbc.update(
+                """
+                update job_runs
+                set status = 'PENDING', attempt = attempt + 1, error_message = ?,
+                    next_attempt_at = now() + make_interval(secs => ?),
+                    lease_owner = null, lease_expires_at = null, updated_at = now()
+                where id = ? and lease_owner = ? and status = 'RUNNING'
+                """,
+                errorMessage,
+                backoff.toMillis() / 1000.0,
+                jobId,
+                owner);
+    }
+
+    /** Returns a claimed job this node could not start to the queue. */
+    public void releaseClaim(UUID jobId, String owner) {
+        jdbc.update(
+                """
+                update job_runs
+                set status = 'PENDING', lease_owner = null, lease_expires_at = null,
+                    updated_at = now()
+                where id = ? and lease_owner = ? and status = 'RUNNING'
+                """,
+                jobId,
+                owner);
+    }
+}
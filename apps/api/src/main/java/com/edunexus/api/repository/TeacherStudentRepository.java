@@ -1,5 +1,7 @@
 package com.edunexus.api.repository;
 
+import com.edunexus.api.common.ApiDataMapper;
+import com.edunexus.api.domain.TeacherBinding;
 import com.edunexus.api.domain.TeacherStudent;
 import java.util.List;
 import java.util.UUID;
@@ -39,6 +41,7 @@ public class TeacherStudentRepository {
                 teacherId);
     }
 
+    /** Authorization check; always read from the database so a revoked binding stops at once. */
     public boolean isLinked(UUID teacherId, UUID studentId) {
         var rows =
                 jdbc.queryForList(
@@ -57,4 +60,28 @@ public class TeacherStudentRepository {
             throw new SecurityException("无权限访问该学生");
         }
     }
+
+    /** Active bindings of a student, earliest first; the first one is the student's RAG scope. */
+    public List<TeacherBinding> listActiveBindings(UUID studentId) {
+        return jdbc.query(
+                """
+                select teacher_id,classroom_id,revoked_at
+                from teacher_student_bindings
+                where student_id=? and status='ACTIVE' and (revoked_at is null or revoked_at > now())
+                order by coalesce(effective_from,created_at) asc
+                """,
+                (rs, rn) ->
+                        new TeacherBinding(
+                                (UUID) rs.getObject("teacher_id"),
+                                (UUID) rs.getObject("classroom_id"),
+                                ApiDataMapper.toInstant(rs.getTimestamp("revoked_at"))),
+                studentId);
+    }
+
+    public long bindingVersion() {
+        Long version =
+                jdbc.queryForObject(
+                        "select version from teacher_binding_version where id=1", Long.class);
+        return version == null ? 0L : version;
+    }
 }
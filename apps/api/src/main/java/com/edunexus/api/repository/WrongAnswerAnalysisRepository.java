@@ -0,0 +1,61 @@
+package com.edunexus.api.repository;
+
+import com.edunexus.api.domain.WrongAnswerAnalysis;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class WrongAnswerAnalysisRepository {
+
+    private static final RowMapper<WrongAnswerAnalysis> MAPPER =
+            (rs, rn) ->
+                    new WrongAnswerAnalysis(
+                            rs.getString("content_key"),
+                            (UUID) rs.getObject("question_id"),
+                            rs.getString("encourage"),
+                            rs.getString("concept"),
+                            rs.getString("root_cause"),
+                            rs.getString("next_practice"),
+                            rs.getString("steps"));
+
+    private final JdbcTemplate jdbc;
+
+    public WrongAnswerAnalysisRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<WrongAnswerAnalysis> findByKeys(Collection<String> contentKeys) {
+        if (contentKeys.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(contentKeys.size(), "?"));
+        return jdbc.query(
+                "select content_key,question_id,encourage,concept,root_cause,next_practice,steps from wrong_answer_analyses where content_key in ("
+                        + placeholders
+                        + ")",
+                MAPPER,
+                contentKeys.toArray());
+    }
+
+    public void insert(WrongAnswerAnalysis analysis, String normalizedAnswer) {
+        jdbc.update(
+                """
+                insert into wrong_answer_analyses(content_key,question_id,normalized_answer,encourage,concept,root_cause,next_practice,steps)
+                values (?,?,?,?,?,?,?,?::jsonb)
+                on conflict (content_key) do nothing
+                """,
+                analysis.contentKey(),
+                analysis.questionId(),
+                normalizedAnswer,
+                analysis.encourage(),
+                analysis.concept(),
+                analysis.rootCause(),
+                analysis.nextPractice(),
+                analysis.stepsJson());
+    }
+}
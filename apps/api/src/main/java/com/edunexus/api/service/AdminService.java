@@ -136,7 +136,8 @@ public class AdminService {
                 countOf("select count(*) from users where role='TEACHER' and deleted_at is null"),
                 countOf("select count(*) from users where role='ADMIN' and deleted_at is null"),
                 countOf("select count(*) from chat_sessions where is_deleted=false"),
-                countOf("select count(*) from chat_messages"),
+                countOf(
+                        "select (select count(*) from chat_messages) + (select coalesce(sum(message_count),0) from chat_session_archives)"),
                 countOf("select count(*) from exercise_records"),
                 countOf("select count(*) from questions where is_active=true"),
                 countOf("select count(*) from documents where deleted_at is null"),
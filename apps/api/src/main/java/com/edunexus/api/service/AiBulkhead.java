@@ -0,0 +1,254 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit for one {@link AiClient} operation.
+ *
+ * <p>The limit follows AIMD: it grows by roughly one per limit's worth of fast successful calls
+ * and shrinks multiplicatively when the AI service answers {@code RESOURCE_EXHAUSTED}, a call
+ * times out, or a call exceeds the operation's slow-call threshold. Calls beyond the limit wait
+ * in a bounded FIFO queue; when the queue is full, or a waiter outlives {@code maxWait}, the call
+ * is shed with {@link ErrorCode#AI_RATE_LIMITED} without reaching the AI service.
+ *
+ * <p>With a null slow-call threshold (streams, whose duration tracks answer length) neither
+ * latency nor deadline expiry backs off the limit; only {@code RESOURCE_EXHAUSTED} does.
+ */
+final class AiBulkhead {
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final String operation;
+    private final int maxLimit;
+    private final int queueCapacity;
+    private final Duration maxWait;
+    private final long slowCallNanos;
+    private final boolean durationSignalsLoad;
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private final Counter queueFullRejections;
+    private final Counter waitTimeoutRejections;
+
+    private double limit;
+    private int inFlight;
+
+    AiBulkhead(
+            String operation,
+            int initialLimit,
+            int maxLimit,
+            int queueCapacity,
+            Duration maxWait,
+            Duration slowCallThreshold,
+            MeterRegistry meterRegistry) {
+        this.operation = operation;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.clamp(initialLimit, 1, this.maxLimit);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxWait = maxWait;
+        this.durationSignalsLoad = slowCallThreshold != null;
+        this.slowCallNanos = durationSignalsLoad ? slowCallThreshold.toNanos() : Long.MAX_VALUE;
+
+        Gauge.builder("edunexus.ai.bulkhead.limit", this, AiBulkhead::limit)
+                .description("Current adaptive concurrency limit")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        Gauge.builder("edunexus.ai.bulkhead.inflight", this, AiBulkhead::inFlight)
+                .description("AI calls holding a bulkhead permit")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        Gauge.builder("edunexus.ai.bulkhead.queued", this, AiBulkhead::queued)
+                .description("AI calls waiting for a bulkhead permit")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        this.queueFullRejections = rejectionCounter(meterRegistry, "queue_full");
+        this.waitTimeoutRejections = rejectionCounter(meterRegistry, "wait_timeout");
+    }
+
+    /**
+     * Runs {@code action} once a permit is available and releases the permit when the returned
+     * future settles. Cancelling the result while queued gives up the slot; once started it
+     * cancels the underlying call.
+     */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> action) {
+        CompletableFuture<Permit> acquired = acquire();
+        CompletableFuture<CompletableFuture<T>> started = new CompletableFuture<>();
+        CompletableFuture<T> result =
+                new CompletableFuture<>() {
+                    @Override
+                    public boolean cancel(boolean mayInterruptIfRunning) {
+                        acquired.cancel(mayInterruptIfRunning);
+                        started.thenAccept(call -> call.cancel(mayInterruptIfRunning));
+                        return super.cancel(mayInterruptIfRunning);
+                    }
+                };
+        acquired.whenComplete(
+                (permit, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(unwrap(error));
+                        return;
+                    }
+                    CompletableFuture<T> call;
+                    try {
+                        call = action.get();
+                    } catch (RuntimeException ex) {
+                        permit.abandon();
+                        result.completeExceptionally(ex);
+                        return;
+                    }
+                    started.complete(call);
+                    call.whenComplete(
+                            (value, callError) -> {
+                                permit.release(callError);
+                                if (callError != null) {
+                                    result.completeExceptionally(unwrap(callError));
+                                } else {
+                                    result.complete(value);
+                                }
+                            });
+                });
+        return result;
+    }
+
+    /**
+     * Returns a permit immediately if under the limit, otherwise a queued future that fails with
+     * {@link ErrorCode#AI_RATE_LIMITED} if no slot frees up within {@code maxWait}. Cancelling a
+     * queued future gives up its place.
+     */
+    CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> waiter = new CompletableFuture<>();
+        synchronized (this) {
+            if (waiters.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                waiter.complete(new Permit());
+                return waiter;
+            }
+            if (waiters.size() >= queueCapacity) {
+                queueFullRejections.increment();
+                return CompletableFuture.failedFuture(rejected());
+            }
+            waiters.addLast(waiter);
+        }
+        CompletableFuture.delayedExecutor(maxWait.toMillis(), TimeUnit.MILLISECONDS)
+                .execute(
+                        () -> {
+                            if (waiter.completeExceptionally(rejected())) {
+                                waitTimeoutRejections.increment();
+                            }
+                        });
+        waiter.whenComplete(
+                (permit, error) -> {
+                    if (error != null) {
+                        synchronized (this) {
+                            waiters.remove(waiter);
+                        }
+                    }
+                });
+        return waiter;
+    }
+
+    synchronized double limit() {
+        return limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return waiters.size();
+    }
+
+    private int currentLimit() {
+        return (int) Math.floor(limit);
+    }
+
+    private void onRelease(long latencyNanos, Throwable error, boolean sample) {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            int before = inFlight;
+            inFlight--;
+            Throwable cause = error == null ? null : unwrap(error);
+            // Abandoned or cancelled calls say nothing about AI service health.
+            if (sample) {
+                if (isOverload(cause) || (cause == null && latencyNanos > slowCallNanos)) {
+                    limit = Math.max(1.0, limit * BACKOFF_RATIO);
+                } else if (cause == null && before * 2 >= currentLimit()) {
+                    // Only grow while the limit is actually being used, not under light traffic.
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            while (inFlight < currentLimit() && !waiters.isEmpty()) {
+                CompletableFuture<Permit> next = waiters.pollFirst();
+                if (!next.isDone()) {
+                    inFlight++;
+                    granted.add(next);
+                }
+            }
+        }
+        // Complete outside the lock: waiters run their RPC setup inline.
+        for (CompletableFuture<Permit> next : granted) {
+            Permit permit = new Permit();
+            if (!next.complete(permit)) {
+                permit.abandon();
+            }
+        }
+    }
+
+    private boolean isOverload(Throwable cause) {
+        return cause instanceof DependencyException dependency
+                && (dependency.errorCode() == ErrorCode.AI_RATE_LIMITED
+                        || (durationSignalsLoad
+                                && dependency.errorCode() == ErrorCode.AI_TIMEOUT));
+    }
+
+    private DependencyException rejected() {
+        return new DependencyException(
+                ErrorCode.AI_RATE_LIMITED, "AI 服务繁忙，请稍后重试: " + operation);
+    }
+
+    private Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("edunexus.ai.bulkhead.rejected")
+                .description("AI calls shed by the bulkhead")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /** A granted slot; released exactly once with the call's outcome. */
+    final class Permit {
+        private final long grantedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                boolean cancelled = unwrap(error) instanceof CancellationException;
+                onRelease(System.nanoTime() - grantedAt, error, !cancelled);
+            }
+        }
+
+        void abandon() {
+            if (released.compareAndSet(false, true)) {
+                onRelease(0L, null, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.edunexus.api.service;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client-side RED metrics for every AI gRPC method: a latency timer tagged with the final status
+ * code (its count doubles as the per-status call counter), request/response message sizes and an
+ * in-flight gauge. Installed on each pooled channel, so hedged attempts are measured individually.
+ */
+final class AiCallMetricsInterceptor implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    AiCallMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        MethodMeters methodMeters =
+                meters.computeIfAbsent(method.getFullMethodName(), MethodMeters::new);
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(
+                next.newCall(method, callOptions)) {
+            private final long startedAt = System.nanoTime();
+            private final AtomicBoolean started = new AtomicBoolean();
+
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                started.set(true);
+                methodMeters.inFlight.incrementAndGet();
+                super.start(
+                        new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                                responseListener) {
+                            @Override
+                            public void onMessage(RespT message) {
+                                methodMeters.received.record(serializedSize(message));
+                                super.onMessage(message);
+                            }
+
+                            @Override
+                            public void onClose(Status status, Metadata trailers) {
+                                if (started.compareAndSet(true, false)) {
+                                    methodMeters.inFlight.decrementAndGet();
+                                    methodMeters.record(
+                                            status, System.nanoTime() - startedAt);
+                                }
+                                super.onClose(status, trailers);
+                            }
+                        },
+                        headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                methodMeters.sent.record(serializedSize(message));
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    private static int serializedSize(Object message) {
+        return message instanceof MessageLite protobuf ? protobuf.getSerializedSize() : 0;
+    }
+
+    private final class MethodMeters {
+        private final String method;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final DistributionSummary sent;
+        private final DistributionSummary received;
+        private final ConcurrentHashMap<Status.Code, Timer> timers = new ConcurrentHashMap<>();
+
+        MethodMeters(String method) {
+            this.method = method;
+            Gauge.builder("edunexus.ai.grpc.client.inflight", inFlight, AtomicInteger::get)
+                    .description("AI gRPC calls started and not yet closed")
+                    .tag("method", method)
+                    .register(meterRegistry);
+            this.sent = messageSize("sent");
+            this.received = messageSize("received");
+        }
+
+        void record(Status status, long elapsedNanos) {
+            timers.computeIfAbsent(status.getCode(), this::timer)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer timer(Status.Code code) {
+            return Timer.builder("edunexus.ai.grpc.client.duration")
+                    .description("AI gRPC call latency by final status")
+                    .tag("method", method)
+                    .tag("status", code.name())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private DistributionSummary messageSize(String direction) {
+            return DistributionSummary.builder("edunexus.ai.grpc.client.message.size")
+                    .description("Serialized AI gRPC message size")
+                    .baseUnit("bytes")
+                    .tag("method", method)
+                    .tag("direction", direction)
+                    .register(meterRegistry);
+        }
+    }
+}
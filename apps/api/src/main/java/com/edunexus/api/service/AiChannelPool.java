@@ -0,0 +1,312 @@
+package com.edunexus.api.service;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ConnectivityState;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Grpc;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pool of load-balanced channels to the AI service replicas.
+ *
+ * <p>Each pooled {@link ManagedChannel} resolves the full endpoint list (a static {@code
+ * host:port} list or a {@code dns:///} target) and balances calls across the resolved backends
+ * with the configured policy, so every backend gets one HTTP/2 connection per pooled channel.
+ * Calls are striped over the pooled channels round-robin, skipping channels whose connections
+ * are all failing, which keeps concurrent streams from queueing behind a single connection's
+ * {@code MAX_CONCURRENT_STREAMS}. Dead backends drop out of rotation through the LB policy's
+ * connectivity tracking, with keepalive pings detecting half-open connections.
+ */
+@Component
+public class AiChannelPool extends Channel {
+    private static final Logger log = LoggerFactory.getLogger(AiChannelPool.class);
+
+    static final String STATIC_SCHEME = "ai-static";
+
+    private final List<ManagedChannel> channels;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final String authority;
+
+    public AiChannelPool(
+            @Value("${app.ai-service-grpc-host:127.0.0.1}") String grpcHost,
+            @Value("${app.ai-service-grpc-port:50051}") int grpcPort,
+            @Value("${app.ai-service-grpc-targets:}") String targets,
+            @Value("${app.ai-service-grpc-lb-policy:round_robin}") String lbPolicy,
+            @Value("${app.ai-service-grpc-channel-pool-size:2}") int poolSize,
+            @Value("${app.ai-service-grpc-keepalive-seconds:30}") long keepAliveSeconds,
+            @Value("${app.ai-service-grpc-keepalive-timeout-seconds:10}")
+                    long keepAliveTimeoutSeconds,
+            MeterRegistry meterRegistry) {
+        String target = resolveTarget(targets, grpcHost, grpcPort);
+        String policy = resolvePolicy(lbPolicy);
+        ClientInterceptor backendMetrics = new BackendMetricsInterceptor(meterRegistry);
+        ClientInterceptor callMetrics = new AiCallMetricsInterceptor(meterRegistry);
+
+        List<ManagedChannel> built = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, poolSize); i++) {
+            built.add(
+                    ManagedChannelBuilder.forTarget(target)
+                            .usePlaintext()
+                            .defaultLoadBalancingPolicy(policy)
+                            .keepAliveTime(keepAliveSeconds, TimeUnit.SECONDS)
+                            .keepAliveTimeout(keepAliveTimeoutSeconds, TimeUnit.SECONDS)
+                            .keepAliveWithoutCalls(true)
+                            .intercept(backendMetrics, callMetrics)
+                            .build());
+        }
+        this.channels = List.copyOf(built);
+        this.authority = channels.getFirst().authority();
+
+        Gauge.builder("edunexus.ai.grpc.pool.channels.ready", this, AiChannelPool::readyChannels)
+                .description("Pooled AI gRPC channels with at least one READY backend")
+                .register(meterRegistry);
+        log.info(
+                "ai_channel_pool_ready target={} lb_policy={} pool_size={}",
+                target,
+                policy,
+                channels.size());
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        return nextChannel().newCall(method, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return authority;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.forEach(ManagedChannel::shutdownNow);
+    }
+
+    private ManagedChannel nextChannel() {
+        int size = channels.size();
+        int start = Math.floorMod(cursor.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            ManagedChannel candidate = channels.get((start + i) % size);
+            ConnectivityState state = candidate.getState(true);
+            if (state != ConnectivityState.TRANSIENT_FAILURE
+                    && state != ConnectivityState.SHUTDOWN) {
+                return candidate;
+            }
+        }
+        // Every channel is failing: fall back to plain rotation and let the call surface
+        // UNAVAILABLE rather than refusing it locally.
+        return channels.get(start);
+    }
+
+    private double readyChannels() {
+        return channels.stream()
+                .filter(channel -> channel.getState(false) == ConnectivityState.READY)
+                .count();
+    }
+
+    private static String resolveTarget(String targets, String grpcHost, int grpcPort) {
+        String raw = targets == null ? "" : targets.trim();
+        if (raw.isEmpty()) {
+            return STATIC_SCHEME + ":///" + grpcHost + ":" + grpcPort;
+        }
+        if (raw.contains("://")) {
+            // dns:///ai-service:50051 or any other scheme understood by gRPC.
+            return raw;
+        }
+        registerStaticResolver();
+        return STATIC_SCHEME + ":///" + raw.replace(" ", "");
+    }
+
+    private static String resolvePolicy(String lbPolicy) {
+        String policy = lbPolicy == null || lbPolicy.isBlank() ? "round_robin" : lbPolicy.trim();
+        if (LoadBalancerRegistry.getDefaultRegistry().getProvider(policy) == null) {
+            log.warn("ai_channel_pool_lb_policy_unavailable policy={} fallback=round_robin", policy);
+            return "round_robin";
+        }
+        return policy;
+    }
+
+    private static synchronized void registerStaticResolver() {
+        if (NameResolverRegistry.getDefaultRegistry().getProviderForScheme(STATIC_SCHEME)
+                == null) {
+            NameResolverRegistry.getDefaultRegistry().register(new StaticResolverProvider());
+        }
+    }
+
+    static {
+        registerStaticResolver();
+    }
+
+    /** Resolves {@code ai-static:///host1:port1,host2:port2} to one address group per host. */
+    private static final class StaticResolverProvider extends NameResolverProvider {
+        @Override
+        protected boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        protected int priority() {
+            return 5;
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return STATIC_SCHEME;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+            if (!STATIC_SCHEME.equals(targetUri.getScheme())) {
+                return null;
+            }
+            String path = targetUri.getPath() == null ? "" : targetUri.getPath();
+            List<String> endpoints =
+                    Arrays.stream(path.replaceFirst("^/", "").split(","))
+                            .map(String::trim)
+                            .filter(endpoint -> !endpoint.isEmpty())
+                            .toList();
+            return new NameResolver() {
+                private Listener2 listener;
+
+                @Override
+                public String getServiceAuthority() {
+                    return endpoints.isEmpty() ? "ai-service" : endpoints.getFirst();
+                }
+
+                @Override
+                public void start(Listener2 listener) {
+                    this.listener = listener;
+                    resolve();
+                }
+
+                @Override
+                public void refresh() {
+                    resolve();
+                }
+
+                @Override
+                public void shutdown() {}
+
+                /** Bad targets are reported to the channel, which fails RPCs with the status. */
+                private void resolve() {
+                    if (endpoints.isEmpty()) {
+                        listener.onError(
+                                Status.INVALID_ARGUMENT.withDescription(
+                                        "AI 服务地址列表为空: " + targetUri));
+                        return;
+                    }
+                    List<EquivalentAddressGroup> groups = new ArrayList<>();
+                    for (String endpoint : endpoints) {
+                        int idx = endpoint.lastIndexOf(':');
+                        int port = idx <= 0 ? -1 : parsePort(endpoint.substring(idx + 1));
+                        if (port < 0) {
+                            listener.onError(
+                                    Status.INVALID_ARGUMENT.withDescription(
+                                            "AI 服务地址格式非法: " + endpoint));
+                            return;
+                        }
+                        String host = endpoint.substring(0, idx);
+                        groups.add(new EquivalentAddressGroup(new InetSocketAddress(host, port)));
+                    }
+                    listener.onResult(
+                            ResolutionResult.newBuilder()
+                                    .setAddresses(groups)
+                                    .setAttributes(Attributes.EMPTY)
+                                    .build());
+                }
+            };
+        }
+    }
+
+    private static int parsePort(String text) {
+        try {
+            int port = Integer.parseInt(text);
+            return port > 0 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /** Counts completed calls per resolved backend address and gRPC status code. */
+    private static final class BackendMetricsInterceptor implements ClientInterceptor {
+        private final MeterRegistry meterRegistry;
+        private final ConcurrentHashMap<BackendStatus, Counter> counters =
+                new ConcurrentHashMap<>();
+
+        BackendMetricsInterceptor(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            return new ForwardingClientCall.SimpleForwardingClientCall<>(
+                    next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    ClientCall<ReqT, RespT> call = this;
+                    super.start(
+                            new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                                    responseListener) {
+                                @Override
+                                public void onClose(Status status, Metadata trailers) {
+                                    record(call.getAttributes(), status);
+                                    super.onClose(status, trailers);
+                                }
+                            },
+                            headers);
+                }
+            };
+        }
+
+        private void record(Attributes attributes, Status status) {
+            SocketAddress remote =
+                    attributes == null ? null : attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+            String backend = remote == null ? "unassigned" : remote.toString();
+            counters.computeIfAbsent(new BackendStatus(backend, status.getCode()), this::counter)
+                    .increment();
+        }
+
+        private Counter counter(BackendStatus key) {
+            return Counter.builder("edunexus.ai.grpc.backend.calls")
+                    .description("AI gRPC calls completed per backend")
+                    .tag("backend", key.backend())
+                    .tag("status", key.code().name())
+                    .register(meterRegistry);
+        }
+
+        private record BackendStatus(String backend, Status.Code code) {}
+    }
+}
@@ -0,0 +1,210 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count-window circuit breaker for one AI RPC.
+ *
+ * <p>While CLOSED it keeps the outcomes of the last {@code windowSize} calls and opens once at
+ * least {@code minimumCalls} have been seen and either the failure rate or the slow-call rate
+ * crosses its threshold. While OPEN every call fails immediately with {@link
+ * ErrorCode#AI_MODEL_UNAVAILABLE} instead of waiting out a 30–180 s deadline. After {@code
+ * openDuration} a few trial calls are let through (HALF_OPEN); their outcome decides whether the
+ * breaker closes again or re-opens.
+ *
+ * <p>A null slow-call threshold disables slow-call tripping, for streams whose duration tracks
+ * answer length rather than AI service health.
+ */
+final class AiCircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(AiCircuitBreaker.class);
+
+    static final int HALF_OPEN_PERMITS = 3;
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    record Settings(
+            int windowSize,
+            int minimumCalls,
+            int failureRatePercent,
+            int slowCallRatePercent,
+            Duration openDuration) {}
+
+    private final String operation;
+    private final Settings settings;
+    private final long slowCallNanos;
+    private final LongSupplier clock;
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private final Counter notPermitted;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int cursor;
+    private long openedAt;
+    private int halfOpenIssued;
+    private int halfOpenRecorded;
+
+    AiCircuitBreaker(
+            String operation,
+            Settings settings,
+            Duration slowCallThreshold,
+            MeterRegistry meterRegistry) {
+        this(operation, settings, slowCallThreshold, meterRegistry, System::nanoTime);
+    }
+
+    AiCircuitBreaker(
+            String operation,
+            Settings settings,
+            Duration slowCallThreshold,
+            MeterRegistry meterRegistry,
+            LongSupplier clock) {
+        this.operation = operation;
+        this.settings = settings;
+        this.slowCallNanos =
+                slowCallThreshold == null ? Long.MAX_VALUE : slowCallThreshold.toNanos();
+        this.clock = clock;
+        this.failures = new boolean[Math.max(1, settings.windowSize())];
+        this.slowCalls = new boolean[failures.length];
+
+        Gauge.builder("edunexus.ai.breaker.state", this, breaker -> breaker.state().ordinal())
+                .description("Circuit state: 0=closed, 1=open, 2=half-open")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        this.notPermitted =
+                Counter.builder("edunexus.ai.breaker.not_permitted")
+                        .description("AI calls failed fast by an open circuit")
+                        .tag("operation", operation)
+                        .register(meterRegistry);
+    }
+
+    /** Admits a call or throws {@link ErrorCode#AI_MODEL_UNAVAILABLE} while the circuit is open. */
+    synchronized Permit acquire() {
+        if (state == State.OPEN
+                && clock.getAsLong() - openedAt >= settings.openDuration().toNanos()) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.OPEN
+                || (state == State.HALF_OPEN && halfOpenIssued >= HALF_OPEN_PERMITS)) {
+            notPermitted.increment();
+            throw new DependencyException(
+                    ErrorCode.AI_MODEL_UNAVAILABLE, "AI 服务暂时熔断，请稍后重试: " + operation);
+        }
+        if (state == State.HALF_OPEN) {
+            halfOpenIssued++;
+        }
+        return new Permit(state);
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private synchronized void onResult(State admittedIn, long latencyNanos, Throwable error) {
+        if (admittedIn != state) {
+            // A stale result from before the last transition must not skew the new window.
+            return;
+        }
+        boolean failed = isFailure(error);
+        boolean slow = !failed && latencyNanos > slowCallNanos;
+        failures[cursor] = failed;
+        slowCalls[cursor] = slow;
+        cursor = (cursor + 1) % failures.length;
+        recorded = Math.min(recorded + 1, failures.length);
+
+        if (state == State.HALF_OPEN) {
+            halfOpenRecorded++;
+            if (tripped(halfOpenRecorded)) {
+                transition(State.OPEN);
+            } else if (halfOpenRecorded >= HALF_OPEN_PERMITS) {
+                transition(State.CLOSED);
+            }
+        } else if (recorded >= settings.minimumCalls() && tripped(recorded)) {
+            transition(State.OPEN);
+        }
+    }
+
+    private synchronized void onAbandoned(State admittedIn) {
+        if (admittedIn == State.HALF_OPEN && state == State.HALF_OPEN) {
+            halfOpenIssued--;
+        }
+    }
+
+    private boolean tripped(int sampleSize) {
+        int failed = 0;
+        int slow = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            int idx = Math.floorMod(cursor - 1 - i, failures.length);
+            failed += failures[idx] ? 1 : 0;
+            slow += slowCalls[idx] ? 1 : 0;
+        }
+        return failed * 100 >= settings.failureRatePercent() * sampleSize
+                || slow * 100 >= settings.slowCallRatePercent() * sampleSize;
+    }
+
+    private void transition(State next) {
+        log.warn("ai_circuit_transition operation={} from={} to={}", operation, state, next);
+        state = next;
+        recorded = 0;
+        cursor = 0;
+        halfOpenIssued = 0;
+        halfOpenRecorded = 0;
+        if (next == State.OPEN) {
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /** Infrastructure failures only; invalid model output or bad requests keep the circuit shut. */
+    private static boolean isFailure(Throwable error) {
+        Throwable cause =
+                error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+        return cause instanceof DependencyException dependency
+                && (dependency.errorCode() == ErrorCode.AI_TIMEOUT
+                        || dependency.errorCode() == ErrorCode.AI_MODEL_UNAVAILABLE
+                        || dependency.errorCode() == ErrorCode.SYSTEM_DEPENDENCY);
+    }
+
+    /** An admitted call; report exactly one outcome, or abandon it if it never reached the RPC. */
+    final class Permit {
+        private final State admittedIn;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permit(State admittedIn) {
+            this.admittedIn = admittedIn;
+        }
+
+        void record(long latencyNanos, Throwable error) {
+            Throwable cause =
+                    error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+            if (cause instanceof CancellationException) {
+                abandon();
+            } else if (done.compareAndSet(false, true)) {
+                onResult(admittedIn, latencyNanos, error);
+            }
+        }
+
+        void abandon() {
+            if (done.compareAndSet(false, true)) {
+                onAbandoned(admittedIn);
+            }
+        }
+    }
+}
@@ -13,8 +13,12 @@ import com.edunexus.api.grpc.ai.v1.ExerciseAnalysisRequest;
 import com.edunexus.api.grpc.ai.v1.ExerciseAnalysisResponse;
 import com.edunexus.api.grpc.ai.v1.ExerciseAnalysisServiceGrpc;
 import com.edunexus.api.grpc.ai.v1.GeneratedQuestion;
+import com.edunexus.api.grpc.ai.v1.KbDeleteBatchRequest;
+import com.edunexus.api.grpc.ai.v1.KbDeleteBatchResponse;
 import com.edunexus.api.grpc.ai.v1.KbDeleteRequest;
 import com.edunexus.api.grpc.ai.v1.KbDeleteResponse;
+import com.edunexus.api.grpc.ai.v1.KbIngestChunk;
+import com.edunexus.api.grpc.ai.v1.KbIngestHeader;
 import com.edunexus.api.grpc.ai.v1.KbIngestRequest;
 import com.edunexus.api.grpc.ai.v1.KbIngestResponse;
 import com.edunexus.api.grpc.ai.v1.KnowledgeBaseServiceGrpc;
@@ -22,338 +26,921 @@ import com.edunexus.api.grpc.ai.v1.LessonPlanGenerateRequest;
 import com.edunexus.api.grpc.ai.v1.LessonPlanGenerateResponse;
 import com.edunexus.api.grpc.ai.v1.LessonPlanServiceGrpc;
 import com.edunexus.api.grpc.ai.v1.RagChatServiceGrpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.ClientInterceptor;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.AbstractStub;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.MetadataUtils;
-import java.nio.charset.StandardCharsets;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import javax.annotation.PreDestroy;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
 @Service
 public class AiClient {
     private static final Logger log = LoggerFactory.getLogger(AiClient.class);
 
-    private final String serviceToken;
+    static final int INGEST_CHUNK_BYTES = 256 * 1024;
+    // Same cap as MAX_DELETE_BATCH in the AI service; larger DeleteBatch calls are rejected there.
+    static final int MAX_DELETE_BATCH = 500;
+
+    private static final Metadata.Key<String> SERVICE_TOKEN_HEADER =
+            Metadata.Key.of("X-Service-Token", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> TRACE_ID_HEADER =
+            Metadata.Key.of("X-Trace-Id", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> IDEMPOTENCY_KEY_HEADER =
+            Metadata.Key.of("Idempotency-Key", Metadata.ASCII_STRING_MARSHALLER);
+
     private final long aiQuestionTimeoutSeconds;
     private final long lessonPlanTimeoutSeconds;
     private final long kbIngestTimeoutSeconds;
     private final long kbDeleteTimeoutSeconds;
 
-    private final ManagedChannel grpcChannel;
-    private final RagChatServiceGrpc.RagChatServiceBlockingStub chatStub;
-    private final ExerciseAnalysisServiceGrpc.ExerciseAnalysisServiceBlockingStub analysisStub;
-    private final AiQuestionServiceGrpc.AiQuestionServiceBlockingStub aiQuestionStub;
-    private final LessonPlanServiceGrpc.LessonPlanServiceBlockingStub lessonPlanStub;
-    private final KnowledgeBaseServiceGrpc.KnowledgeBaseServiceBlockingStub kbStub;
+    private final RagChatServiceGrpc.RagChatServiceStub chatStreamStub;
+    private final RagChatServiceGrpc.RagChatServiceFutureStub chatFutureStub;
+    private final ExerciseAnalysisServiceGrpc.ExerciseAnalysisServiceFutureStub analysisStub;
+    private final AiQuestionServiceGrpc.AiQuestionServiceFutureStub aiQuestionStub;
+    private final LessonPlanServiceGrpc.LessonPlanServiceFutureStub lessonPlanStub;
+    private final KnowledgeBaseServiceGrpc.KnowledgeBaseServiceFutureStub kbStub;
+    private final KnowledgeBaseServiceGrpc.KnowledgeBaseServiceStub kbStreamStub;
+    private final TaskExecutor ingestReader;
+    private final Map<String, Guard> guards;
+    private final Timer chatStreamTimeToFirstToken;
+    private final DistributionSummary chatStreamTokenRate;
+
+    public record HistoryTurn(String role, String content) {}
+
+    public record ChatCall(
+            String traceId,
+            UUID sessionId,
+            UUID studentId,
+            String message,
+            List<HistoryTurn> history,
+            String teacherId,
+            String classId) {}
+
+    public record CitationView(
+            String documentId, String filename, int chunkIndex, String content, float score) {}
+
+    public record ChatResult(
+            String answer,
+            List<CitationView> citations,
+            String provider,
+            String model,
+            int latencyMs,
+            int promptTokens,
+            int completionTokens) {
+
+        public int totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    public record ChatStreamChunk(String delta, List<CitationView> citations) {}
+
+    public record AnalysisCall(
+            String traceId,
+            String idempotencyKey,
+            String question,
+            String userAnswer,
+            String correctAnswer,
+            List<String> knowledgePoints,
+            String teacherSuggestion) {}
+
+    public record AnalysisResult(
+            String encourage,
+            String concept,
+            String rootCause,
+            String nextPractice,
+            List<String> steps) {}
 
-    public record ChatStreamChunk(String delta, List<Map<String, Object>> citations) {}
+    /** {@code weaknessProfileJson} and {@code teacherSuggestionsJson} travel as JSON strings. */
+    public record QuestionCall(
+            String traceId,
+            String idempotencyKey,
+            UUID studentId,
+            int count,
+            String subject,
+            String difficulty,
+            List<String> conceptTags,
+            String weaknessProfileJson,
+            String teacherSuggestionsJson) {}
+
+    public record GeneratedQuestionView(
+            String questionType,
+            String content,
+            Map<String, String> options,
+            String correctAnswer,
+            String explanation,
+            List<String> knowledgePoints) {}
+
+    public record QuestionResult(String routerDecision, List<GeneratedQuestionView> questions) {}
+
+    public record LessonPlanCall(
+            String traceId,
+            String idempotencyKey,
+            UUID teacherId,
+            String topic,
+            String gradeLevel,
+            int durationMins) {}
+
+    public record LessonPlanResult(
+            String contentMd, String provider, String model, int latencyMs) {}
+
+    public record IngestCall(
+            String traceId,
+            String idempotencyKey,
+            UUID jobId,
+            UUID documentId,
+            UUID teacherId,
+            UUID classId,
+            String filename,
+            String fileType) {}
+
+    public record IngestResult(String status, String jobId, boolean background, int chunks) {}
+
+    public record DeleteCall(String traceId, String documentId, String idempotencyKey) {}
+
+    public record DeleteResult(String status) {}
+
+    public record DeleteBatchCall(
+            String traceId, List<String> documentIds, String idempotencyKey) {}
+
+    public record DeleteBatchItem(String documentId, String status, String errorMessage) {
+        public boolean ok() {
+            return "ok".equals(status);
+        }
+    }
+
+    public record DeleteBatchResult(List<DeleteBatchItem> results) {}
 
     public AiClient(
-            @Value("${app.ai-service-grpc-host:127.0.0.1}") String grpcHost,
-            @Value("${app.ai-service-grpc-port:50051}") int grpcPort,
+            AiChannelPool channelPool,
             @Value("${app.ai-question-timeout-seconds:150}") long aiQuestionTimeoutSeconds,
             @Value("${app.lesson-plan-timeout-seconds:180}") long lessonPlanTimeoutSeconds,
             @Value("${app.kb-ingest-timeout-seconds:180}") long kbIngestTimeoutSeconds,
             @Value("${app.kb-delete-timeout-seconds:60}") long kbDeleteTimeoutSeconds,
-            @Value("${app.ai-service-token}") String serviceToken) {
-        this.serviceToken = serviceToken;
+            @Value("${app.ai-service-token}") String serviceToken,
+            @Value("${app.ai-bulkhead-interactive-max-limit:32}") int interactiveMaxLimit,
+            @Value("${app.ai-bulkhead-batch-max-limit:4}") int batchMaxLimit,
+            @Value("${app.ai-bulkhead-stream-max-limit:2000}") int streamMaxLimit,
+            @Value("${app.ai-bulkhead-queue-size:32}") int bulkheadQueueSize,
+            @Value("${app.ai-bulkhead-max-wait-ms:5000}") long bulkheadMaxWaitMs,
+            @Value("${app.ai-breaker-window-size:20}") int breakerWindowSize,
+            @Value("${app.ai-breaker-minimum-calls:10}") int breakerMinimumCalls,
+            @Value("${app.ai-breaker-failure-rate-percent:50}") int breakerFailureRatePercent,
+            @Value("${app.ai-breaker-slow-call-rate-percent:80}") int breakerSlowCallRatePercent,
+            @Value("${app.ai-breaker-open-seconds:30}") long breakerOpenSeconds,
+            @Value("${app.ai-hedge-enabled:true}") boolean hedgeEnabled,
+            @Value("${app.ai-hedge-min-delay-ms:200}") long hedgeMinDelayMs,
+            @Qualifier("ingestUploadExecutor") TaskExecutor ingestReader,
+            MeterRegistry meterRegistry) {
         this.aiQuestionTimeoutSeconds = aiQuestionTimeoutSeconds;
         this.lessonPlanTimeoutSeconds = lessonPlanTimeoutSeconds;
         this.kbIngestTimeoutSeconds = kbIngestTimeoutSeconds;
         this.kbDeleteTimeoutSeconds = kbDeleteTimeoutSeconds;
+        this.ingestReader = ingestReader;
+
+        // The service token never changes, so its header is built once and bound to every stub.
+        Metadata serviceHeaders = new Metadata();
+        serviceHeaders.put(SERVICE_TOKEN_HEADER, serviceToken);
+        ClientInterceptor serviceAuth = MetadataUtils.newAttachHeadersInterceptor(serviceHeaders);
+        this.chatStreamStub =
+                RagChatServiceGrpc.newStub(channelPool).withInterceptors(serviceAuth);
+        this.chatFutureStub =
+                RagChatServiceGrpc.newFutureStub(channelPool).withInterceptors(serviceAuth);
+        this.analysisStub =
+                ExerciseAnalysisServiceGrpc.newFutureStub(channelPool)
+                        .withInterceptors(serviceAuth);
+        this.aiQuestionStub =
+                AiQuestionServiceGrpc.newFutureStub(channelPool).withInterceptors(serviceAuth);
+        this.lessonPlanStub =
+                LessonPlanServiceGrpc.newFutureStub(channelPool).withInterceptors(serviceAuth);
+        this.kbStub =
+                KnowledgeBaseServiceGrpc.newFutureStub(channelPool).withInterceptors(serviceAuth);
+        this.kbStreamStub =
+                KnowledgeBaseServiceGrpc.newStub(channelPool).withInterceptors(serviceAuth);
+
+        // Each operation gets its own breaker and bulkhead so slow batch generation cannot starve
+        // interactive chat; only idempotent unary calls are hedged.
+        GuardDefaults defaults =
+                new GuardDefaults(
+                        bulkheadQueueSize,
+                        Duration.ofMillis(bulkheadMaxWaitMs),
+                        new AiCircuitBreaker.Settings(
+                                breakerWindowSize,
+                                breakerMinimumCalls,
+                                breakerFailureRatePercent,
+                                breakerSlowCallRatePercent,
+                                Duration.ofSeconds(breakerOpenSeconds)),
+                        hedgeEnabled,
+                        hedgeMinDelayMs,
+                        meterRegistry);
+        int interactive = interactiveMaxLimit;
+        int batch = batchMaxLimit;
+        this.guards =
+                Map.of(
+                        "chat", defaults.create("chat", interactive, 30, true),
+                        "chatStream", defaults.createStream("chatStream", streamMaxLimit),
+                        "analyze", defaults.create("analyze", interactive, 35, false),
+                        "analyze.precompute",
+                                defaults.create("analyze.precompute", batch, 35, false),
+                        "generateQuestions",
+                                defaults.create(
+                                        "generateQuestions",
+                                        batch,
+                                        aiQuestionTimeoutSeconds,
+                                        false),
+                        "generatePlan",
+                                defaults.create(
+                                        "generatePlan", batch, lessonPlanTimeoutSeconds, false),
+                        "kb.ingest",
+                                defaults.create("kb.ingest", batch, kbIngestTimeoutSeconds, false),
+                        "kb.delete",
+                                defaults.create(
+                                        "kb.delete", interactive, kbDeleteTimeoutSeconds, true),
+                        "kb.deleteBatch",
+                                defaults.create(
+                                        "kb.deleteBatch", batch, kbDeleteTimeoutSeconds, false));
 
-        this.grpcChannel =
-                ManagedChannelBuilder.forAddress(grpcHost, grpcPort).usePlaintext().build();
+        this.chatStreamTimeToFirstToken =
+                Timer.builder("edunexus.ai.chat.stream.ttft")
+                        .description("Time from sending a chat stream request to its first token")
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        // The stream carries no usage counts; each non-empty delta frame is one model token.
+        this.chatStreamTokenRate =
+                DistributionSummary.builder("edunexus.ai.chat.stream.tokens_per_second")
+                        .description("Decode speed of completed chat streams")
+                        .baseUnit("tokens/s")
+                        .register(meterRegistry);
+    }
+
+    /** Resilience wrappers for one operation; {@code hedger} is null for non-hedged calls. */
+    record Guard(AiCircuitBreaker breaker, AiBulkhead bulkhead, AiHedger hedger) {
 
-        this.chatStub = RagChatServiceGrpc.newBlockingStub(grpcChannel);
-        this.analysisStub = ExerciseAnalysisServiceGrpc.newBlockingStub(grpcChannel);
-        this.aiQuestionStub = AiQuestionServiceGrpc.newBlockingStub(grpcChannel);
-        this.lessonPlanStub = LessonPlanServiceGrpc.newBlockingStub(grpcChannel);
-        this.kbStub = KnowledgeBaseServiceGrpc.newBlockingStub(grpcChannel);
+        /** Fails fast while the circuit is open, then runs the attempt behind the bulkhead. */
+        <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> attempt) {
+            AiCircuitBreaker.Permit admitted;
+            try {
+                admitted = breaker.acquire();
+            } catch (DependencyException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            AtomicBoolean started = new AtomicBoolean();
+            CompletableFuture<T> result =
+                    bulkhead.submit(
+                            () -> {
+                                long startedAt = System.nanoTime();
+                                CompletableFuture<T> call =
+                                        hedger == null ? attempt.get() : hedger.execute(attempt);
+                                call.whenComplete(
+                                        (value, error) ->
+                                                admitted.record(
+                                                        System.nanoTime() - startedAt, error));
+                                started.set(true);
+                                return call;
+                            });
+            // Shed or cancelled by the bulkhead before reaching the RPC: no outcome to report.
+            // Once started, the call's own callback records the outcome; result can settle first.
+            result.whenComplete(
+                    (value, error) -> {
+                        if (!started.get()) {
+                            admitted.abandon();
+                        }
+                    });
+            return result;
+        }
     }
 
-    @PreDestroy
-    public void shutdown() {
-        if (grpcChannel != null) {
-            grpcChannel.shutdownNow();
+    private record GuardDefaults(
+            int queueSize,
+            Duration maxWait,
+            AiCircuitBreaker.Settings breakerSettings,
+            boolean hedgeEnabled,
+            long hedgeMinDelayMs,
+            MeterRegistry meterRegistry) {
+
+        /** Starts at half the max limit; a call counts as slow once it uses half its deadline. */
+        Guard create(String operation, int maxLimit, long deadlineSeconds, boolean hedgeable) {
+            Duration slowCall = Duration.ofSeconds(deadlineSeconds).dividedBy(2);
+            return new Guard(
+                    new AiCircuitBreaker(operation, breakerSettings, slowCall, meterRegistry),
+                    new AiBulkhead(
+                            operation,
+                            Math.max(1, maxLimit / 2),
+                            maxLimit,
+                            queueSize,
+                            maxWait,
+                            slowCall,
+                            meterRegistry),
+                    hedgeable && hedgeEnabled
+                            ? new AiHedger(operation, hedgeMinDelayMs, meterRegistry)
+                            : null);
+        }
+
+        /**
+         * A stream's result settles only at end-of-stream, so its duration says how long the
+         * answer was, not how healthy the AI service is: the breaker trips on failures only and
+         * the bulkhead backs off on {@code RESOURCE_EXHAUSTED} only.
+         */
+        Guard createStream(String operation, int maxLimit) {
+            return new Guard(
+                    new AiCircuitBreaker(operation, breakerSettings, null, meterRegistry),
+                    new AiBulkhead(
+                            operation,
+                            Math.max(1, maxLimit / 2),
+                            maxLimit,
+                            queueSize,
+                            maxWait,
+                            null,
+                            meterRegistry),
+                    null);
         }
     }
 
-    private <T extends io.grpc.stub.AbstractBlockingStub<T>> T authorize(
+    /**
+     * Attaches the per-call trace and idempotency headers; the service token is already bound to
+     * every stub at construction time.
+     */
+    private static <T extends AbstractStub<T>> T withCallHeaders(
             T stub, String traceId, String idemKey) {
+        boolean hasTrace = traceId != null && !traceId.isBlank();
+        boolean hasIdem = idemKey != null && !idemKey.isBlank();
+        if (!hasTrace && !hasIdem) {
+            return stub;
+        }
         Metadata metadata = new Metadata();
-        metadata.put(
-                Metadata.Key.of("X-Service-Token", Metadata.ASCII_STRING_MARSHALLER), serviceToken);
-        if (traceId != null && !traceId.isBlank()) {
-            metadata.put(Metadata.Key.of("X-Trace-Id", Metadata.ASCII_STRING_MARSHALLER), traceId);
+        if (hasTrace) {
+            metadata.put(TRACE_ID_HEADER, traceId);
         }
-        if (idemKey != null && !idemKey.isBlank()) {
-            metadata.put(
-                    Metadata.Key.of("Idempotency-Key", Metadata.ASCII_STRING_MARSHALLER), idemKey);
+        if (hasIdem) {
+            metadata.put(IDEMPOTENCY_KEY_HEADER, idemKey);
         }
         return stub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata));
     }
 
-    public Map<String, Object> chat(Map<String, Object> body) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
+    public ChatResult chat(ChatCall call) {
+        return await(chatAsync(call));
+    }
+
+    public CompletableFuture<ChatResult> chatAsync(ChatCall call) {
+        String traceId = traceIdOrRandom(call.traceId());
         long startMs = System.currentTimeMillis();
-        try {
-            ChatRequest request = buildChatRequest(body, traceId);
-
-            ChatResponse response =
-                    authorize(chatStub, traceId, "")
-                            .withDeadlineAfter(30, TimeUnit.SECONDS)
-                            .chat(request);
-
-            log.info(
-                    "ai_call_grpc path=chat latency_ms={} trace_id={}",
-                    (System.currentTimeMillis() - startMs),
-                    traceId);
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("answer", response.getAnswer());
-            result.put("provider", response.getProvider());
-            result.put("model", response.getModel());
-            result.put("latencyMs", response.getLatencyMs());
-
-            List<Map<String, Object>> citations = new ArrayList<>();
-            for (Citation citation : response.getCitationsList()) {
-                Map<String, Object> item = new LinkedHashMap<>();
-                item.put("documentId", citation.getDocumentId());
-                item.put("filename", citation.getFilename());
-                item.put("chunkIndex", citation.getChunkIndex());
-                item.put("content", citation.getContent());
-                item.put("score", citation.getScore());
-                citations.add(item);
-            }
-            result.put("citations", citations);
+        ChatRequest request = buildChatRequest(call, traceId, false);
 
-            Map<String, Object> tokenUsage = new LinkedHashMap<>();
-            tokenUsage.put("prompt", response.getTokenUsage().getPrompt());
-            tokenUsage.put("completion", response.getTokenUsage().getCompletion());
-            result.put("tokenUsage", tokenUsage);
+        return call(
+                        "chat",
+                        () ->
+                                withCallHeaders(chatFutureStub, traceId, "")
+                                        .withDeadlineAfter(30, TimeUnit.SECONDS)
+                                        .chat(request))
+                .thenApply(
+                        response -> {
+                            log.info(
+                                    "ai_call_grpc path=chat latency_ms={} trace_id={}",
+                                    (System.currentTimeMillis() - startMs),
+                                    traceId);
+                            return new ChatResult(
+                                    response.getAnswer(),
+                                    toCitationViews(response.getCitationsList()),
+                                    response.getProvider(),
+                                    response.getModel(),
+                                    response.getLatencyMs(),
+                                    response.getTokenUsage().getPrompt(),
+                                    response.getTokenUsage().getCompletion());
+                        });
+    }
 
-            return result;
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("chat", ex);
-        }
+    public void chatStream(ChatCall call, Consumer<ChatStreamChunk> onChunk) {
+        await(chatStreamAsync(call, onChunk));
     }
 
-    public void chatStream(Map<String, Object> body, Consumer<ChatStreamChunk> onChunk) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
-        try {
-            ChatRequest request =
-                    buildChatRequest(body, traceId).toBuilder().setStream(true).build();
-            var stream =
-                    authorize(chatStub, traceId, "")
-                            .withDeadlineAfter(70, TimeUnit.SECONDS)
-                            .chatStream(request);
-
-            while (stream.hasNext()) {
-                ChatStreamResponse frame = stream.next();
-                List<Map<String, Object>> citations = new ArrayList<>();
-                for (Citation citation : frame.getCitationsList()) {
-                    Map<String, Object> item = new LinkedHashMap<>();
-                    item.put("documentId", citation.getDocumentId());
-                    item.put("filename", citation.getFilename());
-                    item.put("chunkIndex", citation.getChunkIndex());
-                    item.put("content", citation.getContent());
-                    item.put("score", citation.getScore());
-                    citations.add(item);
-                }
-                onChunk.accept(new ChatStreamChunk(frame.getDelta(), citations));
-            }
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("chatStream", ex);
-        }
+    /**
+     * Streams a chat answer without holding a thread: {@code onChunk} runs on a gRPC callback
+     * thread, one frame at a time, and the next frame is only requested once it returns, so a
+     * slow consumer back-pressures the AI service. Cancelling the result cancels the RPC.
+     */
+    public CompletableFuture<Void> chatStreamAsync(
+            ChatCall call, Consumer<ChatStreamChunk> onChunk) {
+        String traceId = traceIdOrRandom(call.traceId());
+        ChatRequest request = buildChatRequest(call, traceId, true);
+        return guards.get("chatStream")
+                .run(
+                        () -> {
+                            ChatStreamReceiver receiver = new ChatStreamReceiver(onChunk);
+                            withCallHeaders(chatStreamStub, traceId, "")
+                                    .withDeadlineAfter(70, TimeUnit.SECONDS)
+                                    .chatStream(request, receiver);
+                            return receiver.result;
+                        });
     }
 
-    public Map<String, Object> analyzeWrong(Map<String, Object> body) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
-        try {
-            ExerciseAnalysisRequest.Builder reqBuilder =
-                    ExerciseAnalysisRequest.newBuilder()
-                            .setTraceId(traceId)
-                            .setIdempotencyKey(getString(body, "idempotencyKey", ""))
-                            .setQuestion(getString(body, "question", ""))
-                            .setUserAnswer(getString(body, "userAnswer", ""))
-                            .setCorrectAnswer(getString(body, "correctAnswer", ""))
-                            .setTeacherSuggestion(getString(body, "teacherSuggestion", ""));
-
-            if (body.get("knowledgePoints") instanceof List points) {
-                for (Object point : points) {
-                    reqBuilder.addKnowledgePoints(String.valueOf(point));
-                }
-            }
+    public AnalysisResult analyzeWrong(AnalysisCall call) {
+        return await(analyzeWrongAsync(call));
+    }
 
-            ExerciseAnalysisResponse response =
-                    authorize(analysisStub, traceId, "")
-                            .withDeadlineAfter(35, TimeUnit.SECONDS)
-                            .analyze(reqBuilder.build());
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("encourage", response.getEncourage());
-            result.put("concept", response.getConcept());
-            result.put("rootCause", response.getRootCause());
-            result.put("nextPractice", response.getNextPractice());
-            result.put("steps", new ArrayList<>(response.getStepsList()));
-            return result;
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("analyze", ex);
-        }
+    public CompletableFuture<AnalysisResult> analyzeWrongAsync(AnalysisCall call) {
+        return analyzeWrongAsync("analyze", call);
     }
 
-    public Map<String, Object> generateQuestions(Map<String, Object> body) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
-        try {
-            AiQuestionGenerateRequest.Builder reqBuilder =
-                    AiQuestionGenerateRequest.newBuilder()
-                            .setTraceId(traceId)
-                            .setIdempotencyKey(getString(body, "idempotencyKey", ""))
-                            .setStudentId(getString(body, "studentId", ""))
-                            .setSubject(getString(body, "subject", ""))
-                            .setDifficulty(getString(body, "difficulty", ""))
-                            .setWeaknessProfile(getString(body, "weaknessProfile", ""))
-                            .setTeacherSuggestions(getString(body, "teacherSuggestions", ""));
-
-            if (body.get("count") instanceof Number count) {
-                reqBuilder.setCount(count.intValue());
-            }
-            if (body.get("conceptTags") instanceof List tags) {
-                for (Object tag : tags) {
-                    reqBuilder.addConceptTags(String.valueOf(tag));
-                }
-            }
+    /**
+     * Background variant of {@link #analyzeWrongAsync} that runs on the batch lane, so a burst of
+     * submissions queues behind its own bulkhead instead of the one students wait on.
+     */
+    public CompletableFuture<AnalysisResult> precomputeWrongAsync(AnalysisCall call) {
+        return analyzeWrongAsync("analyze.precompute", call);
+    }
 
-            AiQuestionGenerateResponse response =
-                    authorize(aiQuestionStub, traceId, "")
-                            .withDeadlineAfter(aiQuestionTimeoutSeconds, TimeUnit.SECONDS)
-                            .generate(reqBuilder.build());
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("routerDecision", response.getRouterDecision());
-
-            List<Map<String, Object>> questions = new ArrayList<>();
-            for (GeneratedQuestion question : response.getQuestionsList()) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                row.put("question_type", question.getQuestionType());
-                row.put("content", question.getContent());
-                row.put("options", question.getOptionsMap());
-                row.put("correct_answer", question.getCorrectAnswer());
-                row.put("explanation", question.getExplanation());
-                row.put("knowledge_points", new ArrayList<>(question.getKnowledgePointsList()));
-                questions.add(row);
-            }
-            result.put("questions", questions);
-            return result;
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("generateQuestions", ex);
-        }
+    private CompletableFuture<AnalysisResult> analyzeWrongAsync(
+            String operation, AnalysisCall call) {
+        String traceId = traceIdOrRandom(call.traceId());
+        ExerciseAnalysisRequest request =
+                ExerciseAnalysisRequest.newBuilder()
+                        .setTraceId(traceId)
+                        .setIdempotencyKey(nullToEmpty(call.idempotencyKey()))
+                        .setQuestion(nullToEmpty(call.question()))
+                        .setUserAnswer(nullToEmpty(call.userAnswer()))
+                        .setCorrectAnswer(nullToEmpty(call.correctAnswer()))
+                        .setTeacherSuggestion(nullToEmpty(call.teacherSuggestion()))
+                        .addAllKnowledgePoints(nullToEmpty(call.knowledgePoints()))
+                        .build();
+
+        return call(
+                        operation,
+                        () ->
+                                withCallHeaders(analysisStub, traceId, "")
+                                        .withDeadlineAfter(35, TimeUnit.SECONDS)
+                                        .analyze(request))
+                .thenApply(
+                        response ->
+                                new AnalysisResult(
+                                        response.getEncourage(),
+                                        response.getConcept(),
+                                        response.getRootCause(),
+                                        response.getNextPractice(),
+                                        List.copyOf(response.getStepsList())));
     }
 
-    public Map<String, Object> generatePlan(Map<String, Object> body) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
-        try {
-            LessonPlanGenerateRequest.Builder reqBuilder =
-                    LessonPlanGenerateRequest.newBuilder()
-                            .setTraceId(traceId)
-                            .setIdempotencyKey(getString(body, "idempotencyKey", ""))
-                            .setTopic(getString(body, "topic", ""))
-                            .setGradeLevel(getString(body, "gradeLevel", ""))
-                            .setTeacherId(getString(body, "teacherId", ""));
-            if (body.get("durationMins") instanceof Number duration) {
-                reqBuilder.setDurationMins(duration.intValue());
-            }
+    public QuestionResult generateQuestions(QuestionCall call) {
+        return await(generateQuestionsAsync(call));
+    }
 
-            LessonPlanGenerateResponse response =
-                    authorize(lessonPlanStub, traceId, "")
-                            .withDeadlineAfter(lessonPlanTimeoutSeconds, TimeUnit.SECONDS)
-                            .generate(reqBuilder.build());
+    public CompletableFuture<QuestionResult> generateQuestionsAsync(QuestionCall call) {
+        String traceId = traceIdOrRandom(call.traceId());
+        AiQuestionGenerateRequest request =
+                AiQuestionGenerateRequest.newBuilder()
+                        .setTraceId(traceId)
+                        .setIdempotencyKey(nullToEmpty(call.idempotencyKey()))
+                        .setStudentId(call.studentId() == null ? "" : call.studentId().toString())
+                        .setCount(call.count())
+                        .setSubject(nullToEmpty(call.subject()))
+                        .setDifficulty(nullToEmpty(call.difficulty()))
+                        .addAllConceptTags(nullToEmpty(call.conceptTags()))
+                        .setWeaknessProfile(nullToEmpty(call.weaknessProfileJson()))
+                        .setTeacherSuggestions(nullToEmpty(call.teacherSuggestionsJson()))
+                        .build();
 
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("contentMd", response.getContentMd());
-            result.put("provider", response.getProvider());
-            result.put("model", response.getModel());
-            result.put("latencyMs", response.getLatencyMs());
-            return result;
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("generatePlan", ex);
-        }
+        return call(
+                        "generateQuestions",
+                        () ->
+                                withCallHeaders(aiQuestionStub, traceId, "")
+                                        .withDeadlineAfter(
+                                                aiQuestionTimeoutSeconds, TimeUnit.SECONDS)
+                                        .generate(request))
+                .thenApply(
+                        response -> {
+                            List<GeneratedQuestionView> questions =
+                                    new ArrayList<>(response.getQuestionsCount());
+                            for (GeneratedQuestion question : response.getQuestionsList()) {
+                                questions.add(
+                                        new GeneratedQuestionView(
+                                                question.getQuestionType(),
+                                                question.getContent(),
+                                                question.getOptionsMap(),
+                                                question.getCorrectAnswer(),
+                                                question.getExplanation(),
+                                                List.copyOf(question.getKnowledgePointsList())));
+                            }
+                            return new QuestionResult(response.getRouterDecision(), questions);
+                        });
     }
 
-    public Map<String, Object> ingestKb(Map<String, Object> body) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
-        String idemKey = getString(body, "idempotencyKey", "");
-        String classId = getString(body, "classId", "");
-        if (classId.isBlank()) {
-            throw new IllegalArgumentException("classId is required");
+    public LessonPlanResult generatePlan(LessonPlanCall call) {
+        return await(generatePlanAsync(call));
+    }
+
+    public CompletableFuture<LessonPlanResult> generatePlanAsync(LessonPlanCall call) {
+        String traceId = traceIdOrRandom(call.traceId());
+        LessonPlanGenerateRequest request =
+                LessonPlanGenerateRequest.newBuilder()
+                        .setTraceId(traceId)
+                        .setIdempotencyKey(nullToEmpty(call.idempotencyKey()))
+                        .setTopic(nullToEmpty(call.topic()))
+                        .setGradeLevel(nullToEmpty(call.gradeLevel()))
+                        .setDurationMins(call.durationMins())
+                        .setTeacherId(call.teacherId() == null ? "" : call.teacherId().toString())
+                        .build();
+
+        return call(
+                        "generatePlan",
+                        () ->
+                                withCallHeaders(lessonPlanStub, traceId, "")
+                                        .withDeadlineAfter(
+                                                lessonPlanTimeoutSeconds, TimeUnit.SECONDS)
+                                        .generate(request))
+                .thenApply(
+                        response ->
+                                new LessonPlanResult(
+                                        response.getContentMd(),
+                                        response.getProvider(),
+                                        response.getModel(),
+                                        response.getLatencyMs()));
+    }
+
+    public IngestResult ingestKb(IngestCall call, byte[] fileContent) {
+        return await(ingestKbAsync(call, fileContent));
+    }
+
+    public CompletableFuture<IngestResult> ingestKbAsync(IngestCall call, byte[] fileContent) {
+        requireClassId(call);
+        if (fileContent == null) {
+            throw new IllegalArgumentException("fileContent is required");
         }
-        byte[] fileContent = toBytes(body.get("fileContent"));
+        String traceId = traceIdOrRandom(call.traceId());
+        String idemKey = nullToEmpty(call.idempotencyKey());
+        KbIngestHeader header = toIngestHeader(call, traceId, idemKey, fileContent.length);
 
         KbIngestRequest request =
                 KbIngestRequest.newBuilder()
                         .setTraceId(traceId)
                         .setIdempotencyKey(idemKey)
-                        .setJobId(getString(body, "jobId", ""))
-                        .setDocumentId(getString(body, "documentId", ""))
-                        .setTeacherId(getString(body, "teacherId", ""))
-                        .setClassId(classId)
-                        .setFilename(getString(body, "filename", "upload.bin"))
-                        .setFileType(getString(body, "fileType", "application/octet-stream"))
+                        .setJobId(header.getJobId())
+                        .setDocumentId(header.getDocumentId())
+                        .setTeacherId(header.getTeacherId())
+                        .setClassId(header.getClassId())
+                        .setFilename(header.getFilename())
+                        .setFileType(header.getFileType())
                         .setFileContent(ByteString.copyFrom(fileContent))
                         .build();
 
-        try {
-            KbIngestResponse response =
-                    authorize(kbStub, traceId, idemKey)
-                            .withDeadlineAfter(kbIngestTimeoutSeconds, TimeUnit.SECONDS)
-                            .ingest(request);
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("status", response.getStatus());
-            result.put("jobId", response.getJobId());
-            result.put("background", response.getBackground());
-            result.put("chunks", response.getChunks());
-            return result;
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("kb.ingest", ex);
+        return call(
+                        "kb.ingest",
+                        () ->
+                                withCallHeaders(kbStub, traceId, idemKey)
+                                        .withDeadlineAfter(
+                                                kbIngestTimeoutSeconds, TimeUnit.SECONDS)
+                                        .ingest(request))
+                .thenApply(AiClient::toIngestResult);
+    }
+
+    public IngestResult ingestKbStream(IngestCall call, InputStream content, long fileSize) {
+        return await(ingestKbStreamAsync(call, content, fileSize));
+    }
+
+    /**
+     * Streams {@code content} to the AI service as {@link #INGEST_CHUNK_BYTES} chunks, reading
+     * only as fast as the transport drains. The caller owns {@code content} and must keep it open
+     * until the returned future completes.
+     */
+    public CompletableFuture<IngestResult> ingestKbStreamAsync(
+            IngestCall call, InputStream content, long fileSize) {
+        requireClassId(call);
+        if (content == null) {
+            throw new IllegalArgumentException("fileContent is required");
         }
+        String traceId = traceIdOrRandom(call.traceId());
+        String idemKey = nullToEmpty(call.idempotencyKey());
+        KbIngestHeader header = toIngestHeader(call, traceId, idemKey, fileSize);
+
+        return guards.get("kb.ingest")
+                .run(
+                        () -> {
+                            IngestChunkSender sender = new IngestChunkSender(header, content);
+                            withCallHeaders(kbStreamStub, traceId, idemKey)
+                                    .withDeadlineAfter(kbIngestTimeoutSeconds, TimeUnit.SECONDS)
+                                    .ingestStream(sender);
+                            return sender.result;
+                        })
+                .thenApply(AiClient::toIngestResult);
     }
 
-    public Map<String, Object> deleteKb(Map<String, Object> body) {
-        String traceId = getString(body, "traceId", UUID.randomUUID().toString());
-        String idemKey = getString(body, "idempotencyKey", "");
+    private static IngestResult toIngestResult(KbIngestResponse response) {
+        return new IngestResult(
+                response.getStatus(),
+                response.getJobId(),
+                response.getBackground(),
+                response.getChunks());
+    }
+
+    public DeleteResult deleteKb(DeleteCall call) {
+        return await(deleteKbAsync(call));
+    }
+
+    public CompletableFuture<DeleteResult> deleteKbAsync(DeleteCall call) {
+        String traceId = traceIdOrRandom(call.traceId());
+        String idemKey = nullToEmpty(call.idempotencyKey());
 
         KbDeleteRequest request =
                 KbDeleteRequest.newBuilder()
                         .setTraceId(traceId)
                         .setIdempotencyKey(idemKey)
-                        .setDocumentId(getString(body, "documentId", ""))
+                        .setDocumentId(nullToEmpty(call.documentId()))
+                        .build();
+
+        return call(
+                        "kb.delete",
+                        () ->
+                                withCallHeaders(kbStub, traceId, idemKey)
+                                        .withDeadlineAfter(
+                                                kbDeleteTimeoutSeconds, TimeUnit.SECONDS)
+                                        .delete(request))
+                .thenApply(response -> new DeleteResult(response.getStatus()));
+    }
+
+    public DeleteBatchResult deleteKbBatch(DeleteBatchCall call) {
+        return await(deleteKbBatchAsync(call));
+    }
+
+    public CompletableFuture<DeleteBatchResult> deleteKbBatchAsync(DeleteBatchCall call) {
+        String traceId = traceIdOrRandom(call.traceId());
+        String idemKey = nullToEmpty(call.idempotencyKey());
+
+        KbDeleteBatchRequest request =
+                KbDeleteBatchRequest.newBuilder()
+                        .setTraceId(traceId)
+                        .setIdempotencyKey(idemKey)
+                        .addAllDocumentIds(call.documentIds())
                         .build();
 
+        return call(
+                        "kb.deleteBatch",
+                        () ->
+                                withCallHeaders(kbStub, traceId, idemKey)
+                                        .withDeadlineAfter(
+                                                kbDeleteTimeoutSeconds, TimeUnit.SECONDS)
+                                        .deleteBatch(request))
+                .thenApply(AiClient::toDeleteBatchResult);
+    }
+
+    private static DeleteBatchResult toDeleteBatchResult(KbDeleteBatchResponse response) {
+        return new DeleteBatchResult(
+                response.getResultsList().stream()
+                        .map(
+                                item ->
+                                        new DeleteBatchItem(
+                                                item.getDocumentId(),
+                                                item.getStatus(),
+                                                item.getErrorMessage()))
+                        .toList());
+    }
+
+    /** Starts the RPC (possibly twice, if hedged) once the operation's guard admits it. */
+    private <T> CompletableFuture<T> call(String operation, Supplier<ListenableFuture<T>> start) {
+        return guards.get(operation).run(() -> bridge(operation, start.get()));
+    }
+
+    /**
+     * Bridges a gRPC future-stub call into a {@link CompletableFuture}. Failures are translated
+     * through {@link #fromGrpcError}, and cancelling the returned future cancels the RPC.
+     */
+    private <T> CompletableFuture<T> bridge(String operation, ListenableFuture<T> rpc) {
+        CompletableFuture<T> future =
+                new CompletableFuture<>() {
+                    @Override
+                    public boolean cancel(boolean mayInterruptIfRunning) {
+                        rpc.cancel(mayInterruptIfRunning);
+                        return super.cancel(mayInterruptIfRunning);
+                    }
+                };
+        Futures.addCallback(
+                rpc,
+                new FutureCallback<>() {
+                    @Override
+                    public void onSuccess(T result) {
+                        future.complete(result);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable error) {
+                        future.completeExceptionally(
+                                error instanceof StatusRuntimeException statusError
+                                        ? fromGrpcError(operation, statusError)
+                                        : error);
+                    }
+                },
+                MoreExecutors.directExecutor());
+        return future;
+    }
+
+    /**
+     * Client side of {@code IngestStream}: sends the header, then pumps fixed-size chunks from the
+     * input whenever the call reports ready, so at most one chunk is buffered per call. The input
+     * is usually an S3 object stream, so reads run on {@link #ingestReader} rather than on the
+     * gRPC callback thread.
+     */
+    private final class IngestChunkSender
+            implements ClientResponseObserver<KbIngestChunk, KbIngestResponse> {
+        private final KbIngestHeader header;
+        private final InputStream content;
+        private final byte[] buffer = new byte[INGEST_CHUNK_BYTES];
+        private final AtomicBoolean pumping = new AtomicBoolean();
+        private final CompletableFuture<KbIngestResponse> result =
+                new CompletableFuture<>() {
+                    @Override
+                    public boolean cancel(boolean mayInterruptIfRunning) {
+                        if (requestStream != null) {
+                            requestStream.cancel("调用方取消上传", null);
+                        }
+                        return super.cancel(mayInterruptIfRunning);
+                    }
+                };
+
+        private volatile ClientCallStreamObserver<KbIngestChunk> requestStream;
+        private volatile boolean halfClosed;
+        private boolean headerSent;
+        private KbIngestResponse response;
+
+        IngestChunkSender(KbIngestHeader header, InputStream content) {
+            this.header = header;
+            this.content = content;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<KbIngestChunk> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(this::schedulePump);
+        }
+
+        // At most one pump runs at a time; a ready signal that arrives while it is draining is
+        // picked up by the re-check after the flag is released.
+        private void schedulePump() {
+            if (!halfClosed && pumping.compareAndSet(false, true)) {
+                try {
+                    ingestReader.execute(this::pump);
+                } catch (RuntimeException ex) {
+                    pumping.set(false);
+                    halfClosed = true;
+                    requestStream.cancel("读取上传文件失败", ex);
+                }
+            }
+        }
+
+        private void pump() {
+            try {
+                while (!halfClosed && requestStream.isReady()) {
+                    if (!headerSent) {
+                        requestStream.onNext(KbIngestChunk.newBuilder().setHeader(header).build());
+                        headerSent = true;
+                        continue;
+                    }
+                    int read = content.readNBytes(buffer, 0, buffer.length);
+                    if (read > 0) {
+                        requestStream.onNext(
+                                KbIngestChunk.newBuilder()
+                                        .setData(ByteString.copyFrom(buffer, 0, read))
+                                        .build());
+                    }
+                    if (read < buffer.length) {
+                        halfClosed = true;
+                        requestStream.onCompleted();
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                halfClosed = true;
+                requestStream.cancel("读取上传文件失败", ex);
+            } finally {
+                pumping.set(false);
+            }
+            if (!halfClosed && requestStream.isReady()) {
+                schedulePump();
+            }
+        }
+
+        @Override
+        public void onNext(KbIngestResponse value) {
+            response = value;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(
+                    error instanceof StatusRuntimeException statusError
+                            ? fromGrpcError("kb.ingest_stream", statusError)
+                            : error);
+        }
+
+        @Override
+        public void onCompleted() {
+            result.complete(response == null ? KbIngestResponse.getDefaultInstance() : response);
+        }
+    }
+
+    private final class ChatStreamReceiver
+            implements ClientResponseObserver<ChatRequest, ChatStreamResponse> {
+        private final Consumer<ChatStreamChunk> onChunk;
+        private final long startedAt = System.nanoTime();
+        private final CompletableFuture<Void> result =
+                new CompletableFuture<>() {
+                    @Override
+                    public boolean cancel(boolean mayInterruptIfRunning) {
+                        if (requestStream != null) {
+                            requestStream.cancel("调用方取消流式对话", null);
+                        }
+                        return super.cancel(mayInterruptIfRunning);
+                    }
+                };
+
+        private volatile ClientCallStreamObserver<ChatRequest> requestStream;
+        private long firstTokenAt;
+        private int tokens;
+
+        ChatStreamReceiver(Consumer<ChatStreamChunk> onChunk) {
+            this.onChunk = onChunk;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ChatRequest> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.disableAutoRequestWithInitial(1);
+        }
+
+        // gRPC delivers responses serially, so the token counters need no synchronization.
+        @Override
+        public void onNext(ChatStreamResponse frame) {
+            if (!frame.getDelta().isEmpty() && tokens++ == 0) {
+                firstTokenAt = System.nanoTime();
+                chatStreamTimeToFirstToken.record(firstTokenAt - startedAt, TimeUnit.NANOSECONDS);
+            }
+            try {
+                onChunk.accept(
+                        new ChatStreamChunk(
+                                frame.getDelta(), toCitationViews(frame.getCitationsList())));
+            } catch (RuntimeException ex) {
+                requestStream.cancel("流式对话消费失败", ex);
+                result.completeExceptionally(ex);
+                return;
+            }
+            requestStream.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(
+                    error instanceof StatusRuntimeException statusError
+                            ? fromGrpcError("chatStream", statusError)
+                            : error);
+        }
+
+        @Override
+        public void onCompleted() {
+            long decodeNanos = System.nanoTime() - firstTokenAt;
+            if (tokens > 1 && decodeNanos > 0) {
+                chatStreamTokenRate.record((tokens - 1) * 1e9 / decodeNanos);
+            }
+            result.complete(null);
+        }
+    }
+
+    /** Blocking wrapper used by the synchronous API: unwraps the completion cause. */
+    private static <T> T await(CompletableFuture<T> future) {
         try {
-            KbDeleteResponse response =
-                    authorize(kbStub, traceId, idemKey)
-                            .withDeadlineAfter(kbDeleteTimeoutSeconds, TimeUnit.SECONDS)
-                            .delete(request);
-
-            return Map.of("status", response.getStatus());
-        } catch (StatusRuntimeException ex) {
-            throw fromGrpcError("kb.delete", ex);
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new DependencyException("调用 AI 服务失败", ex.getCause());
+        } catch (CancellationException ex) {
+            throw new DependencyException(ErrorCode.AI_TIMEOUT, "调用 AI 服务已取消", ex);
         }
     }
 
@@ -373,69 +960,78 @@ public class AiClient {
                 errorCode, "调用 AI 服务失败: " + operation + " [grpc=" + grpcCode + "]" + suffix, ex);
     }
 
-    private ChatRequest buildChatRequest(Map<String, Object> body, String traceId) {
-        ChatRequest.Builder reqBuilder =
-                ChatRequest.newBuilder()
-                        .setTraceId(traceId)
-                        .setSessionId(getString(body, "sessionId", ""))
-                        .setStudentId(getString(body, "studentId", ""))
-                        .setMessage(getString(body, "message", ""));
-
-        if (body.containsKey("stream") && body.get("stream") instanceof Boolean b && b) {
-            reqBuilder.setStream(true);
+    private static ChatRequest buildChatRequest(ChatCall call, String traceId, boolean stream) {
+        ChatRequest.Context.Builder context = ChatRequest.Context.newBuilder();
+        for (HistoryTurn turn : nullToEmpty(call.history())) {
+            context.addHistory(
+                    ChatRequest.Context.Message.newBuilder()
+                            .setRole(nullToEmpty(turn.role()))
+                            .setContent(nullToEmpty(turn.content()))
+                            .build());
         }
+        return ChatRequest.newBuilder()
+                .setTraceId(traceId)
+                .setSessionId(call.sessionId() == null ? "" : call.sessionId().toString())
+                .setStudentId(call.studentId() == null ? "" : call.studentId().toString())
+                .setMessage(nullToEmpty(call.message()))
+                .setStream(stream)
+                .setContext(context.build())
+                .setTeacherScope(
+                        ChatRequest.TeacherScope.newBuilder()
+                                .setTeacherId(nullToEmpty(call.teacherId()))
+                                .setClassId(nullToEmpty(call.classId()))
+                                .build())
+                .build();
+    }
 
-        if (body.get("context") instanceof Map ctxMap) {
-            ChatRequest.Context.Builder ctxBuilder = ChatRequest.Context.newBuilder();
-            if (ctxMap.get("history") instanceof List history) {
-                for (Object item : history) {
-                    if (item instanceof Map map) {
-                        ctxBuilder.addHistory(
-                                ChatRequest.Context.Message.newBuilder()
-                                        .setRole(getString(map, "role", ""))
-                                        .setContent(getString(map, "content", ""))
-                                        .build());
-                    }
-                }
-            }
-            reqBuilder.setContext(ctxBuilder.build());
+    private static List<CitationView> toCitationViews(List<Citation> citations) {
+        if (citations.isEmpty()) {
+            return List.of();
         }
-
-        if (body.get("teacherScope") instanceof Map teacherScope) {
-            reqBuilder.setTeacherScope(
-                    ChatRequest.TeacherScope.newBuilder()
-                            .setTeacherId(getString(teacherScope, "teacherId", ""))
-                            .setClassId(getString(teacherScope, "classId", ""))
-                            .build());
+        List<CitationView> views = new ArrayList<>(citations.size());
+        for (Citation citation : citations) {
+            views.add(
+                    new CitationView(
+                            citation.getDocumentId(),
+                            citation.getFilename(),
+                            citation.getChunkIndex(),
+                            citation.getContent(),
+                            citation.getScore()));
         }
+        return views;
+    }
 
-        return reqBuilder.build();
+    private static KbIngestHeader toIngestHeader(
+            IngestCall call, String traceId, String idemKey, long fileSize) {
+        return KbIngestHeader.newBuilder()
+                .setTraceId(traceId)
+                .setIdempotencyKey(idemKey)
+                .setJobId(call.jobId() == null ? "" : call.jobId().toString())
+                .setDocumentId(call.documentId() == null ? "" : call.documentId().toString())
+                .setTeacherId(call.teacherId() == null ? "" : call.teacherId().toString())
+                .setClassId(call.classId().toString())
+                .setFilename(call.filename() == null ? "upload.bin" : call.filename())
+                .setFileType(
+                        call.fileType() == null ? "application/octet-stream" : call.fileType())
+                .setFileSize(Math.max(0L, fileSize))
+                .build();
     }
 
-    private byte[] toBytes(Object raw) {
-        if (raw == null) {
-            throw new IllegalArgumentException("fileContent is required");
-        }
-        if (raw instanceof byte[] bytes) {
-            return bytes;
-        }
-        if (raw instanceof ByteString byteString) {
-            return byteString.toByteArray();
-        }
-        if (raw instanceof String text) {
-            return text.getBytes(StandardCharsets.UTF_8);
+    private static void requireClassId(IngestCall call) {
+        if (call.classId() == null) {
+            throw new IllegalArgumentException("classId is required");
         }
-        throw new IllegalArgumentException("fileContent must be byte[] or string");
     }
 
-    private String getString(Map<?, ?> map, String key, String defaultVal) {
-        if (map == null) {
-            return defaultVal;
-        }
-        Object val = map.get(key);
-        if (val == null) {
-            return defaultVal;
-        }
-        return String.valueOf(val);
+    private static String traceIdOrRandom(String traceId) {
+        return traceId == null || traceId.isBlank() ? UUID.randomUUID().toString() : traceId;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> values) {
+        return values == null ? List.of() : values;
     }
 }
@@ -0,0 +1,148 @@
+package com.edunexus.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for one idempotent unary AI RPC.
+ *
+ * <p>If the first attempt has not finished after the operation's recent p95 latency, a second
+ * attempt is started; the pool hands it the next channel, which normally lands on a different
+ * backend. The first successful attempt wins and the other is cancelled. Hedging stays off until
+ * enough latencies have been observed to estimate the p95.
+ */
+final class AiHedger {
+    static final int WINDOW_SIZE = 128;
+    static final int MIN_SAMPLES = 20;
+
+    private final long minDelayMillis;
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private int samples;
+    private int cursor;
+
+    AiHedger(String operation, long minDelayMillis, MeterRegistry meterRegistry) {
+        this.minDelayMillis = Math.max(1L, minDelayMillis);
+        this.hedges =
+                Counter.builder("edunexus.ai.hedge.attempts")
+                        .description("Second attempts started for slow AI calls")
+                        .tag("operation", operation)
+                        .register(meterRegistry);
+        this.hedgeWins =
+                Counter.builder("edunexus.ai.hedge.wins")
+                        .description("Hedged AI calls answered by the second attempt")
+                        .tag("operation", operation)
+                        .register(meterRegistry);
+    }
+
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt) {
+        long delayMillis = hedgeDelayMillis();
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> first = attempt.get();
+        if (delayMillis < 0) {
+            return observe(first, startedAt);
+        }
+
+        CompletableFuture<CompletableFuture<T>> second = new CompletableFuture<>();
+        CompletableFuture<T> result =
+                new CompletableFuture<>() {
+                    @Override
+                    public boolean cancel(boolean mayInterruptIfRunning) {
+                        first.cancel(mayInterruptIfRunning);
+                        second.cancel(mayInterruptIfRunning);
+                        second.thenAccept(call -> call.cancel(mayInterruptIfRunning));
+                        return super.cancel(mayInterruptIfRunning);
+                    }
+                };
+        AtomicInteger pending = new AtomicInteger(1);
+
+        Executor delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);
+        delayed.execute(
+                () -> {
+                    if (result.isDone() || second.isDone()) {
+                        return;
+                    }
+                    pending.incrementAndGet();
+                    hedges.increment();
+                    CompletableFuture<T> hedge;
+                    try {
+                        hedge = attempt.get();
+                    } catch (RuntimeException ex) {
+                        hedge = CompletableFuture.failedFuture(ex);
+                    }
+                    if (!second.complete(hedge)) {
+                        hedge.cancel(true);
+                        pending.decrementAndGet();
+                        return;
+                    }
+                    settle(hedge, () -> first.cancel(true), result, pending, startedAt, true);
+                    if (result.isDone()) {
+                        hedge.cancel(true);
+                    }
+                });
+        settle(
+                first,
+                () -> {
+                    second.cancel(true);
+                    second.thenAccept(hedge -> hedge.cancel(true));
+                },
+                result,
+                pending,
+                startedAt,
+                false);
+        return result;
+    }
+
+    private <T> void settle(
+            CompletableFuture<T> attempt,
+            Runnable cancelOther,
+            CompletableFuture<T> result,
+            AtomicInteger pending,
+            long startedAt,
+            boolean hedged) {
+        attempt.whenComplete(
+                (value, error) -> {
+                    int remaining = pending.decrementAndGet();
+                    if (error == null) {
+                        if (result.complete(value)) {
+                            record(startedAt);
+                            if (hedged) {
+                                hedgeWins.increment();
+                            }
+                            cancelOther.run();
+                        }
+                    } else if (remaining == 0) {
+                        result.completeExceptionally(error);
+                    }
+                });
+    }
+
+    private <T> CompletableFuture<T> observe(CompletableFuture<T> call, long startedAt) {
+        call.thenRun(() -> record(startedAt));
+        return call;
+    }
+
+    /** Returns -1 while there are too few samples to hedge. */
+    synchronized long hedgeDelayMillis() {
+        if (samples < MIN_SAMPLES) {
+            return -1L;
+        }
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        long p95 = sorted[(int) Math.ceil(samples * 0.95) - 1];
+        return Math.max(minDelayMillis, p95);
+    }
+
+    private synchronized void record(long startedAt) {
+        latencies[cursor] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        cursor = (cursor + 1) % WINDOW_SIZE;
+        samples = Math.min(samples + 1, WINDOW_SIZE);
+    }
+}
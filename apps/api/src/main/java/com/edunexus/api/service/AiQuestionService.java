@@ -1,7 +1,6 @@
 package com.edunexus.api.service;
 
 import com.edunexus.api.common.AnswerNormalizer;
-import com.edunexus.api.common.ApiDataMapper;
 import com.edunexus.api.common.DependencyException;
 import com.edunexus.api.common.ErrorCode;
 import com.edunexus.api.domain.AiQuestionRecordItem;
@@ -90,38 +89,37 @@ public class AiQuestionService {
                                         "weaknessProfile", weaknessProfile,
                                         "teacherSuggestions", suggestions)));
 
-        Map<String, Object> aiBody = new java.util.HashMap<>();
-        aiBody.put("traceId", traceId);
-        aiBody.put("studentId", studentId.toString());
-        aiBody.put("count", count);
-        aiBody.put("subject", subject);
-        aiBody.put("difficulty", difficulty);
-        aiBody.put("conceptTags", conceptTags == null ? List.of() : conceptTags);
-        // Serialize as JSON strings — AiClient passes these as proto string fields;
-        // the Python servicer will JSON-parse them back into lists for the prompt.
-        aiBody.put("weaknessProfile", toJson(weaknessProfile));
-        aiBody.put("teacherSuggestions", toJson(suggestions));
-        aiBody.put("idempotencyKey", idempotencyKey == null ? "" : idempotencyKey);
-
-        Map<String, Object> aiResult = aiClient.generateQuestions(aiBody);
-        List<Map<String, Object>> generated =
-                ApiDataMapper.parseObjectList(aiResult.get("questions"), objectMapper);
+        // Weakness profile and suggestions travel as JSON strings; the Python servicer parses
+        // them back into lists for the prompt.
+        AiClient.QuestionResult aiResult =
+                aiClient.generateQuestions(
+                        new AiClient.QuestionCall(
+                                traceId,
+                                idempotencyKey == null ? "" : idempotencyKey,
+                                studentId,
+                                count,
+                                subject,
+                                difficulty,
+                                conceptTags == null ? List.of() : conceptTags,
+                                toJson(weaknessProfile),
+                                toJson(suggestions)));
+        List<AiClient.GeneratedQuestionView> generated = aiResult.questions();
         if (generated.isEmpty()) {
             throw new DependencyException(ErrorCode.AI_OUTPUT_INVALID, "AI 未生成任何题目");
         }
 
         List<Map<String, Object>> questionVos = new ArrayList<>();
-        for (Map<String, Object> gen : generated) {
-            String questionType = ApiDataMapper.asString(gen.get("question_type"));
-            String content = ApiDataMapper.asString(gen.get("content"));
-            String correctAnswer = ApiDataMapper.asString(gen.get("correct_answer"));
+        for (AiClient.GeneratedQuestionView gen : generated) {
+            String questionType = gen.questionType();
+            String content = gen.content();
+            String correctAnswer = gen.correctAnswer();
             validateGeneratedQuestion(questionType, content, correctAnswer);
 
-            Map<String, String> options = parseOptions(gen, questionType);
+            Map<String, String> options = parseOptions(gen.options(), questionType);
             String normalizedCorrectAnswer =
                     validateCorrectAnswer(questionType, correctAnswer, options);
-            List<String> knowledgePoints = parseKnowledgePoints(gen);
-            String explanation = ApiDataMapper.asString(gen.get("explanation"));
+            List<String> knowledgePoints = parseKnowledgePoints(gen.knowledgePoints());
+            String explanation = gen.explanation();
 
             UUID questionId =
                     questionRepo.createAiGenerated(
@@ -248,14 +246,13 @@ public class AiQuestionService {
                     ErrorCode.AI_OUTPUT_INVALID, "AI 题目 question_type 非法: " + questionType);
     }
 
-    private Map<String, String> parseOptions(Map<String, Object> gen, String questionType) {
-        Object optionsPayload = gen.get("options");
-        if (!(optionsPayload instanceof Map<?, ?> rawOptions))
+    private Map<String, String> parseOptions(Map<String, String> rawOptions, String questionType) {
+        if (rawOptions == null)
             throw new DependencyException(ErrorCode.AI_OUTPUT_INVALID, "AI 题目 options 格式异常");
         Map<String, String> options = new LinkedHashMap<>();
-        for (Map.Entry<?, ?> e : rawOptions.entrySet()) {
-            String key = String.valueOf(e.getKey());
-            String val = e.getValue() == null ? "" : String.valueOf(e.getValue());
+        for (Map.Entry<String, String> e : rawOptions.entrySet()) {
+            String key = e.getKey();
+            String val = e.getValue() == null ? "" : e.getValue();
             if (!key.isBlank() && !val.isBlank()) options.put(key, val);
         }
         if (!"SHORT_ANSWER".equals(questionType) && options.isEmpty())
@@ -292,14 +289,12 @@ public class AiQuestionService {
         return normalized;
     }
 
-    private List<String> parseKnowledgePoints(Map<String, Object> gen) {
-        Object kpPayload = gen.get("knowledge_points");
-        if (!(kpPayload instanceof List<?> rawKp))
+    private List<String> parseKnowledgePoints(List<String> rawKp) {
+        if (rawKp == null)
             throw new DependencyException(
                     ErrorCode.AI_OUTPUT_INVALID, "AI 题目 knowledge_points 格式异常");
         List<String> kps =
                 rawKp.stream()
-                        .map(String::valueOf)
                         .map(String::trim)
                         .filter(s -> !s.isBlank())
                         .toList();
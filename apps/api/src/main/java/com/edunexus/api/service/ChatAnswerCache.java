@@ -0,0 +1,257 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.LruTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Answers to opening chat questions, shared by every student in the same teacher/class scope. A
+ * question matches a cached one when their normalized texts are equal or, for questions of at
+ * least {@code NEAR_MATCH_MIN_CHARS}, when the 64-bit SimHashes of their character trigrams
+ * differ in at most {@code app.chat-answer-cache-max-distance} bits and carry exactly the same
+ * numbers, since a word problem with one quantity changed is a different problem that SimHash
+ * barely tells apart. Only the first turn of a
+ * session is cached, since later answers depend on the conversation. A class's bucket is dropped
+ * when one of its documents is ingested or deleted, and every bucket expires after its TTL.
+ */
+@Component
+public class ChatAnswerCache {
+
+    public record CachedAnswer(String answer, List<AiClient.CitationView> citations) {}
+
+    static final int NEAR_MATCH_MIN_CHARS = 8;
+    private static final Pattern IGNORED = Pattern.compile("[\\s\\p{P}]+");
+    private static final Pattern NUMBER =
+            Pattern.compile("\\d+(?:[.,/:]\\d+)*|[零〇一二两三四五六七八九十百千万亿]+");
+
+    private final boolean enabled;
+    private final int maxDistance;
+    private final int maxPerScope;
+    private final LruTtlCache<String, Bucket> buckets;
+    private final Counter exactHits;
+    private final Counter nearHits;
+    private final Counter misses;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ChatAnswerCache(
+            @Value("${app.chat-answer-cache-enabled:true}") boolean enabled,
+            @Value("${app.chat-answer-cache-max-distance:3}") int maxDistance,
+            @Value("${app.chat-answer-cache-scopes:1000}") int maxScopes,
+            @Value("${app.chat-answer-cache-per-scope:256}") int maxPerScope,
+            @Value("${app.chat-answer-cache-ttl-minutes:60}") long ttlMinutes,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDistance = Math.max(0, maxDistance);
+        this.maxPerScope = Math.max(1, maxPerScope);
+        this.buckets = new LruTtlCache<>(maxScopes, Duration.ofMinutes(ttlMinutes));
+        this.exactHits = lookups(meterRegistry, "hit_exact");
+        this.nearHits = lookups(meterRegistry, "hit_near");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    /** Cached answer for the question in this scope, or {@code null}; unscoped chats never hit. */
+    public CachedAnswer find(String teacherId, String classId, String question) {
+        String scope = scopeKey(teacherId, classId);
+        String normalized = normalize(question);
+        if (scope == null || normalized.isEmpty()) {
+            return null;
+        }
+        String numbers = numbers(question);
+        Bucket bucket = buckets.get(scope);
+        CachedAnswer exact = bucket == null ? null : bucket.exact(normalized, numbers);
+        if (exact != null) {
+            exactHits.increment();
+            return exact;
+        }
+        CachedAnswer near =
+                bucket == null || normalized.length() < NEAR_MATCH_MIN_CHARS
+                        ? null
+                        : bucket.nearest(simHash(normalized), numbers, maxDistance);
+        if (near != null) {
+            nearHits.increment();
+            return near;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Taken before generating an answer and handed to {@link #put}. */
+    public long generation() {
+        return invalidations.get();
+    }
+
+    /**
+     * Stores an answer unless an invalidation happened since {@code generation} was taken, so an
+     * answer generated against the old knowledge base is not cached after the class changed.
+     */
+    public void put(
+            long generation,
+            String teacherId,
+            String classId,
+            String question,
+            String answer,
+            List<AiClient.CitationView> citations) {
+        String scope = scopeKey(teacherId, classId);
+        String normalized = normalize(question);
+        if (scope == null || normalized.isEmpty() || answer == null || answer.isBlank()) {
+            return;
+        }
+        CachedAnswer cached =
+                new CachedAnswer(answer, citations == null ? List.of() : List.copyOf(citations));
+        synchronized (buckets) {
+            if (invalidations.get() != generation) {
+                return;
+            }
+            Bucket bucket = buckets.get(scope);
+            if (bucket == null) {
+                bucket = new Bucket(maxPerScope);
+                buckets.put(scope, bucket);
+            }
+            bucket.put(normalized, simHash(normalized), numbers(question), cached);
+        }
+    }
+
+    /** Drops the class's answers after its knowledge base changed. */
+    public void invalidate(UUID teacherId, UUID classId) {
+        if (teacherId == null || classId == null) {
+            return;
+        }
+        synchronized (buckets) {
+            invalidations.incrementAndGet();
+            buckets.invalidate(scopeKey(teacherId.toString(), classId.toString()));
+        }
+    }
+
+    private String scopeKey(String teacherId, String classId) {
+        if (!enabled
+                || teacherId == null
+                || teacherId.isBlank()
+                || classId == null
+                || classId.isBlank()) {
+            return null;
+        }
+        return teacherId + ":" + classId;
+    }
+
+    static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        String folded =
+                Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return IGNORED.matcher(folded).replaceAll("");
+    }
+
+    /** The question's numeric tokens in order, taken before punctuation is stripped. */
+    static String numbers(String question) {
+        if (question == null) {
+            return "";
+        }
+        String folded =
+                Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder numbers = new StringBuilder();
+        Matcher matcher = NUMBER.matcher(folded);
+        while (matcher.find()) {
+            numbers.append(matcher.group()).append(' ');
+        }
+        return numbers.toString();
+    }
+
+    /** 64-bit SimHash over overlapping character trigrams of the normalized text. */
+    static long simHash(String normalized) {
+        int[] weights = new int[64];
+        int gram = Math.min(3, normalized.length());
+        for (int i = 0; i + gram <= normalized.length(); i++) {
+            long hash = mix(fnv1a(normalized, i, i + gram));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) == 1L ? 1 : -1;
+            }
+        }
+        long simHash = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    private static long fnv1a(String text, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** Murmur3 finalizer, so neighbouring trigrams do not share hash bits. */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("edunexus.chat.answer.cache")
+                .description("Chat answer cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static final class Bucket {
+        private final LinkedHashMap<String, Entry> entries;
+
+        Bucket(int capacity) {
+            this.entries =
+                    new LinkedHashMap<>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                            return size() > capacity;
+                        }
+                    };
+        }
+
+        synchronized CachedAnswer exact(String normalized, String numbers) {
+            Entry entry = entries.get(normalized);
+            return entry == null || !entry.numbers().equals(numbers) ? null : entry.answer();
+        }
+
+        synchronized CachedAnswer nearest(long simHash, String numbers, int maxDistance) {
+            Entry best = null;
+            int bestDistance = maxDistance + 1;
+            for (Entry entry : entries.values()) {
+                int distance = Long.bitCount(entry.simHash() ^ simHash);
+                if (distance < bestDistance
+                        && entry.length() >= NEAR_MATCH_MIN_CHARS
+                        && entry.numbers().equals(numbers)) {
+                    best = entry;
+                    bestDistance = distance;
+                }
+            }
+            return best == null ? null : best.answer();
+        }
+
+        synchronized void put(
+                String normalized, long simHash, String numbers, CachedAnswer answer) {
+            entries.put(normalized, new Entry(simHash, normalized.length(), numbers, answer));
+        }
+    }
+
+    private record Entry(long simHash, int length, String numbers, CachedAnswer answer) {}
+}
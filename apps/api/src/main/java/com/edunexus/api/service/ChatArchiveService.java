@@ -0,0 +1,105 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.repository.ChatRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the partitioned {@code chat_messages} table small. Monthly partitions are created ahead of
+ * time; sessions idle for {@code app.chat-archive-idle-days} are compacted into one gzipped blob
+ * each, which {@link ChatRepository#listMessages} reads back transparently; and partitions that
+ * compaction has emptied are dropped rather than vacuumed. Every node runs the jobs: partition
+ * changes take an advisory lock and a compaction that loses a race is a no-op.
+ */
+@Service
+public class ChatArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatArchiveService.class);
+
+    private final ChatRepository chatRepo;
+    private final boolean compactionEnabled;
+    private final Duration idleAfter;
+    private final int batchSize;
+    private final int partitionMonthsAhead;
+    private final Counter compactedSessions;
+    private final Counter compactedMessages;
+
+    public ChatArchiveService(
+            ChatRepository chatRepo,
+            MeterRegistry meterRegistry,
+            @Value("${app.chat-archive-enabled:true}") boolean compactionEnabled,
+            @Value("${app.chat-archive-idle-days:30}") long idleDays,
+            @Value("${app.chat-archive-batch-size:200}") int batchSize,
+            @Value("${app.chat-partition-months-ahead:3}") int partitionMonthsAhead) {
+        this.chatRepo = chatRepo;
+        this.compactionEnabled = compactionEnabled;
+        this.idleAfter = Duration.ofDays(Math.max(1, idleDays));
+        this.batchSize = Math.max(1, batchSize);
+        this.partitionMonthsAhead = Math.max(1, partitionMonthsAhead);
+        this.compactedSessions =
+                Counter.builder("edunexus.chat.archive.sessions")
+                        .description("Chat sessions compacted into archive blobs")
+                        .register(meterRegistry);
+        this.compactedMessages =
+                Counter.builder("edunexus.chat.archive.messages")
+                        .description("Chat messages moved from chat_messages into archive blobs")
+                        .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.chat-partition-maintenance-cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        try {
+            int created = chatRepo.ensureMessagePartitions(partitionMonthsAhead);
+            int dropped = chatRepo.dropEmptyMessagePartitions(Instant.now());
+            if (created > 0 || dropped > 0) {
+                log.info("chat_partitions_maintained created={} dropped={}", created, dropped);
+            }
+        } catch (RuntimeException ex) {
+            log.error("chat_partition_maintenance_failed error={}", ex.getMessage(), ex);
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.chat-archive-initial-delay-ms:600000}",
+            fixedDelayString = "${app.chat-archive-interval-ms:3600000}")
+    public void compactIdleSessions() {
+        if (!compactionEnabled) {
+            return;
+        }
+        Instant idleBefore = Instant.now().minus(idleAfter);
+        List<UUID> candidates = chatRepo.listCompactionCandidates(idleBefore, batchSize);
+        int sessions = 0;
+        int messages = 0;
+        for (UUID sessionId : candidates) {
+            try {
+                int moved = chatRepo.compactSession(sessionId, idleBefore);
+                if (moved > 0) {
+                    sessions++;
+                    messages += moved;
+                }
+            } catch (RuntimeException ex) {
+                log.warn(
+                        "chat_session_compaction_failed sessionId={} error={}",
+                        sessionId,
+                        ex.getMessage());
+            }
+        }
+        compactedSessions.increment(sessions);
+        compactedMessages.increment(messages);
+        if (sessions > 0) {
+            log.info("chat_sessions_compacted sessions={} messages={}", sessions, messages);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.LruTtlCache;
+import com.edunexus.api.domain.ChatMessage;
+import com.edunexus.api.repository.ChatRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the history sent with a chat turn under a token budget. The newest messages are sent
+ * verbatim while they fit {@code app.chat-context-token-budget} (which also covers the question);
+ * older ones are folded into a rolling per-session summary kept on {@code chat_sessions} and sent
+ * ahead of them as a SYSTEM turn. Token counts are estimates: one per CJK character and one per
+ * four other characters.
+ */
+@Component
+public class ChatContextAssembler {
+
+    static final String SUMMARY_ROLE = "SYSTEM";
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int DIGEST_CHARS = 80;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ChatHistoryCache chatHistory;
+    private final ChatRepository chatRepo;
+    private final int tokenBudget;
+    private final int summaryMaxChars;
+    private final LruTtlCache<UUID, ChatRepository.ContextSummary> summaries;
+    private final DistributionSummary windowTokens;
+    private final DistributionSummary assembledTokens;
+
+    public ChatContextAssembler(
+            ChatHistoryCache chatHistory,
+            ChatRepository chatRepo,
+            MeterRegistry meterRegistry,
+            @Value("${app.chat-context-token-budget:1500}") int tokenBudget,
+            @Value("${app.chat-summary-max-chars:1200}") int summaryMaxChars,
+            @Value("${app.chat-history-cache-sessions:10000}") int maxSessions,
+            @Value("${app.chat-history-cache-ttl-minutes:10}") long ttlMinutes) {
+        this.chatHistory = chatHistory;
+        this.chatRepo = chatRepo;
+        this.tokenBudget = Math.max(1, tokenBudget);
+        this.summaryMaxChars = Math.max(1, summaryMaxChars);
+        this.summaries = new LruTtlCache<>(maxSessions, Duration.ofMinutes(ttlMinutes));
+        this.windowTokens = promptTokens(meterRegistry, "window");
+        this.assembledTokens = promptTokens(meterRegistry, "assembled");
+    }
+
+    /** History for the next turn, ending with {@code question} as the current USER turn. */
+    public List<AiClient.HistoryTurn> assemble(UUID sessionId, String question) {
+        List<ChatMessage> window = chatHistory.recent(sessionId);
+        int questionTokens = estimateMessageTokens(question);
+        boolean windowFull = window.size() >= chatHistory.windowSize();
+
+        // This turn's pair pushes the two oldest messages out of a full window, so they are
+        // folded even when they would fit; nothing leaves the window without being summarized.
+        int firstCandidate = windowFull ? Math.min(2, window.size()) : 0;
+        int remaining = tokenBudget - questionTokens;
+        int keepFrom = window.size();
+        while (keepFrom > firstCandidate) {
+            int cost = estimateMessageTokens(window.get(keepFrom - 1).content());
+            if (cost > remaining) {
+                break;
+            }
+            remaining -= cost;
+            keepFrom--;
+        }
+
+        List<AiClient.HistoryTurn> history = new ArrayList<>(window.size() - keepFrom + 2);
+        int tokens = questionTokens;
+        if (windowFull || keepFrom > 0) {
+            String summary = rollSummary(sessionId, window.subList(0, keepFrom)).text();
+            if (summary != null && !summary.isBlank()) {
+                history.add(new AiClient.HistoryTurn(SUMMARY_ROLE, summary));
+                tokens += estimateMessageTokens(summary);
+            }
+        }
+        for (ChatMessage message : window.subList(keepFrom, window.size())) {
+            history.add(new AiClient.HistoryTurn(message.role(), message.content()));
+            tokens += estimateMessageTokens(message.content());
+        }
+        history.add(new AiClient.HistoryTurn("USER", question));
+
+        windowTokens.record(unbudgetedTokens(window, questionTokens));
+        assembledTokens.record(tokens);
+        return history;
+    }
+
+    public void invalidate(UUID sessionId) {
+        summaries.invalidate(sessionId);
+    }
+
+    static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static int estimateMessageTokens(String content) {
+        return MESSAGE_OVERHEAD_TOKENS + estimateTokens(content);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /** What the fixed-size window sent before budgeting, for the before/after comparison. */
+    private int unbudgetedTokens(List<ChatMessage> window, int questionTokens) {
+        int tokens = questionTokens;
+        for (int i = Math.max(0, window.size() + 1 - chatHistory.windowSize());
+                i < window.size();
+                i++) {
+            tokens += estimateMessageTokens(window.get(i).content());
+        }
+        return tokens;
+    }
+
+    private ChatRepository.ContextSummary rollSummary(UUID sessionId, List<ChatMessage> dropped) {
+        ChatRepository.ContextSummary current = summaries.get(sessionId);
+        if (current == null) {
+            current = chatRepo.findContextSummary(sessionId);
+            summaries.put(sessionId, current);
+        }
+        Instant through = current.through();
+        List<ChatMessage> fresh =
+                dropped.stream()
+                        .filter(m -> through == null || m.createdAt().isAfter(through))
+                        .toList();
+        if (fresh.isEmpty()) {
+            return current;
+        }
+        ChatRepository.ContextSummary next =
+                new ChatRepository.ContextSummary(
+                        appendDigests(current.text(), fresh), fresh.getLast().createdAt());
+        summaries.put(sessionId, next);
+        chatRepo.updateContextSummary(sessionId, next.text(), next.through());
+        return next;
+    }
+
+    /** One digest line per message; the oldest lines are dropped once over the size cap. */
+    private String appendDigests(String existing, List<ChatMessage> messages) {
+        StringBuilder summary = new StringBuilder(existing == null ? "" : existing);
+        for (ChatMessage message : messages) {
+            if (!summary.isEmpty()) {
+                summary.append('\n');
+            }
+            summary.append("USER".equals(message.role()) ? "学生：" : "助手：")
+                    .append(digest(message.content()));
+        }
+        while (summary.length() > summaryMaxChars) {
+            int newline = summary.indexOf("\n");
+            if (newline < 0) {
+                summary.setLength(summaryMaxChars);
+                break;
+            }
+            summary.delete(0, newline + 1);
+        }
+        return summary.toString();
+    }
+
+    private static String digest(String content) {
+        String compact = WHITESPACE.matcher(content == null ? "" : content).replaceAll(" ").strip();
+        return compact.length() > DIGEST_CHARS
+                ? compact.substring(0, DIGEST_CHARS) + "…"
+                : compact;
+    }
+
+    private static DistributionSummary promptTokens(MeterRegistry meterRegistry, String stage) {
+        return DistributionSummary.builder("edunexus.chat.prompt.tokens")
+                .description("Estimated chat history + question tokens per turn")
+                .baseUnit("tokens")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
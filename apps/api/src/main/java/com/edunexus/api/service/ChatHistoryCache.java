@@ -0,0 +1,130 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.LruTtlCache;
+import com.edunexus.api.domain.ChatMessage;
+import com.edunexus.api.repository.ChatRepository;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps the latest {@code windowSize} turns of recently active chat sessions in memory so building
+ * chat context does not re-read message rows every turn. Each window remembers the session's
+ * {@code history_version}; a read checks it against the database with one primary-key lookup and
+ * reloads the window if a turn was saved elsewhere, e.g. through another node. Turns saved through
+ * this node are applied by {@link #append} once committed, when they directly follow the window.
+ */
+@Component
+public class ChatHistoryCache {
+
+    private final ChatRepository chatRepo;
+    private final int windowSize;
+    private final LruTtlCache<UUID, Window> windows;
+
+    public ChatHistoryCache(
+            ChatRepository chatRepo,
+            @Value("${app.chat-history-window-size:30}") int windowSize,
+            @Value("${app.chat-history-cache-sessions:10000}") int maxSessions,
+            @Value("${app.chat-history-cache-ttl-minutes:10}") long ttlMinutes) {
+        this.chatRepo = chatRepo;
+        this.windowSize = Math.max(1, windowSize);
+        this.windows = new LruTtlCache<>(maxSessions, Duration.ofMinutes(ttlMinutes));
+    }
+
+    public int windowSize() {
+        return windowSize;
+    }
+
+    /** Latest messages of the session in chronological order. */
+    public List<ChatMessage> recent(UUID sessionId) {
+        // Read the version first: a turn committed while the rows load leaves the window behind
+        // the database, so the next read reloads it instead of missing that turn for good.
+        long version = chatRepo.findHistoryVersion(sessionId);
+        Window window = windows.get(sessionId);
+        if (window == null || window.version() != version) {
+            window = new Window(windowSize, version);
+            for (ChatMessage message : chatRepo.listRecentHistory(sessionId, windowSize)) {
+                window.add(message);
+            }
+            windows.put(sessionId, window);
+        }
+        return window.snapshot();
+    }
+
+    /** Records a persisted turn; deferred to commit when called inside a transaction. */
+    public void append(ChatRepository.Turn turn) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            appendNow(turn);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        appendNow(turn);
+                    }
+                });
+    }
+
+    public void invalidate(UUID sessionId) {
+        windows.invalidate(sessionId);
+    }
+
+    private void appendNow(ChatRepository.Turn turn) {
+        Window window = windows.get(turn.userMessage().sessionId());
+        if (window != null) {
+            window.advance(turn);
+        }
+    }
+
+    private static final class Window {
+        private final int capacity;
+        private final ArrayDeque<ChatMessage> turns;
+        private long version;
+
+        Window(int capacity, long version) {
+            this.capacity = capacity;
+            this.turns = new ArrayDeque<>(capacity);
+            this.version = version;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        /**
+         * Applies a turn saved right after this window's version. Any other turn means a write was
+         * missed; the window is left as is and the next read sees the version gap and reloads.
+         */
+        synchronized void advance(ChatRepository.Turn turn) {
+            if (turn.historyVersion() != version + 1) {
+                return;
+            }
+            add(turn.userMessage());
+            add(turn.assistantMessage());
+            version = turn.historyVersion();
+        }
+
+        synchronized void add(ChatMessage message) {
+            // A window loaded just after the turn committed may already hold it.
+            for (ChatMessage held : turns) {
+                if (held.id().equals(message.id())) {
+                    return;
+                }
+            }
+            if (turns.size() == capacity) {
+                turns.removeFirst();
+            }
+            turns.addLast(message);
+        }
+
+        synchronized List<ChatMessage> snapshot() {
+            return List.copyOf(turns);
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package com.edunexus.api.service;
 
 import com.edunexus.api.common.ApiDataMapper;
+import com.edunexus.api.common.ConflictException;
 import com.edunexus.api.common.DependencyException;
 import com.edunexus.api.common.ErrorCode;
+import com.edunexus.api.common.ResourceNotFoundException;
 import com.edunexus.api.domain.ChatMessage;
 import com.edunexus.api.domain.ChatSession;
+import com.edunexus.api.domain.TeacherBinding;
 import com.edunexus.api.repository.ChatRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -21,25 +30,50 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 public class ChatService {
 
     private final ChatRepository chatRepo;
+    private final ChatHistoryCache chatHistory;
+    private final ChatContextAssembler contextAssembler;
+    private final TeacherScopeResolver teacherScopes;
+    private final ChatAnswerCache answerCache;
+    private final ChatStreamRegistry streamRegistry;
     private final AiClient aiClient;
     private final GovernanceService governance;
     private final VoMapper voMapper;
     private final ObjectMapper objectMapper;
     private final TaskExecutor chatStreamExecutor;
+    private final TaskScheduler sseFlushScheduler;
+    private final Duration streamFlushInterval;
+    private final int streamFlushBytes;
 
     public ChatService(
             ChatRepository chatRepo,
+            ChatHistoryCache chatHistory,
+            ChatContextAssembler contextAssembler,
+            TeacherScopeResolver teacherScopes,
+            ChatAnswerCache answerCache,
+            ChatStreamRegistry streamRegistry,
             AiClient aiClient,
             GovernanceService governance,
             VoMapper voMapper,
             ObjectMapper objectMapper,
-            @org.springframework.beans.factory.annotation.Qualifier("chatStreamExecutor") TaskExecutor chatStreamExecutor) {
+            @org.springframework.beans.factory.annotation.Qualifier("chatStreamExecutor") TaskExecutor chatStreamExecutor,
+            @org.springframework.beans.factory.annotation.Qualifier("sseFlushScheduler")
+                    TaskScheduler sseFlushScheduler,
+            @Value("${app.chat-stream-flush-interval-ms:40}") long streamFlushIntervalMs,
+            @Value("${app.chat-stream-flush-bytes:512}") int streamFlushBytes) {
         this.chatRepo = chatRepo;
+        this.chatHistory = chatHistory;
+        this.contextAssembler = contextAssembler;
+        this.teacherScopes = teacherScopes;
+        this.answerCache = answerCache;
+        this.streamRegistry = streamRegistry;
         this.aiClient = aiClient;
         this.governance = governance;
         this.voMapper = voMapper;
         this.objectMapper = objectMapper;
         this.chatStreamExecutor = chatStreamExecutor;
+        this.sseFlushScheduler = sseFlushScheduler;
+        this.streamFlushInterval = Duration.ofMillis(streamFlushIntervalMs);
+        this.streamFlushBytes = streamFlushBytes;
     }
 
     public ChatSession createSession(UUID studentId) {
@@ -69,142 +103,234 @@ public class ChatService {
 
     public void deleteSession(UUID sessionId) {
         chatRepo.deleteSession(sessionId);
+        chatHistory.invalidate(sessionId);
+        contextAssembler.invalidate(sessionId);
     }
 
     public ChatSession ensureSessionOwner(UUID sessionId, UUID studentId) {
         ChatSession session = chatRepo.findSession(sessionId);
         if (session.isDeleted())
-            throw new com.edunexus.api.common.ResourceNotFoundException("资源不存在");
+            throw new ResourceNotFoundException("资源不存在");
         if (!studentId.equals(session.studentId())) throw new SecurityException("非资源归属者");
         return session;
     }
 
     public Map<String, Object> sendMessage(
             UUID sessionId, UUID studentId, String message, String traceId) {
-        UUID userMessageId = chatRepo.createUserMessage(sessionId, message);
-        Map<String, Object> chatBody = buildChatBody(sessionId, studentId, message, traceId, false);
+        Instant askedAt = Instant.now();
+        AiClient.ChatCall chatCall = buildChatCall(sessionId, studentId, message, traceId);
+        UUID userMessageId = UUID.randomUUID();
 
-        Map<String, Object> aiResult = aiClient.chat(chatBody);
-        String answer = ApiDataMapper.asString(aiResult.get("answer"));
+        ChatAnswerCache.CachedAnswer cached = cachedAnswer(chatCall);
+        if (cached != null) {
+            return persistTurn(
+                    sessionId,
+                    userMessageId,
+                    message,
+                    askedAt,
+                    cached.answer(),
+                    cached.citations(),
+                    0);
+        }
+        long cacheGeneration = answerCache.generation();
+        AiClient.ChatResult aiResult = aiClient.chat(chatCall);
+        String answer = aiResult.answer();
         if (answer == null || answer.isBlank()) {
             throw new DependencyException(ErrorCode.AI_OUTPUT_INVALID, "AI 返回空响应");
         }
-        List<Map<String, Object>> citations =
-                ApiDataMapper.parseObjectList(aiResult.get("citations"), objectMapper);
-        int tokenUsage = parseTokenUsage(aiResult.get("tokenUsage"));
-        return persistAssistantReply(sessionId, userMessageId, answer, citations, tokenUsage);
+        rememberAnswer(chatCall, cacheGeneration, answer, aiResult.citations());
+        return persistTurn(
+                sessionId,
+                userMessageId,
+                message,
+                askedAt,
+                answer,
+                aiResult.citations(),
+                aiResult.totalTokens());
     }
 
+    /**
+     * Streams the answer as numbered SSE frames. Generation is decoupled from the connection: if
+     * the client drops, the answer is still completed and persisted, and the client can pick up
+     * the remaining frames through {@link #resumeStream}. A client that stays connected but
+     * reads too slowly to keep up has the generation cancelled instead.
+     */
     public SseEmitter streamMessage(
             UUID sessionId, UUID studentId, String message, String traceId) {
-        UUID userMessageId = chatRepo.createUserMessage(sessionId, message);
-        Map<String, Object> chatBody = buildChatBody(sessionId, studentId, message, traceId, true);
+        Instant askedAt = Instant.now();
+        AiClient.ChatCall chatCall = buildChatCall(sessionId, studentId, message, traceId);
+        UUID userMessageId = UUID.randomUUID();
 
-        SseEmitter emitter = new SseEmitter(70_000L);
-        chatStreamExecutor.execute(
-                () -> {
-                    StringBuilder answerBuilder = new StringBuilder();
-                    List<Map<String, Object>> citations = new ArrayList<>();
-                    try {
-                        sendSseEvent(emitter, Map.of("stage", "generating"));
-                        aiClient.chatStream(
-                                chatBody,
-                                chunk -> {
-                                    List<Map<String, Object>> frameCitations = chunk.citations();
-                                    if (frameCitations != null && !frameCitations.isEmpty()) {
-                                        citations.clear();
-                                        citations.addAll(frameCitations);
-                                    }
-                                    String delta = chunk.delta() == null ? "" : chunk.delta();
-                                    if (!delta.isBlank()
-                                            || (frameCitations != null
-                                                    && !frameCitations.isEmpty())) {
-                                        answerBuilder.append(delta);
-                                        sendSseEvent(
-                                                emitter,
-                                                Map.of(
-                                                        "delta",
-                                                        delta,
-                                                        "citations",
-                                                        frameCitations == null
-                                                                ? List.of()
-                                                                : frameCitations));
-                                    }
-                                });
-
-                        String answer = answerBuilder.toString().trim();
-                        if (answer.isBlank())
-                            throw new DependencyException(ErrorCode.AI_OUTPUT_INVALID, "AI 返回空响应");
-
-                        Map<String, Object> data =
-                                persistAssistantReply(
-                                        sessionId, userMessageId, answer, citations, 0);
-                        sendSseEvent(
-                                emitter, Map.of("done", true, "data", data, "traceId", traceId));
-                        sendSseEvent(emitter, "[DONE]");
-                        emitter.complete();
-                    } catch (Exception ex) {
-                        String errMsg =
-                                ex.getMessage() == null || ex.getMessage().isBlank()
-                                        ? "发送消息失败"
-                                        : ex.getMessage();
-                        try {
-                            sendSseEvent(
-                                    emitter,
-                                    Map.of(
-                                            "error", errMsg, "traceId", traceId, "message",
-                                            message));
-                        } catch (Exception ignored) {
-                        }
-                        emitter.completeWithError(ex);
+        ChatStreamReplay replay = streamRegistry.open(sessionId, userMessageId);
+        SseEmitter emitter = attachEmitter(replay, 0L);
+        SseFrameCoalescer frames =
+                new SseFrameCoalescer(
+                        replay,
+                        objectMapper,
+                        sseFlushScheduler,
+                        chatStreamExecutor,
+                        streamFlushInterval,
+                        streamFlushBytes);
+        StringBuilder answerBuilder = new StringBuilder();
+        List<AiClient.CitationView> citations = new ArrayList<>();
+        frames.send(Map.of("stage", "generating", "messageId", userMessageId.toString()));
+        Consumer<AiClient.ChatStreamChunk> onChunk =
+                chunk -> {
+                    List<AiClient.CitationView> frameCitations = chunk.citations();
+                    if (frameCitations != null && !frameCitations.isEmpty()) {
+                        citations.clear();
+                        citations.addAll(frameCitations);
+                        frames.citations(frameCitations);
                     }
-                });
+                    String delta = chunk.delta() == null ? "" : chunk.delta();
+                    if (!delta.isBlank()) {
+                        answerBuilder.append(delta);
+                        frames.delta(delta);
+                    }
+                };
+        ChatAnswerCache.CachedAnswer cached = cachedAnswer(chatCall);
+        long cacheGeneration = answerCache.generation();
+        CompletableFuture<Void> generation =
+                cached == null
+                        ? aiClient.chatStreamAsync(chatCall, onChunk)
+                        : CompletableFuture.completedFuture(null);
+        if (cached != null) {
+            onChunk.accept(new AiClient.ChatStreamChunk(cached.answer(), cached.citations()));
+        }
+        replay.onOverrun(() -> generation.cancel(true));
+        generation
+                .thenRunAsync(
+                        () -> {
+                            String answer = answerBuilder.toString().trim();
+                            if (answer.isBlank())
+                                throw new DependencyException(
+                                        ErrorCode.AI_OUTPUT_INVALID, "AI 返回空响应");
+                            if (cached == null) {
+                                rememberAnswer(chatCall, cacheGeneration, answer, citations);
+                            }
+
+                            Map<String, Object> data =
+                                    persistTurn(
+                                            sessionId,
+                                            userMessageId,
+                                            message,
+                                            askedAt,
+                                            answer,
+                                            citations,
+                                            0);
+                            frames.send(Map.of("done", true, "data", data, "traceId", traceId));
+                            frames.send("[DONE]");
+                        },
+                        chatStreamExecutor)
+                .exceptionally(
+                        error -> {
+                            Throwable ex =
+                                    error instanceof CompletionException && error.getCause() != null
+                                            ? error.getCause()
+                                            : error;
+                            String errMsg =
+                                    replay.overrun()
+                                            ? "网络过慢，回复已中断，请重新发送"
+                                            : ex.getMessage() == null || ex.getMessage().isBlank()
+                                                    ? "发送消息失败"
+                                                    : ex.getMessage();
+                            frames.send(
+                                    Map.of(
+                                            "error", errMsg,
+                                            "traceId", traceId,
+                                            "message", message));
+                            return null;
+                        })
+                .whenComplete((ignored, ex) -> streamRegistry.complete(userMessageId));
+        return emitter;
+    }
+
+    /** Re-attaches to a running or recently finished stream after {@code lastEventId}. */
+    public SseEmitter resumeStream(UUID sessionId, UUID messageId, String lastEventId) {
+        ChatStreamReplay replay = streamRegistry.find(sessionId, messageId);
+        if (replay == null) {
+            throw new ResourceNotFoundException("流式回复已结束或不存在");
+        }
+        long lastId = parseLastEventId(lastEventId);
+        SseEmitter emitter = new SseEmitter(70_000L);
+        if (replay.attach(emitter, lastId) == ChatStreamReplay.AttachResult.GAP) {
+            throw new ConflictException("缓冲区已不包含断点之后的内容，请重新发送消息");
+        }
+        registerDetach(replay, emitter);
+        return emitter;
+    }
+
+    private SseEmitter attachEmitter(ChatStreamReplay replay, long lastEventId) {
+        SseEmitter emitter = new SseEmitter(70_000L);
+        replay.attach(emitter, lastEventId);
+        registerDetach(replay, emitter);
         return emitter;
     }
 
-    private Map<String, Object> buildChatBody(
-            UUID sessionId, UUID studentId, String message, String traceId, boolean stream) {
-        List<ChatMessage> historyMessages = chatRepo.listRecentHistory(sessionId, 30);
-        List<Map<String, Object>> history =
-                historyMessages.stream()
-                        .map(
-                                m -> {
-                                    Map<String, Object> item = new LinkedHashMap<>();
-                                    item.put("role", m.role());
-                                    item.put("content", m.content());
-                                    return item;
-                                })
-                        .toList();
-
-        String binding = chatRepo.findTeacherBinding(studentId);
-        String teacherId = null;
-        String classId = null;
-        if (binding != null) {
-            String[] parts = binding.split(":", 2);
-            teacherId = parts[0];
-            classId = parts.length > 1 && !parts[1].isBlank() ? parts[1] : null;
+    private static void registerDetach(ChatStreamReplay replay, SseEmitter emitter) {
+        emitter.onTimeout(() -> replay.detach(emitter));
+        emitter.onError(ex -> replay.detach(emitter));
+        emitter.onCompletion(() -> replay.detach(emitter));
+    }
+
+    private static long parseLastEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(lastEventId.trim()));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Last-Event-ID 格式错误");
         }
+    }
+
+    private AiClient.ChatCall buildChatCall(
+            UUID sessionId, UUID studentId, String message, String traceId) {
+        List<AiClient.HistoryTurn> history = contextAssembler.assemble(sessionId, message);
+
+        TeacherBinding scope = teacherScopes.scopeFor(studentId);
+        String teacherId = scope == null ? null : scope.teacherId().toString();
+        String classId =
+                scope == null || scope.classroomId() == null
+                        ? null
+                        : scope.classroomId().toString();
 
-        Map<String, Object> teacherScope = new LinkedHashMap<>();
-        teacherScope.put("teacherId", teacherId);
-        teacherScope.put("classId", classId);
+        return new AiClient.ChatCall(
+                traceId, sessionId, studentId, message, history, teacherId, classId);
+    }
 
-        Map<String, Object> body = new LinkedHashMap<>();
-        body.put("traceId", traceId);
-        body.put("sessionId", sessionId.toString());
-        body.put("studentId", studentId.toString());
-        body.put("message", message);
-        body.put("stream", stream);
-        body.put("context", Map.of("history", history));
-        body.put("teacherScope", teacherScope);
-        return body;
+    /** Only opening questions are served from or stored in the shared answer cache. */
+    private ChatAnswerCache.CachedAnswer cachedAnswer(AiClient.ChatCall call) {
+        if (call.history().size() != 1) {
+            return null;
+        }
+        return answerCache.find(call.teacherId(), call.classId(), call.message());
+    }
+
+    private void rememberAnswer(
+            AiClient.ChatCall call,
+            long cacheGeneration,
+            String answer,
+            List<AiClient.CitationView> citations) {
+        if (call.history().size() == 1) {
+            answerCache.put(
+                    cacheGeneration,
+                    call.teacherId(),
+                    call.classId(),
+                    call.message(),
+                    answer,
+                    citations);
+        }
     }
 
-    private Map<String, Object> persistAssistantReply(
+    /** The question is only stored together with its answer, in one round trip. */
+    private Map<String, Object> persistTurn(
             UUID sessionId,
             UUID userMessageId,
+            String question,
+            Instant askedAt,
             String answer,
-            List<Map<String, Object>> citations,
+            List<AiClient.CitationView> citations,
             int tokenUsage) {
         String citationsJson;
         try {
@@ -212,40 +338,20 @@ public class ChatService {
         } catch (Exception ex) {
             citationsJson = "[]";
         }
-        UUID assistantMessageId =
-                chatRepo.createAssistantMessage(sessionId, answer, citationsJson, tokenUsage);
-        chatRepo.touchSession(sessionId);
-        chatRepo.updateSessionTitleIfNeeded(sessionId);
-
-        ChatMessage userMessage = chatRepo.findMessage(userMessageId);
-        ChatMessage assistantMessage = chatRepo.findMessage(assistantMessageId);
+        ChatRepository.Turn turn =
+                chatRepo.saveTurn(
+                        sessionId,
+                        userMessageId,
+                        question,
+                        askedAt,
+                        answer,
+                        citationsJson,
+                        tokenUsage);
+        chatHistory.append(turn);
 
         Map<String, Object> data = new LinkedHashMap<>();
-        data.put("userMessage", voMapper.toChatMessageVo(userMessage));
-        data.put("assistantMessage", voMapper.toChatMessageVo(assistantMessage));
+        data.put("userMessage", voMapper.toChatMessageVo(turn.userMessage()));
+        data.put("assistantMessage", voMapper.toChatMessageVo(turn.assistantMessage()));
         return data;
     }
-
-    private int parseTokenUsage(Object tokenUsagePayload) {
-        if (tokenUsagePayload == null) return 0;
-        try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> map =
-                    objectMapper.convertValue(
-                            tokenUsagePayload,
-                            new com.fasterxml.jackson.core.type.TypeReference<>() {});
-            return ApiDataMapper.asInt(map.get("prompt"))
-                    + ApiDataMapper.asInt(map.get("completion"));
-        } catch (IllegalArgumentException ex) {
-            return 0;
-        }
-    }
-
-    private void sendSseEvent(SseEmitter emitter, Object payload) {
-        try {
-            emitter.send(SseEmitter.event().data(payload));
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        }
-    }
 }
@@ -0,0 +1,81 @@
+package com.edunexus.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replay buffers of in-progress chat streams, keyed by the user message that started them. A
+ * buffer stays resumable while its answer is generated and for {@code app.chat-stream-replay-ttl-
+ * seconds} after it finishes. Frames reach the client through a writer task on {@code
+ * chatStreamExecutor}, so a slow reader never blocks the thread consuming the AI stream.
+ */
+@Component
+public class ChatStreamRegistry {
+
+    private final ConcurrentHashMap<UUID, Entry> streams = new ConcurrentHashMap<>();
+    private final TaskScheduler scheduler;
+    private final TaskExecutor writer;
+    private final int maxFrames;
+    private final int maxBacklog;
+    private final Duration ttl;
+    private final DistributionSummary queueDepth;
+    private final Counter slowReaderCancels;
+
+    public ChatStreamRegistry(
+            @Qualifier("sseFlushScheduler") TaskScheduler scheduler,
+            @Qualifier("chatStreamExecutor") TaskExecutor writer,
+            MeterRegistry meterRegistry,
+            @Value("${app.chat-stream-replay-max-frames:2000}") int maxFrames,
+            @Value("${app.chat-stream-slow-client-max-frames:256}") int maxBacklog,
+            @Value("${app.chat-stream-replay-ttl-seconds:60}") long ttlSeconds) {
+        this.scheduler = scheduler;
+        this.writer = writer;
+        this.maxFrames = maxFrames;
+        this.maxBacklog = maxBacklog;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.queueDepth =
+                DistributionSummary.builder("edunexus.chat.stream.queue.depth")
+                        .description("Frames queued for a chat stream's client when one is added")
+                        .baseUnit("frames")
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry);
+        this.slowReaderCancels =
+                Counter.builder("edunexus.chat.stream.slow.cancelled")
+                        .description("Chat streams cancelled because the client read too slowly")
+                        .register(meterRegistry);
+    }
+
+    ChatStreamReplay open(UUID sessionId, UUID messageId) {
+        ChatStreamReplay replay =
+                new ChatStreamReplay(maxFrames, maxBacklog, writer, queueDepth, slowReaderCancels);
+        streams.put(messageId, new Entry(sessionId, replay));
+        return replay;
+    }
+
+    /** Marks the stream finished and schedules its buffer for removal after the TTL. */
+    void complete(UUID messageId) {
+        Entry entry = streams.get(messageId);
+        if (entry == null) {
+            return;
+        }
+        entry.replay().complete();
+        scheduler.schedule(() -> streams.remove(messageId, entry), Instant.now().plus(ttl));
+    }
+
+    ChatStreamReplay find(UUID sessionId, UUID messageId) {
+        Entry entry = streams.get(messageId);
+        return entry == null || !entry.sessionId().equals(sessionId) ? null : entry.replay();
+    }
+
+    private record Entry(UUID sessionId, ChatStreamReplay replay) {}
+}
@@ -0,0 +1,220 @@
+package com.edunexus.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import java.util.concurrent.Executor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Numbered frames of one streamed answer, kept so a client that lost its connection can resume
+ * from its {@code Last-Event-ID}. Holds at most {@code maxFrames} frames. Publishing never blocks
+ * on the network: the attached emitter is fed by a writer task that sends the frames it has not
+ * seen yet, so its outbound queue is just the unsent tail of the buffer. When that tail grows past
+ * {@code maxBacklog} frames the reader is too slow to keep up and the overrun handler cancels the
+ * upstream generation. A failed write only detaches that emitter.
+ */
+final class ChatStreamReplay implements SseFrameCoalescer.FrameSink {
+
+    private final int maxFrames;
+    private final int maxBacklog;
+    private final Executor writer;
+    private final DistributionSummary queueDepth;
+    private final Counter slowReaderCancels;
+    private final Frame[] frames;
+    private long lastId;
+    private boolean completed;
+    private boolean overrun;
+    private Runnable onOverrun;
+    private Subscriber subscriber;
+
+    ChatStreamReplay(
+            int maxFrames,
+            int maxBacklog,
+            Executor writer,
+            DistributionSummary queueDepth,
+            Counter slowReaderCancels) {
+        this.maxFrames = Math.max(1, maxFrames);
+        this.frames = new Frame[this.maxFrames];
+        // Unsent frames must still be buffered when the writer gets to them.
+        this.maxBacklog = Math.max(1, Math.min(maxBacklog, this.maxFrames - 1));
+        this.writer = writer;
+        this.queueDepth = queueDepth;
+        this.slowReaderCancels = slowReaderCancels;
+    }
+
+    enum AttachResult {
+        ATTACHED,
+        /** Frames after the client's last id were already evicted from the buffer. */
+        GAP
+    }
+
+    @Override
+    public void send(Object payload) {
+        publish(payload);
+    }
+
+    void publish(Object payload) {
+        Subscriber wake;
+        Runnable cancel = null;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            lastId++;
+            frames[slot(lastId)] = new Frame(lastId, payload);
+            if (subscriber == null) {
+                return;
+            }
+            long depth = lastId - subscriber.sentId;
+            queueDepth.record(depth);
+            if (depth > maxBacklog && !overrun) {
+                overrun = true;
+                slowReaderCancels.increment();
+                cancel = onOverrun;
+            }
+            wake = subscriber.wake();
+        }
+        if (cancel != null) {
+            cancel.run();
+        }
+        start(wake);
+    }
+
+    /** Frames published but not yet written to the attached emitter. */
+    @Override
+    public synchronized int backlog() {
+        return subscriber == null ? 0 : (int) (lastId - subscriber.sentId);
+    }
+
+    /** Runs {@code action} once the reader falls too far behind, or now if it already has. */
+    void onOverrun(Runnable action) {
+        boolean already;
+        synchronized (this) {
+            onOverrun = action;
+            already = overrun;
+        }
+        if (already) {
+            action.run();
+        }
+    }
+
+    synchronized boolean overrun() {
+        return overrun;
+    }
+
+    void complete() {
+        Subscriber wake;
+        synchronized (this) {
+            completed = true;
+            wake = subscriber == null ? null : subscriber.wake();
+        }
+        start(wake);
+    }
+
+    /**
+     * Queues every frame after {@code lastEventId} for {@code emitter} and, unless the stream has
+     * already finished, keeps it attached for new frames, replacing any previous emitter.
+     */
+    AttachResult attach(SseEmitter emitter, long lastEventId) {
+        Subscriber previous;
+        Subscriber wake;
+        synchronized (this) {
+            if (lastEventId + 1 < oldestId()) {
+                return AttachResult.GAP;
+            }
+            previous = subscriber;
+            subscriber = new Subscriber(emitter, Math.min(lastEventId, lastId));
+            wake = subscriber.wake();
+        }
+        if (previous != null && previous.emitter != emitter) {
+            previous.emitter.complete();
+        }
+        start(wake);
+        return AttachResult.ATTACHED;
+    }
+
+    synchronized void detach(SseEmitter emitter) {
+        if (subscriber != null && subscriber.emitter == emitter) {
+            subscriber = null;
+        }
+    }
+
+    private void start(Subscriber wake) {
+        if (wake != null) {
+            writer.execute(() -> drain(wake));
+        }
+    }
+
+    /** Writes the subscriber's unsent frames outside the lock until it has caught up. */
+    private void drain(Subscriber target) {
+        while (true) {
+            Frame next = null;
+            synchronized (this) {
+                if (subscriber != target) {
+                    return;
+                }
+                long nextId = target.sentId + 1;
+                if (nextId <= lastId && nextId >= oldestId()) {
+                    next = frames[slot(nextId)];
+                } else if (nextId <= lastId || completed) {
+                    // Finished, or the next frame was evicted before it could be written.
+                    subscriber = null;
+                } else {
+                    target.draining = false;
+                    return;
+                }
+            }
+            if (next == null) {
+                target.emitter.complete();
+                return;
+            }
+            if (!deliver(target.emitter, next)) {
+                detach(target.emitter);
+                return;
+            }
+            synchronized (this) {
+                target.sentId = next.id();
+            }
+        }
+    }
+
+    private long oldestId() {
+        return Math.max(1, lastId - maxFrames + 1);
+    }
+
+    private int slot(long id) {
+        return (int) ((id - 1) % maxFrames);
+    }
+
+    private static boolean deliver(SseEmitter emitter, Frame frame) {
+        try {
+            emitter.send(SseEmitter.event().id(Long.toString(frame.id())).data(frame.payload()));
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private record Frame(long id, Object payload) {}
+
+    /** Guarded by the replay's lock. */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private long sentId;
+        private boolean draining;
+
+        Subscriber(SseEmitter emitter, long sentId) {
+            this.emitter = emitter;
+            this.sentId = sentId;
+        }
+
+        /** Claims the writer for this subscriber, or returns {@code null} if one is running. */
+        Subscriber wake() {
+            if (draining) {
+                return null;
+            }
+            draining = true;
+            return this;
+        }
+    }
+}
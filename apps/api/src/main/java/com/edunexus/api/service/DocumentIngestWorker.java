@@ -0,0 +1,178 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.repository.JobRunRepository;
+import com.edunexus.api.repository.JobRunRepository.ClaimedJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pulls document ingest jobs from {@code job_runs}. Each node claims only as many jobs as it has
+ * free slots ({@code app.document-ingest-parallelism}), so the executor never rejects work and
+ * throughput grows with the number of API replicas. Claimed jobs hold a lease that is renewed while
+ * they run; if the node dies the lease lapses and another node picks the job up, giving up after
+ * {@code app.document-ingest-max-attempts}. A transient AI failure (breaker open, shed, timeout)
+ * returns the job to the queue with exponential backoff as another attempt, and a job handed to the
+ * AI service is claimed again if no outcome arrives within the hand-off timeout.
+ */
+@Component
+public class DocumentIngestWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentIngestWorker.class);
+
+    private final JobRunRepository jobRepo;
+    private final KnowledgeService knowledgeService;
+    private final TaskExecutor executor;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration retryBackoff;
+    private final Duration handOffTimeout;
+    private final Semaphore slots;
+    /** Jobs this node is executing; only their leases are renewed. */
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final String nodeId = "api-" + UUID.randomUUID();
+    private final Counter reclaimedJobs;
+
+    public DocumentIngestWorker(
+            JobRunRepository jobRepo,
+            KnowledgeService knowledgeService,
+            @Qualifier("documentIngestExecutor") TaskExecutor executor,
+            MeterRegistry meterRegistry,
+            @Value("${app.document-ingest-worker-enabled:true}") boolean enabled,
+            @Value("${app.document-ingest-parallelism:2}") int parallelism,
+            @Value("${app.document-ingest-max-attempts:3}") int maxAttempts,
+            @Value("${app.document-ingest-lease-seconds:120}") long leaseSeconds,
+            @Value("${app.document-ingest-retry-backoff-seconds:30}") long retryBackoffSeconds,
+            @Value("${app.document-ingest-handoff-timeout-seconds:1800}")
+                    long handOffTimeoutSeconds) {
+        this.jobRepo = jobRepo;
+        this.knowledgeService = knowledgeService;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.lease = Duration.ofSeconds(Math.max(10, leaseSeconds));
+        this.retryBackoff = Duration.ofSeconds(Math.max(1, retryBackoffSeconds));
+        this.handOffTimeout = Duration.ofSeconds(Math.max(60, handOffTimeoutSeconds));
+        this.slots = new Semaphore(Math.max(1, parallelism));
+        this.reclaimedJobs =
+                Counter.builder("edunexus.document.ingest.reclaimed")
+                        .description("Ingest jobs claimed again after a lapsed lease or a transient failure")
+                        .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.document-ingest-initial-delay-ms:5000}",
+            fixedDelayString = "${app.document-ingest-poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int free = slots.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        List<ClaimedJob> claimed;
+        try {
+            claimed = jobRepo.claimIngestJobs(nodeId, free, lease);
+        } catch (RuntimeException ex) {
+            log.warn("document_ingest_claim_failed nodeId={} error={}", nodeId, ex.getMessage());
+            return;
+        }
+        for (ClaimedJob job : claimed) {
+            if (!slots.tryAcquire()) {
+                jobRepo.releaseClaim(job.id(), nodeId);
+                continue;
+            }
+            inFlight.add(job.id());
+            try {
+                executor.execute(() -> run(job));
+            } catch (RuntimeException ex) {
+                inFlight.remove(job.id());
+                slots.release();
+                jobRepo.releaseClaim(job.id(), nodeId);
+                log.warn(
+                        "document_ingest_dispatch_failed jobId={} error={}",
+                        job.id(),
+                        ex.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.document-ingest-heartbeat-ms:30000}")
+    public void heartbeat() {
+        if (!enabled || inFlight.isEmpty()) {
+            return;
+        }
+        try {
+            jobRepo.renewIngestLeases(nodeId, List.copyOf(inFlight), lease);
+        } catch (RuntimeException ex) {
+            log.warn(
+                    "document_ingest_heartbeat_failed nodeId={} error={}",
+                    nodeId,
+                    ex.getMessage());
+        }
+    }
+
+    private void run(ClaimedJob job) {
+        try {
+            if (job.attempt() > 1) {
+                reclaimedJobs.increment();
+            }
+            if (job.attempt() > maxAttempts) {
+                knowledgeService.abandonIngestJob(job);
+            } else {
+                knowledgeService.processIngestJob(job);
+            }
+            jobRepo.clearLease(job.id(), nodeId, handOffTimeout);
+        } catch (RuntimeException ex) {
+            if (KnowledgeService.isRetryableIngestFailure(ex)) {
+                retryLater(job, ex.getMessage());
+            } else {
+                // Left leased: once it lapses the job is retried as another attempt.
+                log.error(
+                        "document_ingest_job_failed jobId={} error={}",
+                        job.id(),
+                        ex.getMessage(),
+                        ex);
+            }
+        } finally {
+            inFlight.remove(job.id());
+            slots.release();
+        }
+    }
+
+    private void retryLater(ClaimedJob job, String errorMessage) {
+        try {
+            if (job.attempt() >= maxAttempts) {
+                knowledgeService.failIngestJob(job, errorMessage);
+                jobRepo.clearLease(job.id(), nodeId, handOffTimeout);
+                return;
+            }
+            Duration backoff = retryBackoff.multipliedBy(1L << Math.min(job.attempt() - 1, 5));
+            jobRepo.retryLater(job.id(), nodeId, backoff, errorMessage);
+            log.warn(
+                    "document_ingest_retry_scheduled jobId={} attempt={} backoff_seconds={} error={}",
+                    job.id(),
+                    job.attempt(),
+                    backoff.toSeconds(),
+                    errorMessage);
+        } catch (RuntimeException ex) {
+            // Left leased: once it lapses the job is retried as another attempt.
+            log.error(
+                    "document_ingest_retry_failed jobId={} error={}", job.id(), ex.getMessage(), ex);
+        }
+    }
+}
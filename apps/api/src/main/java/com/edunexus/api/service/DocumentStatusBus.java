@@ -0,0 +1,290 @@
+package com.edunexus.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes document status transitions to teachers' open SSE streams. A transition is sent as a
+ * Postgres NOTIFY on {@value #CHANNEL}; every node LISTENs on one dedicated connection and hands
+ * what it hears to its own subscribers, so a teacher sees ingests that finish on any node. If the
+ * NOTIFY cannot be sent, or cross-node fan-out is turned off, the event is delivered locally only.
+ * Each stream is written by its own writer task, and a client that stops reading is dropped once
+ * {@code app.document-status-max-pending} events are waiting for it.
+ */
+@Component
+public class DocumentStatusBus {
+
+    public record DocumentStatusEvent(
+            UUID documentId, UUID teacherId, UUID classId, String status, String errorMessage) {}
+
+    static final String CHANNEL = "document_status";
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentStatusBus.class);
+
+    /** NOTIFY payloads must stay under 8000 bytes; error messages are the only unbounded part. */
+    private static final int MAX_ERROR_CHARS = 500;
+
+    private static final long RECONNECT_DELAY_MS = 2_000L;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor writer;
+    private final boolean notifyEnabled;
+    private final long streamTimeoutMs;
+    private final int maxPending;
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean listening;
+    /** Whether this node's LISTEN connection is up, so it will hear its own NOTIFYs. */
+    private volatile boolean connected;
+    private volatile Thread listener;
+
+    public DocumentStatusBus(
+            DataSource dataSource,
+            JdbcTemplate jdbc,
+            ObjectMapper objectMapper,
+            @Qualifier("chatStreamExecutor") TaskExecutor writer,
+            MeterRegistry meterRegistry,
+            @Value("${app.document-status-notify-enabled:true}") boolean notifyEnabled,
+            @Value("${app.document-status-stream-timeout-ms:1800000}") long streamTimeoutMs,
+            @Value("${app.document-status-max-pending:64}") int maxPending) {
+        this.dataSource = dataSource;
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.writer = writer;
+        this.notifyEnabled = notifyEnabled;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.maxPending = Math.max(1, maxPending);
+        Gauge.builder("edunexus.document.status.subscribers", this, DocumentStatusBus::streams)
+                .description("Open document status streams on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of status changes for {@code teacherId}'s documents. The first frame is a
+     * {@code ready} event; clients reload the document list on it so nothing is missed between
+     * that load and the stream, including after a reconnect.
+     */
+    public SseEmitter subscribe(UUID teacherId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Subscriber subscriber = new Subscriber(teacherId, emitter);
+        subscribers.computeIfAbsent(teacherId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(ex -> remove(subscriber));
+        subscriber.offer(SseEmitter.event().name("ready").data(Map.of()));
+        return emitter;
+    }
+
+    public void publish(DocumentStatusEvent event) {
+        DocumentStatusEvent bounded = bounded(event);
+        if (connected) {
+            try {
+                jdbc.queryForList(
+                        "select pg_notify(?, ?)",
+                        CHANNEL,
+                        objectMapper.writeValueAsString(bounded));
+                return;
+            } catch (Exception ex) {
+                log.warn(
+                        "document_status_notify_failed documentId={} error={}",
+                        event.documentId(),
+                        ex.getMessage());
+            }
+        }
+        deliver(bounded);
+    }
+
+    void deliver(DocumentStatusEvent event) {
+        Set<Subscriber> targets = subscribers.get(event.teacherId());
+        if (targets == null) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            subscriber.offer(SseEmitter.event().name("status").data(event));
+        }
+    }
+
+    /** Keeps idle streams open through proxies and finds clients that have gone away. */
+    @Scheduled(fixedDelayString = "${app.document-status-heartbeat-ms:25000}")
+    public void heartbeat() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            set.forEach(subscriber -> subscriber.offer(SseEmitter.event().comment("")));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        if (!notifyEnabled || listener != null) {
+            return;
+        }
+        listening = true;
+        Thread thread = new Thread(this::listen, "document-status-listener");
+        thread.setDaemon(true);
+        listener = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stopListening() {
+        listening = false;
+        Thread thread = listener;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        subscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+    }
+
+    int streams() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void listen() {
+        while (listening) {
+            try (Connection connection = dataSource.getConnection();
+                    Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                connected = true;
+                log.info("document_status_listener_started");
+                while (listening) {
+                    PGNotification[] notifications = pg.getNotifications(1_000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                connected = false;
+                if (!listening) {
+                    return;
+                }
+                // Other nodes' events sent meanwhile are lost; clients reload when they reconnect.
+                log.warn("document_status_listener_failed error={}", ex.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        try {
+            deliver(objectMapper.readValue(payload, DocumentStatusEvent.class));
+        } catch (Exception ex) {
+            log.warn("document_status_payload_invalid error={}", ex.getMessage());
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(
+                subscriber.teacherId,
+                (id, set) -> {
+                    set.remove(subscriber);
+                    return set.isEmpty() ? null : set;
+                });
+    }
+
+    private static DocumentStatusEvent bounded(DocumentStatusEvent event) {
+        String error = event.errorMessage();
+        if (error == null || error.length() <= MAX_ERROR_CHARS) {
+            return event;
+        }
+        return new DocumentStatusEvent(
+                event.documentId(),
+                event.teacherId(),
+                event.classId(),
+                event.status(),
+                error.substring(0, MAX_ERROR_CHARS));
+    }
+
+    /** One open stream. Frames are written in order by at most one writer task at a time. */
+    private final class Subscriber {
+        private final UUID teacherId;
+        private final SseEmitter emitter;
+        private final ArrayDeque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        Subscriber(UUID teacherId, SseEmitter emitter) {
+            this.teacherId = teacherId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder frame) {
+            boolean start = false;
+            boolean overflow = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (pending.size() >= maxPending) {
+                    closed = true;
+                    pending.clear();
+                    overflow = true;
+                } else {
+                    pending.add(frame);
+                    start = !draining;
+                    draining = true;
+                }
+            }
+            if (overflow) {
+                remove(this);
+                emitter.complete();
+            } else if (start) {
+                writer.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder frame;
+                synchronized (this) {
+                    frame = closed ? null : pending.poll();
+                    if (frame == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(frame);
+                } catch (Exception ex) {
+                    synchronized (this) {
+                        closed = true;
+                        draining = false;
+                    }
+                    remove(this);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.edunexus.api.repository.ExerciseRepository;
 import com.edunexus.api.repository.QuestionRepository;
 import com.edunexus.api.repository.SuggestionRepository;
 import com.edunexus.api.repository.WrongBookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
@@ -28,6 +29,8 @@ public class ExerciseService {
     private final QuestionRepository questionRepo;
     private final WrongBookRepository wrongBookRepo;
     private final SuggestionRepository suggestionRepo;
+    private final WrongAnswerAnalysisService wrongAnalysis;
+    private final ObjectMapper objectMapper;
     private final JdbcTemplate jdbc;
 
     public ExerciseService(
@@ -35,11 +38,15 @@ public class ExerciseService {
             QuestionRepository questionRepo,
             WrongBookRepository wrongBookRepo,
             SuggestionRepository suggestionRepo,
+            WrongAnswerAnalysisService wrongAnalysis,
+            ObjectMapper objectMapper,
             JdbcTemplate jdbc) {
         this.exerciseRepo = exerciseRepo;
         this.questionRepo = questionRepo;
         this.wrongBookRepo = wrongBookRepo;
         this.suggestionRepo = suggestionRepo;
+        this.wrongAnalysis = wrongAnalysis;
+        this.objectMapper = objectMapper;
         this.jdbc = jdbc;
     }
 
@@ -67,6 +74,7 @@ public class ExerciseService {
         int totalScore = 0;
         String subject = null;
         List<Map<String, Object>> items = new ArrayList<>();
+        List<WrongAnswerAnalysisService.WrongAnswer> wrongAnswers = new ArrayList<>();
 
         for (AnswerItem answerItem : answers) {
             Question question = questionRepo.findById(answerItem.questionId());
@@ -92,7 +100,12 @@ public class ExerciseService {
                     question.analysis(),
                     teacherSuggestion);
 
-            if (!isCorrect) wrongBookRepo.upsert(studentId, answerItem.questionId());
+            if (!isCorrect) {
+                wrongBookRepo.upsert(studentId, answerItem.questionId());
+                wrongAnswers.add(
+                        new WrongAnswerAnalysisService.WrongAnswer(
+                                question, answerItem.userAnswer()));
+            }
 
             items.add(
                     Map.of(
@@ -103,6 +116,7 @@ public class ExerciseService {
                             "score", score));
         }
         exerciseRepo.updateRecord(recordId, subject, correctCount, totalScore);
+        wrongAnalysis.precomputeAfterCommit(wrongAnswers);
         return new SubmitResult(recordId, answers.size(), correctCount, totalScore, items);
     }
 
@@ -112,15 +126,21 @@ public class ExerciseService {
     }
 
     public List<Map<String, Object>> getAnalysisItems(UUID recordId, UUID studentId) {
-        // Returns enriched items - we use a custom query in ExerciseRepository that joins question
-        // content
-        // The items come from the repository with content/knowledgePoints embedded via the query
         List<ExerciseRecordItem> items = exerciseRepo.listAnalysisItems(recordId, studentId);
-        // Enrich with question content via a second pass
+        Map<UUID, Question> questions = new LinkedHashMap<>();
+        List<WrongAnswerAnalysisService.WrongAnswer> wrongAnswers = new ArrayList<>();
+        for (ExerciseRecordItem item : items) {
+            Question q = questions.computeIfAbsent(item.questionId(), questionRepo::findById);
+            if (!item.isCorrect()) {
+                wrongAnswers.add(new WrongAnswerAnalysisService.WrongAnswer(q, item.userAnswer()));
+            }
+        }
+        Map<String, Map<String, Object>> aiAnalyses = wrongAnalysis.findAnalyses(wrongAnswers);
+
         return items.stream()
                 .map(
                         item -> {
-                            Question q = questionRepo.findById(item.questionId());
+                            Question q = questions.get(item.questionId());
                             Map<String, Object> out = new LinkedHashMap<>();
                             out.put("questionId", item.questionId().toString());
                             out.put("content", q.content());
@@ -128,11 +148,17 @@ public class ExerciseService {
                             out.put("correctAnswer", item.correctAnswer());
                             out.put("isCorrect", item.isCorrect());
                             out.put("analysis", item.analysis());
+                            out.put(
+                                    "aiAnalysis",
+                                    item.isCorrect()
+                                            ? null
+                                            : aiAnalyses.get(
+                                                    WrongAnswerAnalysisService.contentKey(
+                                                            q, item.userAnswer())));
                             out.put(
                                     "knowledgePoints",
                                     ApiDataMapper.parseNullableStringList(
-                                            q.knowledgePointsJson(),
-                                            new com.fasterxml.jackson.databind.ObjectMapper()));
+                                            q.knowledgePointsJson(), objectMapper));
                             out.put("teacherSuggestion", item.teacherSuggestion());
                             return out;
                         })
@@ -46,6 +46,33 @@ public class GovernanceService {
         }
     }
 
+    /**
+     * Latest unexpired snapshot for an identical request, whatever Idempotency-Key it was stored
+     * under; used by single-flight followers that waited on another instance's leader.
+     */
+    public Map<String, Object> getCoalescedReplay(String scope, String requestHash) {
+        Map<String, Object> row =
+                db.oneOrNull(
+                        """
+                        select response_snapshot::text as "responseText" from idempotency_keys
+                        where scope=? and request_hash=? and expires_at > now()
+                          and response_snapshot is not null
+                        order by created_at desc
+                        limit 1
+                        """,
+                        scope,
+                        requestHash);
+        if (row == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(
+                    String.valueOf(row.get("responseText")), new TypeReference<>() {});
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("幂等回放数据损坏");
+        }
+    }
+
     public void storeIdempotency(
             String scope,
             String idemKey,
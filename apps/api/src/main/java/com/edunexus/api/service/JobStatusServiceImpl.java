@@ -48,11 +48,14 @@ public class JobStatusServiceImpl extends JobStatusServiceGrpc.JobStatusServiceI
                         result.put("chunks", request.getChunks());
                     }
                     governanceService.markJobSucceeded(jobId, result);
+                    knowledgeService.publishDocumentStatusForJob(jobId);
                     knowledgeService.cleanupSupersededReadyDocumentsForJob(
                             jobId, request.getTraceId());
                 }
-                case JOB_STATUS_FAILED ->
-                        governanceService.markJobFailed(jobId, request.getErrorMessage());
+                case JOB_STATUS_FAILED -> {
+                    governanceService.markJobFailed(jobId, request.getErrorMessage());
+                    knowledgeService.publishDocumentStatusForJob(jobId);
+                }
                 case JOB_STATUS_DEAD_LETTER ->
                         governanceService.markJobDeadLetter(jobId, request.getErrorMessage());
                 default -> log.warn("Unhandled job status reported: {}", request.getStatus());
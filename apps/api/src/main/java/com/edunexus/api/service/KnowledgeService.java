@@ -1,34 +1,55 @@
 package com.edunexus.api.service;
 
 import com.edunexus.api.common.CryptoUtil;
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
+import com.edunexus.api.common.ResourceNotFoundException;
 import com.edunexus.api.domain.Classroom;
 import com.edunexus.api.domain.Document;
 import com.edunexus.api.repository.ClassroomRepository;
 import com.edunexus.api.repository.DocumentRepository;
+import com.edunexus.api.repository.JobRunRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Service
 public class KnowledgeService {
 
     private static final Logger log = LoggerFactory.getLogger(KnowledgeService.class);
 
+    /** Sorts before every document id; where a purge sweep without a checkpoint starts. */
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
     private final DocumentRepository documentRepo;
     private final ClassroomRepository classroomRepo;
     private final ObjectStorageService objectStorageService;
     private final AiClient aiClient;
     private final GovernanceService governance;
+    private final ChatAnswerCache answerCache;
+    private final DocumentStatusBus statusBus;
     private final TaskExecutor documentIngestExecutor;
     private final boolean startupCleanupEnabled;
+    private final int kbDeleteBatchSize;
+    private final int kbDeleteBatchConcurrency;
+    private final int purgePageSize;
 
     public KnowledgeService(
             DocumentRepository documentRepo,
@@ -36,14 +57,28 @@ public class KnowledgeService {
             ObjectStorageService objectStorageService,
             AiClient aiClient,
             GovernanceService governance,
+            ChatAnswerCache answerCache,
+            DocumentStatusBus statusBus,
             @Value("${app.document-dedupe-on-startup-enabled:true}") boolean startupCleanupEnabled,
+            @Value("${app.kb-delete-batch-size:50}") int kbDeleteBatchSize,
+            @Value("${app.kb-delete-batch-concurrency:4}") int kbDeleteBatchConcurrency,
+            @Value("${app.document-purge-page-size:200}") int purgePageSize,
             @Qualifier("documentIngestExecutor") TaskExecutor documentIngestExecutor) {
         this.documentRepo = documentRepo;
         this.classroomRepo = classroomRepo;
         this.objectStorageService = objectStorageService;
         this.aiClient = aiClient;
         this.governance = governance;
+        this.answerCache = answerCache;
+        this.statusBus = statusBus;
         this.startupCleanupEnabled = startupCleanupEnabled;
+        if (kbDeleteBatchSize > AiClient.MAX_DELETE_BATCH) {
+            throw new IllegalArgumentException(
+                    "app.kb-delete-batch-size must not exceed " + AiClient.MAX_DELETE_BATCH);
+        }
+        this.kbDeleteBatchSize = Math.max(1, kbDeleteBatchSize);
+        this.kbDeleteBatchConcurrency = Math.max(1, kbDeleteBatchConcurrency);
+        this.purgePageSize = Math.max(1, purgePageSize);
         this.documentIngestExecutor = documentIngestExecutor;
     }
 
@@ -55,15 +90,39 @@ public class KnowledgeService {
             String filename,
             String fileType,
             long fileSize,
-            byte[] fileBytes,
+            InputStreamSource content,
+            String contentSha256,
             String traceId,
             String idempotencyKey) {
         Classroom classroom = classroomRepo.ensureOwner(classId, teacherId);
 
-        String storagePath = objectStorageService.upload(filename, fileType, fileBytes);
+        // The class already has these exact bytes indexed: keep serving that document instead of
+        // storing, parsing and embedding them again, whatever the new upload is called.
+        Document existing = documentRepo.findReadyByContentHash(teacherId, classId, contentSha256);
+        if (existing != null) {
+            log.info(
+                    "document_upload_deduplicated documentId={} filename={} traceId={}",
+                    existing.id(),
+                    filename,
+                    traceId);
+            return new UploadResult(existing.id(), existing);
+        }
+
+        String storagePath = objectStorageService.upload(filename, fileType, content, fileSize);
         UUID documentId =
-                documentRepo.create(teacherId, classId, filename, fileType, fileSize, storagePath);
+                documentRepo.create(
+                        teacherId,
+                        classId,
+                        filename,
+                        fileType,
+                        fileSize,
+                        storagePath,
+                        contentSha256);
 
+        String ingestKey =
+                idempotencyKey == null || idempotencyKey.isBlank()
+                        ? "kb-ingest-" + documentId
+                        : idempotencyKey;
         UUID jobId =
                 governance.createJobRun(
                         "DOCUMENT_INGEST",
@@ -74,24 +133,85 @@ public class KnowledgeService {
                                 "classId", classId.toString(),
                                 "className", classroom.name(),
                                 "filename", filename,
-                                "storagePath", storagePath));
-
-        documentIngestExecutor.execute(
-                () ->
-                        processInBackground(
-                                documentId,
-                                teacherId,
-                                classId,
-                                filename,
-                                fileType,
-                                fileBytes,
-                                traceId,
-                                idempotencyKey,
-                                jobId));
+                                "storagePath", storagePath,
+                                "traceId", traceId == null ? "" : traceId,
+                                "idempotencyKey", ingestKey));
+        log.info(
+                "document_ingest_queued documentId={} jobId={} traceId={}",
+                documentId,
+                jobId,
+                traceId);
 
         return new UploadResult(documentId, documentRepo.findById(documentId));
     }
 
+    /** Runs an ingest job claimed by {@link DocumentIngestWorker}. */
+    public void processIngestJob(JobRunRepository.ClaimedJob job) {
+        Document doc;
+        try {
+            doc = documentRepo.findById(job.businessId());
+        } catch (ResourceNotFoundException ex) {
+            governance.markJobDeadLetter(job.id(), "文档已删除");
+            return;
+        }
+        processInBackground(
+                doc.id(),
+                doc.teacherId(),
+                doc.classroomId(),
+                doc.filename(),
+                doc.fileType(),
+                doc.fileSize(),
+                doc.storagePath(),
+                job.traceId(),
+                job.idempotencyKey(),
+                job.id());
+    }
+
+    /** Gives up on a job whose earlier attempts kept dying with the node running them. */
+    public void abandonIngestJob(JobRunRepository.ClaimedJob job) {
+        log.warn(
+                "document_ingest_abandoned documentId={} jobId={} attempt={} traceId={}",
+                job.businessId(),
+                job.id(),
+                job.attempt(),
+                job.traceId());
+        governance.markJobFailed(job.id(), "文档处理多次中断，请重新上传");
+        publishDocumentStatusForJob(job.id());
+    }
+
+    /** Fails a job whose last attempt hit a transient AI error. */
+    public void failIngestJob(JobRunRepository.ClaimedJob job, String errorMessage) {
+        log.warn(
+                "document_ingest_retries_exhausted documentId={} jobId={} attempt={} traceId={} error={}",
+                job.businessId(),
+                job.id(),
+                job.attempt(),
+                job.traceId(),
+                errorMessage);
+        documentRepo.updateStatus(job.businessId(), "FAILED", errorMessage);
+        governance.markJobDeadLetter(job.id(), errorMessage);
+        publishDocumentStatusForJob(job.id());
+    }
+
+    /** Pushes the current status of a job's document after the job's outcome was recorded. */
+    public void publishDocumentStatusForJob(UUID jobId) {
+        UUID documentId = documentRepo.findDocumentIdByJobId(jobId);
+        if (documentId == null) {
+            return;
+        }
+        try {
+            Document doc = documentRepo.findById(documentId);
+            publishStatus(
+                    doc.id(), doc.teacherId(), doc.classroomId(), doc.status(), doc.errorMessage());
+        } catch (ResourceNotFoundException ex) {
+            // Deleted meanwhile; the teacher's list no longer shows it.
+        }
+    }
+
+    public SseEmitter streamDocumentStatus(UUID teacherId) {
+        return statusBus.subscribe(teacherId);
+    }
+
     public List<Document> listDocuments(UUID teacherId, String status) {
         return documentRepo.list(teacherId, status);
     }
@@ -113,14 +233,7 @@ public class KnowledgeService {
                         retireSupersededDocuments(duplicates, traceId);
                     }
 
-                    List<Document> deletedDocuments = documentRepo.listSoftDeletedDocuments();
-                    if (!deletedDocuments.isEmpty()) {
-                        log.info(
-                                "cleanup_deleted_document_vectors_start count={} traceId={}",
-                                deletedDocuments.size(),
-                                traceId);
-                        purgeDeletedDocumentArtifacts(deletedDocuments, traceId);
-                    }
+                    purgeDeletedDocuments(traceId);
                 });
     }
 
@@ -128,24 +241,23 @@ public class KnowledgeService {
         Document doc = documentRepo.ensureOwner(documentId, teacherId);
         objectStorageService.delete(doc.storagePath());
         documentRepo.softDelete(documentId);
+        answerCache.invalidate(doc.teacherId(), doc.classroomId());
 
         String docIdStr = documentId.toString();
-        documentIngestExecutor.execute(
-                () -> {
-                    try {
-                        aiClient.deleteKb(
-                                Map.of(
-                                        "traceId", traceId,
-                                        "documentId", docIdStr,
-                                        "idempotencyKey", "kb-delete-" + docIdStr));
-                    } catch (Exception ex) {
-                        log.error(
-                                "async_kb_delete_failed documentId={} traceId={}",
-                                docIdStr,
-                                traceId,
-                                ex);
-                    }
-                });
+        aiClient.deleteKbAsync(
+                        new AiClient.DeleteCall(traceId, docIdStr, "kb-delete-" + docIdStr))
+                .whenComplete(
+                        (result, ex) -> {
+                            if (ex != null) {
+                                log.error(
+                                        "async_kb_delete_failed documentId={} traceId={}",
+                                        docIdStr,
+                                        traceId,
+                                        ex);
+                            } else {
+                                documentRepo.markPurged(List.of(documentId));
+                            }
+                        });
     }
 
     public void cleanupSupersededReadyDocuments(UUID documentId, String traceId) {
@@ -163,6 +275,12 @@ public class KnowledgeService {
         if (documentId == null) {
             return;
         }
+        try {
+            Document doc = documentRepo.findById(documentId);
+            answerCache.invalidate(doc.teacherId(), doc.classroomId());
+        } catch (ResourceNotFoundException ex) {
+            // Deleted while ingesting; deleteDocument already dropped the class's answers.
+        }
         cleanupSupersededReadyDocuments(documentId, traceId);
     }
 
@@ -172,86 +290,95 @@ public class KnowledgeService {
             UUID classId,
             String filename,
             String fileType,
-            byte[] fileBytes,
+            long fileSize,
+            String storagePath,
             String traceId,
             String idempotencyKey,
             UUID jobId) {
         try {
-            governance.markJobRunning(jobId);
-            documentRepo.updateStatus(documentId, "PARSING", null);
-            documentRepo.updateStatus(documentId, "EMBEDDING", null);
-
-            Map<String, Object> ingestResult =
-                    aiClient.ingestKb(
-                            Map.of(
-                                    "traceId",
-                                    traceId,
-                                    "jobId",
-                                    jobId.toString(),
-                                    "documentId",
-                                    documentId.toString(),
-                                    "teacherId",
-                                    teacherId.toString(),
-                                    "classId",
-                                    classId.toString(),
-                                    "filename",
-                                    filename,
-                                    "fileType",
-                                    fileType,
-                                    "fileContent",
-                                    fileBytes,
-                                    "idempotencyKey",
-                                    idempotencyKey == null || idempotencyKey.isBlank()
-                                            ? "kb-ingest-" + documentId
-                                            : idempotencyKey));
-
-            Boolean isBackground = (Boolean) ingestResult.getOrDefault("background", false);
-            if (!isBackground) {
+            updateStatus(documentId, teacherId, classId, "PARSING", null);
+            updateStatus(documentId, teacherId, classId, "EMBEDDING", null);
+
+            AiClient.IngestResult ingestResult;
+            try (InputStream content = objectStorageService.openStream(storagePath)) {
+                ingestResult =
+                        aiClient.ingestKbStream(
+                                new AiClient.IngestCall(
+                                        traceId,
+                                        idempotencyKey,
+                                        jobId,
+                                        documentId,
+                                        teacherId,
+                                        classId,
+                                        filename,
+                                        fileType),
+                                content,
+                                fileSize);
+            }
+
+            if (!ingestResult.background()) {
                 documentRepo.updateStatus(documentId, "READY", null);
+                answerCache.invalidate(teacherId, classId);
                 governance.markJobSucceeded(
                         jobId,
                         Map.of(
                                 "documentId", documentId.toString(),
                                 "classId", classId.toString(),
-                                "chunks", ingestResult.getOrDefault("chunks", 0)));
+                                "chunks", ingestResult.chunks()));
+                publishStatus(documentId, teacherId, classId, "READY", null);
                 cleanupSupersededReadyDocuments(documentId, traceId);
             }
+        } catch (DependencyException ex) {
+            if (isRetryableIngestFailure(ex)) {
+                // The worker decides between another attempt and giving up.
+                throw ex;
+            }
+            updateStatus(documentId, teacherId, classId, "FAILED", ex.getMessage());
+            governance.markJobDeadLetter(jobId, ex.getMessage());
         } catch (Exception ex) {
-            documentRepo.updateStatus(documentId, "FAILED", ex.getMessage());
+            updateStatus(documentId, teacherId, classId, "FAILED", ex.getMessage());
             governance.markJobDeadLetter(jobId, ex.getMessage());
         }
     }
 
+    /** AI outages, shedding and timeouts clear up on their own, so the job is worth retrying. */
+    static boolean isRetryableIngestFailure(Throwable error) {
+        return error instanceof DependencyException dependency
+                && (dependency.errorCode() == ErrorCode.AI_MODEL_UNAVAILABLE
+                        || dependency.errorCode() == ErrorCode.AI_RATE_LIMITED
+                        || dependency.errorCode() == ErrorCode.AI_TIMEOUT);
+    }
+
+    private void updateStatus(
+            UUID documentId, UUID teacherId, UUID classId, String status, String errorMessage) {
+        documentRepo.updateStatus(documentId, status, errorMessage);
+        publishStatus(documentId, teacherId, classId, status, errorMessage);
+    }
+
+    private void publishStatus(
+            UUID documentId, UUID teacherId, UUID classId, String status, String errorMessage) {
+        statusBus.publish(
+                new DocumentStatusBus.DocumentStatusEvent(
+                        documentId, teacherId, classId, status, errorMessage));
+    }
+
     public List<com.edunexus.api.domain.Classroom> listClassrooms(UUID teacherId) {
         return classroomRepo.listByTeacher(teacherId);
     }
 
-    public static String computeHash(byte[] fileBytes) {
-        return CryptoUtil.sha256(fileBytes);
+    public static String computeHash(InputStreamSource content) throws IOException {
+        return CryptoUtil.sha256(content.getInputStream());
     }
 
     private void retireSupersededDocuments(List<Document> duplicates, String traceId) {
-        for (Document duplicate : duplicates) {
-            try {
-                aiClient.deleteKb(
-                        Map.of(
-                                "traceId",
-                                traceId,
-                                "documentId",
-                                duplicate.id().toString(),
-                                "idempotencyKey",
-                                "kb-delete-" + duplicate.id()));
-            } catch (Exception ex) {
-                log.error(
-                        "cleanup_duplicate_document_kb_delete_failed documentId={} traceId={}",
-                        duplicate.id(),
-                        traceId,
-                        ex);
-                continue;
-            }
-
+        List<Document> vectorsDeleted =
+                deleteKbInBatches(
+                        duplicates, traceId, "cleanup_duplicate_document_kb_delete_failed");
+        List<UUID> purged = new ArrayList<>();
+        for (Document duplicate : vectorsDeleted) {
             try {
                 objectStorageService.delete(duplicate.storagePath());
+                purged.add(duplicate.id());
             } catch (Exception ex) {
                 log.warn(
                         "cleanup_duplicate_document_storage_delete_failed documentId={} storagePath={} traceId={}",
@@ -268,44 +395,135 @@ public class KnowledgeService {
                     duplicate.filename(),
                     traceId);
         }
+        documentRepo.markPurged(purged);
     }
 
-    private void purgeDeletedDocumentArtifacts(List<Document> deletedDocuments, String traceId) {
-        for (Document document : deletedDocuments) {
-            try {
-                aiClient.deleteKb(
-                        Map.of(
-                                "traceId",
-                                traceId,
-                                "documentId",
-                                document.id().toString(),
-                                "idempotencyKey",
-                                "kb-delete-" + document.id()));
-            } catch (Exception ex) {
-                log.error(
-                        "cleanup_deleted_document_kb_delete_failed documentId={} traceId={}",
-                        document.id(),
-                        traceId,
-                        ex);
-                continue;
+    /**
+     * Purges soft-deleted documents a page at a time in id order, saving a checkpoint after each
+     * page so a restart resumes where the sweep stopped. A finished sweep clears the checkpoint;
+     * documents that failed stay unpurged and are retried by the next one.
+     */
+    private void purgeDeletedDocuments(String traceId) {
+        UUID cursor = documentRepo.purgeCheckpoint();
+        if (cursor != null) {
+            log.info("cleanup_deleted_documents_resume afterId={} traceId={}", cursor, traceId);
+        }
+        int purged = 0;
+        while (true) {
+            List<Document> page =
+                    documentRepo.listUnpurgedDeletedDocuments(
+                            cursor == null ? FIRST_ID : cursor, purgePageSize);
+            if (page.isEmpty()) {
+                break;
             }
+            purged += purgeDeletedDocumentArtifacts(page, traceId);
+            cursor = page.getLast().id();
+            if (page.size() < purgePageSize) {
+                break;
+            }
+            documentRepo.savePurgeCheckpoint(cursor);
+        }
+        documentRepo.savePurgeCheckpoint(null);
+        if (purged > 0) {
+            log.info("cleanup_deleted_documents_done purged={} traceId={}", purged, traceId);
+        }
+    }
 
-            try {
-                objectStorageService.delete(document.storagePath());
-            } catch (Exception ex) {
+    private int purgeDeletedDocumentArtifacts(List<Document> deletedDocuments, String traceId) {
+        List<Document> vectorsDeleted =
+                deleteKbInBatches(
+                        deletedDocuments, traceId, "cleanup_deleted_document_kb_delete_failed");
+        Set<String> storageFailed =
+                objectStorageService.deleteAll(
+                        vectorsDeleted.stream().map(Document::storagePath).toList());
+        List<UUID> purged = new ArrayList<>();
+        for (Document document : vectorsDeleted) {
+            if (storageFailed.contains(document.storagePath())) {
                 log.warn(
                         "cleanup_deleted_document_storage_delete_failed documentId={} storagePath={} traceId={}",
                         document.id(),
                         document.storagePath(),
-                        traceId,
-                        ex);
+                        traceId);
+            } else {
+                purged.add(document.id());
             }
+        }
+        documentRepo.markPurged(purged);
+        log.info(
+                "cleanup_deleted_documents_page size={} purged={} traceId={}",
+                deletedDocuments.size(),
+                purged.size(),
+                traceId);
+        return purged.size();
+    }
 
-            log.info(
-                    "cleanup_deleted_document_success documentId={} filename={} traceId={}",
-                    document.id(),
-                    document.filename(),
-                    traceId);
+    /**
+     * Deletes the documents' vectors with DeleteBatch calls of {@code kbDeleteBatchSize} ids, at
+     * most {@code kbDeleteBatchConcurrency} in flight, and returns the documents confirmed gone.
+     * Failed ids are logged under {@code failureEvent} and left for the next sweep.
+     */
+    private List<Document> deleteKbInBatches(
+            List<Document> documents, String traceId, String failureEvent) {
+        Semaphore permits = new Semaphore(kbDeleteBatchConcurrency);
+        List<CompletableFuture<Set<String>>> batches = new ArrayList<>();
+        for (int from = 0; from < documents.size(); from += kbDeleteBatchSize) {
+            List<String> documentIds =
+                    documents.subList(from, Math.min(from + kbDeleteBatchSize, documents.size()))
+                            .stream()
+                            .map(document -> document.id().toString())
+                            .toList();
+            // The trace id is part of the key so a later sweep retries instead of replaying.
+            String idemKey =
+                    "kb-delete-batch-"
+                            + CryptoUtil.sha256(traceId + ":" + String.join(",", documentIds));
+
+            permits.acquireUninterruptibly();
+            CompletableFuture<AiClient.DeleteBatchResult> call;
+            try {
+                call =
+                        aiClient.deleteKbBatchAsync(
+                                new AiClient.DeleteBatchCall(traceId, documentIds, idemKey));
+            } catch (RuntimeException ex) {
+                call = CompletableFuture.failedFuture(ex);
+            }
+            call.whenComplete((result, ex) -> permits.release());
+            batches.add(
+                    call.handle(
+                            (result, ex) ->
+                                    confirmedIds(documentIds, result, ex, traceId, failureEvent)));
+        }
+
+        Set<String> confirmed = new HashSet<>();
+        batches.forEach(batch -> confirmed.addAll(batch.join()));
+        return documents.stream()
+                .filter(document -> confirmed.contains(document.id().toString()))
+                .toList();
+    }
+
+    private static Set<String> confirmedIds(
+            List<String> documentIds,
+            AiClient.DeleteBatchResult result,
+            Throwable error,
+            String traceId,
+            String failureEvent) {
+        Set<String> confirmed = new HashSet<>();
+        if (error != null) {
+            log.error(
+                    "{} documentIds={} traceId={}", failureEvent, documentIds, traceId, error);
+            return confirmed;
+        }
+        for (AiClient.DeleteBatchItem item : result.results()) {
+            if (item.ok()) {
+                confirmed.add(item.documentId());
+            } else {
+                log.error(
+                        "{} documentId={} traceId={} error={}",
+                        failureEvent,
+                        item.documentId(),
+                        traceId,
+                        item.errorMessage());
+            }
         }
+        return confirmed;
     }
 }
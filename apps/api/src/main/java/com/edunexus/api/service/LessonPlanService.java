@@ -1,12 +1,10 @@
 package com.edunexus.api.service;
 
-import com.edunexus.api.common.ApiDataMapper;
 import com.edunexus.api.common.DependencyException;
 import com.edunexus.api.common.ErrorCode;
 import com.edunexus.api.domain.LessonPlan;
 import com.edunexus.api.repository.LessonPlanRepository;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import org.springframework.stereotype.Service;
 
@@ -36,17 +34,17 @@ public class LessonPlanService {
             int durationMins,
             String traceId,
             String idempotencyKey) {
-        Map<String, Object> aiResp =
+        AiClient.LessonPlanResult aiResp =
                 aiClient.generatePlan(
-                        Map.of(
-                                "traceId", traceId,
-                                "topic", topic,
-                                "gradeLevel", gradeLevel,
-                                "durationMins", durationMins,
-                                "teacherId", teacherId.toString(),
-                                "idempotencyKey", idempotencyKey == null ? "" : idempotencyKey));
-
-        String contentMd = ApiDataMapper.asString(aiResp.get("contentMd"));
+                        new AiClient.LessonPlanCall(
+                                traceId,
+                                idempotencyKey == null ? "" : idempotencyKey,
+                                teacherId,
+                                topic,
+                                gradeLevel,
+                                durationMins));
+
+        String contentMd = aiResp.contentMd();
         if (contentMd == null || contentMd.isBlank()) {
             throw new DependencyException(ErrorCode.AI_OUTPUT_INVALID, "AI 教案内容为空");
         }
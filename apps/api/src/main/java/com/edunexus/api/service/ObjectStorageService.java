@@ -1,39 +1,154 @@
 package com.edunexus.api.service;
 
 import com.edunexus.api.common.FilenameUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 @Service
 public class ObjectStorageService {
+    /** S3 rejects multipart parts smaller than this, except the last one. */
+    private static final long MIN_PART_BYTES = 5L * 1024 * 1024;
+
+    /** Most keys a single DeleteObjects request accepts. */
+    private static final int MAX_DELETE_KEYS = 1000;
+
     private final S3Client s3;
     private final String bucket;
+    private final int partBytes;
 
-    public ObjectStorageService(S3Client s3, @Value("${app.s3.bucket:edunexus-kb}") String bucket) {
+    public ObjectStorageService(
+            S3Client s3,
+            @Value("${app.s3.bucket:edunexus-kb}") String bucket,
+            @Value("${app.s3.multipart-part-size-mb:8}") int partSizeMb) {
         this.s3 = s3;
         this.bucket = bucket;
+        this.partBytes = (int) Math.max(MIN_PART_BYTES, partSizeMb * 1024L * 1024L);
         ensureBucket();
     }
 
-    public String upload(String fileName, String contentType, byte[] content) {
+    /**
+     * Streams {@code content} into a new object with at most one part in memory: content that
+     * fits in one part goes up in a single PUT, anything larger as a multipart upload.
+     */
+    public String upload(
+            String fileName, String contentType, InputStreamSource content, long size) {
         String key = "documents/" + UUID.randomUUID() + "-" + FilenameUtil.sanitize(fileName);
-        s3.putObject(
-                PutObjectRequest.builder().bucket(bucket).key(key).contentType(contentType).build(),
-                RequestBody.fromBytes(content));
+        // One spare byte tells "exactly one part" apart from "more to come".
+        byte[] buffer = new byte[(int) Math.min(partBytes, Math.max(0, size) + 1)];
+        try (InputStream in = content.getInputStream()) {
+            int read = in.readNBytes(buffer, 0, buffer.length);
+            if (read < buffer.length) {
+                s3.putObject(
+                        PutObjectRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .contentType(contentType)
+                                .build(),
+                        part(buffer, read));
+            } else {
+                uploadMultipart(key, contentType, in, buffer, read);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
         return "s3://" + bucket + "/" + key;
     }
 
+    private void uploadMultipart(
+            String key, String contentType, InputStream in, byte[] firstPart, int firstRead)
+            throws IOException {
+        String uploadId =
+                s3.createMultipartUpload(
+                                CreateMultipartUploadRequest.builder()
+                                        .bucket(bucket)
+                                        .key(key)
+                                        .contentType(contentType)
+                                        .build())
+                        .uploadId();
+        byte[] buffer = firstPart.length == partBytes ? firstPart : new byte[partBytes];
+        if (buffer != firstPart) {
+            System.arraycopy(firstPart, 0, buffer, 0, firstRead);
+            firstRead += in.readNBytes(buffer, firstRead, partBytes - firstRead);
+        }
+        List<CompletedPart> parts = new ArrayList<>();
+        try {
+            int read = firstRead;
+            while (read > 0) {
+                int partNumber = parts.size() + 1;
+                String eTag =
+                        s3.uploadPart(
+                                        UploadPartRequest.builder()
+                                                .bucket(bucket)
+                                                .key(key)
+                                                .uploadId(uploadId)
+                                                .partNumber(partNumber)
+                                                .contentLength((long) read)
+                                                .build(),
+                                        part(buffer, read))
+                                .eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                read = in.readNBytes(buffer, 0, buffer.length);
+            }
+            s3.completeMultipartUpload(
+                    CompleteMultipartUploadRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                            .build());
+        } catch (IOException | RuntimeException ex) {
+            try {
+                s3.abortMultipartUpload(
+                        AbortMultipartUploadRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .build());
+            } catch (RuntimeException abortFailure) {
+                ex.addSuppressed(abortFailure);
+            }
+            throw ex;
+        }
+    }
+
+    /** Wraps the buffer without copying; a ByteArrayInputStream can be reset for retries. */
+    private static RequestBody part(byte[] buffer, int length) {
+        return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length);
+    }
+
     public byte[] download(String storagePath) {
         ParsedPath parsed = parse(storagePath);
         ResponseBytes<GetObjectResponse> response =
@@ -45,12 +160,66 @@ public class ObjectStorageService {
         return response.asByteArray();
     }
 
+    public InputStream openStream(String storagePath) {
+        ParsedPath parsed = parse(storagePath);
+        return s3.getObject(
+                GetObjectRequest.builder().bucket(parsed.bucket()).key(parsed.key()).build());
+    }
+
     public void delete(String storagePath) {
         ParsedPath parsed = parse(storagePath);
         s3.deleteObject(
                 DeleteObjectRequest.builder().bucket(parsed.bucket()).key(parsed.key()).build());
     }
 
+    /**
+     * Deletes the objects with one DeleteObjects request per bucket and 1000 keys, and returns the
+     * paths that could not be deleted.
+     */
+    public Set<String> deleteAll(Collection<String> storagePaths) {
+        Map<String, List<ParsedPath>> byBucket = new LinkedHashMap<>();
+        Set<String> failed = new HashSet<>();
+        for (String storagePath : storagePaths) {
+            try {
+                ParsedPath parsed = parse(storagePath);
+                byBucket.computeIfAbsent(parsed.bucket(), b -> new ArrayList<>()).add(parsed);
+            } catch (IllegalArgumentException ex) {
+                failed.add(storagePath);
+            }
+        }
+        byBucket.forEach(
+                (target, paths) -> {
+                    for (int from = 0; from < paths.size(); from += MAX_DELETE_KEYS) {
+                        List<ParsedPath> batch =
+                                paths.subList(from, Math.min(from + MAX_DELETE_KEYS, paths.size()));
+                        failed.addAll(deleteBatch(target, batch));
+                    }
+                });
+        return failed;
+    }
+
+    private Set<String> deleteBatch(String target, List<ParsedPath> batch) {
+        List<ObjectIdentifier> objects =
+                batch.stream().map(p -> ObjectIdentifier.builder().key(p.key()).build()).toList();
+        Set<String> failed = new HashSet<>();
+        try {
+            DeleteObjectsResponse response =
+                    s3.deleteObjects(
+                            DeleteObjectsRequest.builder()
+                                    .bucket(target)
+                                    .delete(Delete.builder().quiet(true).objects(objects).build())
+                                    .build());
+            response.errors().forEach(error -> failed.add(path(target, error.key())));
+        } catch (RuntimeException ex) {
+            batch.forEach(p -> failed.add(path(target, p.key())));
+        }
+        return failed;
+    }
+
+    private static String path(String target, String key) {
+        return "s3://" + target + "/" + key;
+    }
+
     private ParsedPath parse(String storagePath) {
         if (storagePath == null || !storagePath.startsWith("s3://")) {
             throw new IllegalArgumentException("storage_path 不是 s3 路径");
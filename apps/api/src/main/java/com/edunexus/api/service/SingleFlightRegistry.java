@@ -0,0 +1,149 @@
+package com.edunexus.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Coalesces identical in-flight generation requests so only one of them reaches the AI service.
+ *
+ * <p>The first caller for a {@code scope}+{@code requestHash} pair becomes the leader and runs the
+ * work; concurrent callers with the same pair wait for the leader and share its result. When the
+ * leader runs inside a transaction its result is only handed out after commit, and waiters retry
+ * as leaders themselves if it rolls back. With {@code app.single-flight-cluster-enabled} the
+ * leader also holds a Postgres transaction-scoped advisory lock on the key. An identical request on
+ * another instance that finds the lock taken waits for it and then asks {@code replay} for the
+ * snapshot the other leader committed, keyed by the request hash since each POST carries its own
+ * Idempotency-Key; it only runs the work itself if there is none.
+ */
+@Component
+public class SingleFlightRegistry {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight =
+            new ConcurrentHashMap<>();
+    private final DbService db;
+    private final boolean clusterEnabled;
+    private final MeterRegistry meterRegistry;
+
+    public SingleFlightRegistry(
+            DbService db,
+            @Value("${app.single-flight-cluster-enabled:false}") boolean clusterEnabled,
+            MeterRegistry meterRegistry) {
+        this.db = db;
+        this.clusterEnabled = clusterEnabled;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T execute(String scope, String requestHash, Supplier<T> work) {
+        return execute(scope, requestHash, work, () -> null);
+    }
+
+    /** {@code replay} returns another instance's committed result for the key, or {@code null}. */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, String requestHash, Supplier<T> work, Supplier<T> replay) {
+        String key = scope + ":" + requestHash;
+        while (true) {
+            CompletableFuture<Object> leader = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, leader);
+            if (existing == null) {
+                return lead(scope, key, leader, work, replay);
+            }
+            coalescedCounter(scope).increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof LeaderRolledBack) {
+                    continue;
+                }
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private <T> T lead(
+            String scope,
+            String key,
+            CompletableFuture<Object> leader,
+            Supplier<T> work,
+            Supplier<T> replay) {
+        T value;
+        try {
+            T replayed = null;
+            if (clusterEnabled
+                    && TransactionSynchronizationManager.isActualTransactionActive()
+                    && !tryLock(key)) {
+                db.one("select pg_advisory_xact_lock(hashtextextended(?, 0))", key);
+                replayed = replay.get();
+                if (replayed != null) {
+                    clusterCoalescedCounter(scope).increment();
+                }
+            }
+            value = replayed != null ? replayed : work.get();
+        } catch (RuntimeException | Error ex) {
+            inFlight.remove(key, leader);
+            leader.completeExceptionally(ex);
+            throw ex;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            inFlight.remove(key, leader);
+            leader.complete(value);
+            return value;
+        }
+        // Waiters must not see rows the leader's transaction may still roll back.
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        inFlight.remove(key, leader);
+                        if (status == STATUS_COMMITTED) {
+                            leader.complete(value);
+                        } else {
+                            leader.completeExceptionally(new LeaderRolledBack());
+                        }
+                    }
+                });
+        return value;
+    }
+
+    private boolean tryLock(String key) {
+        Object locked =
+                db.one("select pg_try_advisory_xact_lock(hashtextextended(?, 0)) as locked", key)
+                        .get("locked");
+        return Boolean.TRUE.equals(locked);
+    }
+
+    private Counter clusterCoalescedCounter(String scope) {
+        return Counter.builder("edunexus.singleflight.cluster_coalesced")
+                .description("Requests that reused a result committed by another instance")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    private Counter coalescedCounter(String scope) {
+        return Counter.builder("edunexus.singleflight.coalesced")
+                .description("Requests that waited on an identical in-flight request")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    private static final class LeaderRolledBack extends RuntimeException {
+        LeaderRolledBack() {
+            super("single-flight leader rolled back", null, false, false);
+        }
+    }
+}
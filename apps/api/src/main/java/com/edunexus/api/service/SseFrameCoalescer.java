@@ -0,0 +1,182 @@
+package com.edunexus.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Batches streamed answer deltas into fewer SSE frames. Pending text is written once it reaches
+ * {@code maxBytes} or has waited {@code maxDelay}, whichever comes first; citations are sent in a
+ * frame of their own, and only when they change. While the sink still has unsent frames for a slow
+ * reader, text keeps merging into one pending frame (up to {@code MERGE_LIMIT_FACTOR} times
+ * {@code maxBytes}) instead of adding frames to its queue. Delta frames are assembled from a
+ * constant prefix plus the escaped text rather than serializing a map per token.
+ */
+final class SseFrameCoalescer {
+
+    private static final String DELTA_PREFIX = "{\"delta\":";
+    static final int MERGE_LIMIT_FACTOR = 32;
+
+    private final FrameSink sink;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler scheduler;
+    private final Executor flushExecutor;
+    private final Duration maxDelay;
+    private final int maxBytes;
+
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingBytes;
+    private ScheduledFuture<?> scheduledFlush;
+    private List<?> sentCitations = List.of();
+    private RuntimeException sendFailure;
+
+    SseFrameCoalescer(
+            FrameSink sink,
+            ObjectMapper objectMapper,
+            TaskScheduler scheduler,
+            Executor flushExecutor,
+            Duration maxDelay,
+            int maxBytes) {
+        this.sink = sink;
+        this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+        this.maxDelay = maxDelay;
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    synchronized void delta(String text) {
+        throwIfFailed();
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        pending.append(text);
+        pendingBytes += utf8Length(text);
+        if (pendingBytes >= maxBytes && !deferToSlowReader()) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduleFlush();
+        }
+    }
+
+    synchronized void citations(List<?> citations) {
+        throwIfFailed();
+        if (citations == null || citations.isEmpty() || Objects.equals(citations, sentCitations)) {
+            return;
+        }
+        flush();
+        sentCitations = List.copyOf(citations);
+        write(json(new CitationFrame("", sentCitations)));
+    }
+
+    /** Writes any pending text, then {@code payload} as its own frame. */
+    synchronized void send(Object payload) {
+        flush();
+        write(payload);
+    }
+
+    synchronized void flush() {
+        throwIfFailed();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        String frame = DELTA_PREFIX + json(pending.toString()) + "}";
+        pending.setLength(0);
+        pendingBytes = 0;
+        write(frame);
+    }
+
+    private synchronized void flushQuietly() {
+        scheduledFlush = null;
+        if (deferToSlowReader()) {
+            scheduleFlush();
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException ignored) {
+            // Recorded in sendFailure; the next delta() rethrows it and cancels the stream.
+        }
+    }
+
+    private void scheduleFlush() {
+        // The timer only hands off: the write itself must not block the shared scheduler.
+        scheduledFlush =
+                scheduler.schedule(
+                        () -> flushExecutor.execute(this::flushQuietly),
+                        Instant.now().plus(maxDelay));
+    }
+
+    private boolean deferToSlowReader() {
+        return pendingBytes < maxBytes * MERGE_LIMIT_FACTOR && sink.backlog() > 0;
+    }
+
+    private void write(Object payload) {
+        try {
+            sink.send(payload);
+        } catch (IOException | RuntimeException ex) {
+            sendFailure =
+                    ex instanceof IOException io
+                            ? new UncheckedIOException(io)
+                            : (RuntimeException) ex;
+            throw sendFailure;
+        }
+    }
+
+    private void throwIfFailed() {
+        if (sendFailure != null) {
+            throw sendFailure;
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("SSE 帧序列化失败", ex);
+        }
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /** Receives finished frames: an SSE emitter, or a replay buffer that fans out to one. */
+    @FunctionalInterface
+    interface FrameSink {
+        void send(Object payload) throws IOException;
+
+        /** Frames accepted but not yet written to the client. */
+        default int backlog() {
+            return 0;
+        }
+    }
+
+    private record CitationFrame(String delta, List<?> citations) {}
+}
@@ -0,0 +1,113 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.LruTtlCache;
+import com.edunexus.api.domain.TeacherBinding;
+import com.edunexus.api.repository.TeacherStudentRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cached view of each student's active teacher bindings, used for the chat RAG scope only;
+ * teacher-student access checks stay on {@link TeacherStudentRepository#ensureLinked}. An entry is
+ * reloaded when the earliest {@code revoked_at} among its bindings passes, and when {@code
+ * teacher_binding_version} (bumped by a trigger on every write to {@code teacher_student_bindings})
+ * moves past the version the entry was loaded at. The version is polled in the background, so
+ * lookups never touch the database on a hit. If polling has failed for longer than three poll
+ * intervals the cache is bypassed until a poll succeeds again.
+ */
+@Component
+public class TeacherScopeResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(TeacherScopeResolver.class);
+
+    private final TeacherStudentRepository teacherStudentRepo;
+    private final LruTtlCache<UUID, Entry> entries;
+    private final Supplier<Instant> clock;
+    private final Duration maxStaleness;
+    private volatile long version;
+    private volatile Instant versionCheckedAt = Instant.MIN;
+
+    @Autowired
+    public TeacherScopeResolver(
+            TeacherStudentRepository teacherStudentRepo,
+            @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+            @Value("${app.teacher-scope-cache-students:10000}") int maxStudents,
+            @Value("${app.teacher-scope-cache-ttl-minutes:10}") long ttlMinutes,
+            @Value("${app.teacher-scope-version-poll-ms:5000}") long pollMillis) {
+        this(
+                teacherStudentRepo,
+                maxStudents,
+                Duration.ofMinutes(ttlMinutes),
+                Duration.ofMillis(pollMillis * 3),
+                Instant::now);
+        taskScheduler.scheduleWithFixedDelay(this::pollVersion, Duration.ofMillis(pollMillis));
+    }
+
+    TeacherScopeResolver(
+            TeacherStudentRepository teacherStudentRepo,
+            int maxStudents,
+            Duration ttl,
+            Duration maxStaleness,
+            Supplier<Instant> clock) {
+        this.teacherStudentRepo = teacherStudentRepo;
+        this.entries = new LruTtlCache<>(maxStudents, ttl);
+        this.clock = clock;
+        this.maxStaleness = maxStaleness;
+        pollVersion();
+    }
+
+    /** The binding that scopes the student's chat retrieval, or {@code null} if unbound. */
+    public TeacherBinding scopeFor(UUID studentId) {
+        List<TeacherBinding> bindings = activeBindings(studentId);
+        return bindings.isEmpty() ? null : bindings.getFirst();
+    }
+
+    void pollVersion() {
+        try {
+            version = teacherStudentRepo.bindingVersion();
+            versionCheckedAt = clock.get();
+        } catch (RuntimeException ex) {
+            log.warn("teacher_scope_version_poll_failed error={}", ex.getMessage());
+        }
+    }
+
+    private List<TeacherBinding> activeBindings(UUID studentId) {
+        long current = version;
+        Instant now = clock.get();
+        if (now.isAfter(versionCheckedAt.plus(maxStaleness))) {
+            // Cannot tell whether cached entries are still current: fail closed to the database.
+            return List.copyOf(teacherStudentRepo.listActiveBindings(studentId));
+        }
+        Entry entry = entries.get(studentId);
+        if (entry != null
+                && entry.version() == current
+                && (entry.validUntil() == null || now.isBefore(entry.validUntil()))) {
+            return entry.bindings();
+        }
+        // Tagged with the version read before the query, so a write racing this load is picked
+        // up by the next poll instead of being masked.
+        List<TeacherBinding> bindings =
+                List.copyOf(teacherStudentRepo.listActiveBindings(studentId));
+        Instant validUntil = null;
+        for (TeacherBinding binding : bindings) {
+            Instant revokedAt = binding.revokedAt();
+            if (revokedAt != null && (validUntil == null || revokedAt.isBefore(validUntil))) {
+                validUntil = revokedAt;
+            }
+        }
+        entries.put(studentId, new Entry(bindings, current, validUntil));
+        return bindings;
+    }
+
+    private record Entry(List<TeacherBinding> bindings, long version, Instant validUntil) {}
+}
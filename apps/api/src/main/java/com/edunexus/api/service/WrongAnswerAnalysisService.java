@@ -0,0 +1,250 @@
+package com.edunexus.api.service;
+
+import com.edunexus.api.common.AnswerNormalizer;
+import com.edunexus.api.common.ApiDataMapper;
+import com.edunexus.api.common.CryptoUtil;
+import com.edunexus.api.common.LruTtlCache;
+import com.edunexus.api.domain.Question;
+import com.edunexus.api.domain.WrongAnswerAnalysis;
+import com.edunexus.api.repository.WrongAnswerAnalysisRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Precomputes AI explanations for wrong answers in the background so the analysis page can serve
+ * them instantly. Analyses are shared by everyone who gives the same normalized wrong answer to
+ * the same question, so they deliberately exclude per-student context such as teacher advice.
+ */
+@Service
+public class WrongAnswerAnalysisService {
+
+    private static final Logger log = LoggerFactory.getLogger(WrongAnswerAnalysisService.class);
+
+    private final WrongAnswerAnalysisRepository analysisRepo;
+    private final AiClient aiClient;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor executor;
+    private final boolean precomputeEnabled;
+    private final LruTtlCache<String, WrongAnswerAnalysis> cache;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public WrongAnswerAnalysisService(
+            WrongAnswerAnalysisRepository analysisRepo,
+            AiClient aiClient,
+            ObjectMapper objectMapper,
+            @Qualifier("wrongAnalysisExecutor") TaskExecutor executor,
+            @Value("${app.wrong-analysis-precompute-enabled:true}") boolean precomputeEnabled,
+            @Value("${app.wrong-analysis-cache-size:5000}") int cacheSize,
+            @Value("${app.wrong-analysis-cache-ttl-minutes:30}") long cacheTtlMinutes) {
+        this.analysisRepo = analysisRepo;
+        this.aiClient = aiClient;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.precomputeEnabled = precomputeEnabled;
+        this.cache = new LruTtlCache<>(cacheSize, Duration.ofMinutes(cacheTtlMinutes));
+    }
+
+    public record WrongAnswer(Question question, String userAnswer) {}
+
+    /**
+     * Keys an analysis by the question as the model saw it, so editing the stem, options, correct
+     * answer or knowledge points retires analyses written against the old revision.
+     */
+    public static String contentKey(Question question, String userAnswer) {
+        return CryptoUtil.sha256(
+                question.id()
+                        + ":"
+                        + revision(question)
+                        + ":"
+                        + normalizedAnswer(question, userAnswer));
+    }
+
+    private static String revision(Question question) {
+        return CryptoUtil.sha256(
+                String.join(
+                        "\u0000",
+                        question.questionType(),
+                        question.content(),
+                        question.optionsJson(),
+                        question.correctAnswer(),
+                        question.knowledgePointsJson()));
+    }
+
+    /** Schedules analyses once the submitting transaction commits; never blocks the caller. */
+    public void precomputeAfterCommit(List<WrongAnswer> wrongAnswers) {
+        if (!precomputeEnabled || wrongAnswers.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wrongAnswers.forEach(this::precompute);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        wrongAnswers.forEach(WrongAnswerAnalysisService.this::precompute);
+                    }
+                });
+    }
+
+    /**
+     * Returns the stored analyses for {@code wrongAnswers} keyed by content key. Answers without an
+     * analysis yet are queued again so a failed precompute heals on the next view.
+     */
+    public Map<String, Map<String, Object>> findAnalyses(List<WrongAnswer> wrongAnswers) {
+        Map<String, WrongAnswer> byKey = new LinkedHashMap<>();
+        wrongAnswers.forEach(answer -> byKey.putIfAbsent(contentKey(answer), answer));
+
+        Map<String, Map<String, Object>> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String key : byKey.keySet()) {
+            WrongAnswerAnalysis cached = cache.get(key);
+            if (cached == null) {
+                misses.add(key);
+            } else {
+                found.put(key, toView(cached));
+            }
+        }
+        for (WrongAnswerAnalysis stored : loadMisses(misses)) {
+            cache.put(stored.contentKey(), stored);
+            found.put(stored.contentKey(), toView(stored));
+        }
+        if (precomputeEnabled) {
+            byKey.forEach(
+                    (key, answer) -> {
+                        if (!found.containsKey(key)) {
+                            precompute(answer);
+                        }
+                    });
+        }
+        return found;
+    }
+
+    private List<WrongAnswerAnalysis> loadMisses(Collection<String> keys) {
+        return keys.isEmpty() ? List.of() : analysisRepo.findByKeys(keys);
+    }
+
+    private void precompute(WrongAnswer answer) {
+        String key = contentKey(answer);
+        if (cache.get(key) != null || !inFlight.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> analyze(key, answer));
+        } catch (RuntimeException ex) {
+            inFlight.remove(key);
+            log.warn("wrong_analysis_precompute_rejected contentKey={}", key, ex);
+        }
+    }
+
+    private void analyze(String key, WrongAnswer answer) {
+        try {
+            List<WrongAnswerAnalysis> existing = analysisRepo.findByKeys(List.of(key));
+            if (!existing.isEmpty()) {
+                cache.put(key, existing.getFirst());
+                inFlight.remove(key);
+                return;
+            }
+            Question question = answer.question();
+            aiClient.precomputeWrongAsync(
+                            new AiClient.AnalysisCall(
+                                    null,
+                                    "wrong-analysis-" + key,
+                                    questionText(question),
+                                    answer.userAnswer(),
+                                    question.correctAnswer(),
+                                    ApiDataMapper.parseStringList(
+                                            question.knowledgePointsJson(), objectMapper),
+                                    null))
+                    .thenAcceptAsync(result -> store(key, answer, result), executor)
+                    .whenComplete(
+                            (ignored, ex) -> {
+                                inFlight.remove(key);
+                                if (ex != null) {
+                                    log.warn(
+                                            "wrong_analysis_precompute_failed questionId={} contentKey={}",
+                                            question.id(),
+                                            key,
+                                            ex);
+                                }
+                            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(key);
+            log.warn(
+                    "wrong_analysis_precompute_failed questionId={} contentKey={}",
+                    answer.question().id(),
+                    key,
+                    ex);
+        }
+    }
+
+    private void store(String key, WrongAnswer answer, AiClient.AnalysisResult result) {
+        WrongAnswerAnalysis analysis =
+                new WrongAnswerAnalysis(
+                        key,
+                        answer.question().id(),
+                        result.encourage(),
+                        result.concept(),
+                        result.rootCause(),
+                        result.nextPractice(),
+                        toJson(result.steps()));
+        analysisRepo.insert(analysis, normalizedAnswer(answer.question(), answer.userAnswer()));
+        cache.put(key, analysis);
+    }
+
+    private Map<String, Object> toView(WrongAnswerAnalysis analysis) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("encourage", analysis.encourage());
+        view.put("concept", analysis.concept());
+        view.put("rootCause", analysis.rootCause());
+        view.put("nextPractice", analysis.nextPractice());
+        view.put("steps", ApiDataMapper.parseStringList(analysis.stepsJson(), objectMapper));
+        return view;
+    }
+
+    private String questionText(Question question) {
+        Map<String, String> options =
+                ApiDataMapper.parseNullableStringMap(question.optionsJson(), objectMapper);
+        if (options == null || options.isEmpty()) {
+            return question.content();
+        }
+        StringBuilder text = new StringBuilder(question.content());
+        options.forEach(
+                (label, option) -> text.append('\n').append(label).append(". ").append(option));
+        return text.toString();
+    }
+
+    private String toJson(List<String> values) {
+        try {
+            return objectMapper.writeValueAsString(values == null ? List.of() : values);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("解析步骤序列化失败", ex);
+        }
+    }
+
+    private static String contentKey(WrongAnswer answer) {
+        return contentKey(answer.question(), answer.userAnswer());
+    }
+
+    private static String normalizedAnswer(Question question, String userAnswer) {
+        return AnswerNormalizer.normalizeForComparison(question.questionType(), userAnswer);
+    }
+}
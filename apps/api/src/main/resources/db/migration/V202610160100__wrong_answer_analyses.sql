@@ -0,0 +1,17 @@
+-- AI wrong-answer analyses precomputed after exercise submission.
+-- Keyed by sha256(question_id || ':' || normalized user answer) so every student who gives the
+-- same wrong answer to the same question shares one analysis.
+create table if not exists wrong_answer_analyses (
+  content_key varchar(64) primary key,
+  question_id uuid not null references questions(id) on delete cascade,
+  normalized_answer text not null,
+  encourage text,
+  concept text,
+  root_cause text,
+  next_practice text,
+  steps jsonb not null default '[]'::jsonb,
+  created_at timestamptz not null default now()
+);
+
+create index if not exists idx_wrong_answer_analyses_question
+  on wrong_answer_analyses(question_id);
@@ -0,0 +1,4 @@
+-- Rolling summary of chat turns that no longer fit the prompt token budget.
+-- context_summary_through is the created_at of the newest message folded into the summary.
+alter table chat_sessions add column if not exists context_summary text;
+alter table chat_sessions add column if not exists context_summary_through timestamptz;
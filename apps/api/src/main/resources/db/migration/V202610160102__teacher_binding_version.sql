@@ -0,0 +1,20 @@
+-- Change counter for teacher_student_bindings. It is bumped inside the writing transaction, so
+-- API nodes can poll a single row to learn that their cached binding lookups are stale.
+create table if not exists teacher_binding_version (
+  id smallint primary key default 1 check (id = 1),
+  version bigint not null default 0
+);
+
+insert into teacher_binding_version(id, version) values (1, 0) on conflict (id) do nothing;
+
+create or replace function bump_teacher_binding_version() returns trigger as $$
+begin
+  update teacher_binding_version set version = version + 1 where id = 1;
+  return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists trg_teacher_binding_version on teacher_student_bindings;
+create trigger trg_teacher_binding_version
+  after insert or update or delete or truncate on teacher_student_bindings
+  for each statement execute function bump_teacher_binding_version();
@@ -0,0 +1,98 @@
+-- chat_messages becomes range-partitioned by month (UTC). Sessions idle long enough are compacted
+-- into chat_session_archives, one gzipped JSON blob per session, and their rows deleted; old
+-- partitions then empty out and are dropped instead of being vacuumed.
+
+-- Creates the monthly partitions from from_ts's month through months_ahead months after the
+-- current one. Called here and by the API's partition maintenance job.
+create or replace function ensure_chat_message_partitions(from_ts timestamptz, months_ahead int)
+returns int as $$
+declare
+  month_start timestamp := date_trunc('month', from_ts at time zone 'UTC');
+  last_month timestamp :=
+    date_trunc('month', now() at time zone 'UTC') + make_interval(months => months_ahead);
+  partition_name text;
+  created int := 0;
+begin
+  perform pg_advisory_xact_lock(hashtext('chat_messages_partitions'));
+  while month_start <= last_month loop
+    partition_name := 'chat_messages_p' || to_char(month_start, 'YYYYMM');
+    if to_regclass(partition_name) is null then
+      execute format(
+        'create table %I partition of chat_messages for values from (%L) to (%L)',
+        partition_name,
+        month_start at time zone 'UTC',
+        (month_start + interval '1 month') at time zone 'UTC');
+      created := created + 1;
+    end if;
+    month_start := month_start + interval '1 month';
+  end loop;
+  return created;
+end;
+$$ language plpgsql;
+
+-- Drops monthly partitions that ended before before_ts and no longer hold any rows.
+create or replace function drop_empty_chat_message_partitions(before_ts timestamptz)
+returns int as $$
+declare
+  partition_name text;
+  is_empty boolean;
+  dropped int := 0;
+begin
+  perform pg_advisory_xact_lock(hashtext('chat_messages_partitions'));
+  for partition_name in
+    select c.relname
+    from pg_inherits i
+    join pg_class c on c.oid = i.inhrelid
+    where i.inhparent = 'chat_messages'::regclass
+      and c.relname ~ '^chat_messages_p[0-9]{6}$'
+  loop
+    if to_timestamp(substr(partition_name, 16), 'YYYYMM')::timestamp + interval '1 month'
+        <= before_ts at time zone 'UTC' then
+      execute format('select not exists (select 1 from %I)', partition_name) into is_empty;
+      if is_empty then
+        execute format('drop table %I', partition_name);
+        dropped := dropped + 1;
+      end if;
+    end if;
+  end loop;
+  return dropped;
+end;
+$$ language plpgsql;
+
+alter table chat_messages rename to chat_messages_unpartitioned;
+alter index if exists chat_messages_pkey rename to chat_messages_unpartitioned_pkey;
+
+create table chat_messages (
+  id uuid not null default gen_random_uuid(),
+  session_id uuid not null references chat_sessions(id),
+  role varchar(20) not null check (role in ('USER','ASSISTANT')),
+  content text not null,
+  citations jsonb,
+  token_usage int not null default 0,
+  created_at timestamptz not null default now(),
+  primary key (id, created_at)
+) partition by range (created_at);
+
+select ensure_chat_message_partitions(
+  coalesce((select min(created_at) from chat_messages_unpartitioned), now()), 3);
+
+insert into chat_messages(id,session_id,role,content,citations,token_usage,created_at)
+select id,session_id,role,content,citations,token_usage,created_at
+from chat_messages_unpartitioned;
+
+drop table chat_messages_unpartitioned;
+
+create index if not exists idx_chat_messages_session_created on chat_messages(session_id, created_at);
+
+create table if not exists chat_session_archives (
+  session_id uuid primary key references chat_sessions(id),
+  message_count int not null,
+  payload bytea not null,
+  last_message_at timestamptz not null,
+  compacted_at timestamptz not null default now()
+);
+
+-- The payload is already gzipped; storing it uncompressed saves a pointless second pass.
+alter table chat_session_archives alter column payload set storage external;
+
+create index if not exists idx_chat_sessions_updated on chat_sessions(updated_at);
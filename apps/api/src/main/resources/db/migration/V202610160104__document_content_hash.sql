@@ -0,0 +1,8 @@
+-- SHA-256 of the uploaded bytes, so re-uploading a file the class already has can reuse the
+-- existing object and vectors. Rows from before this column stay null and dedupe by filename only.
+alter table documents
+  add column if not exists content_sha256 varchar(64);
+
+create index if not exists idx_documents_class_content_sha256
+  on documents(classroom_id, content_sha256)
+  where deleted_at is null and content_sha256 is not null;
@@ -0,0 +1,20 @@
+-- Document ingest is driven from job_runs: API nodes claim PENDING rows with SKIP LOCKED and hold a
+-- lease they keep renewing while the job runs. A RUNNING row whose lease has lapsed belonged to a
+-- node that died and is claimed again. A null lease means the AI service owns the job.
+alter table job_runs
+  add column if not exists lease_owner varchar(100),
+  add column if not exists lease_expires_at timestamptz;
+
+create index if not exists idx_job_runs_ingest_claim
+  on job_runs(created_at)
+  where job_type = 'DOCUMENT_INGEST' and status in ('PENDING', 'RUNNING');
+
+-- Ingests that were running in an in-memory executor before this release died with it.
+update job_runs j
+set lease_expires_at = now(), updated_at = now()
+from documents d
+where j.job_type = 'DOCUMENT_INGEST'
+  and j.status = 'RUNNING'
+  and d.id = j.business_id
+  and d.status in ('UPLOADING', 'PARSING', 'EMBEDDING')
+  and d.deleted_at is null;
@@ -0,0 +1,15 @@
+-- purged_at marks a soft-deleted document whose vectors and stored file are gone, so the startup
+-- sweep visits each deleted document until it succeeds and never again.
+alter table documents
+  add column if not exists purged_at timestamptz;
+
+create index if not exists idx_documents_purge_pending
+  on documents(id)
+  where deleted_at is not null and purged_at is null;
+
+-- Where an interrupted maintenance sweep left off, keyed by sweep name.
+create table if not exists maintenance_checkpoints (
+  name varchar(80) primary key,
+  position text not null,
+  updated_at timestamptz not null default now()
+);
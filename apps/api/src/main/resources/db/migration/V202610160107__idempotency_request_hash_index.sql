@@ -0,0 +1,4 @@
+-- Single-flight followers on other instances look up the leader's snapshot by request hash, since
+-- every POST carries its own Idempotency-Key.
+create index if not exists idx_idempotency_keys_scope_request_hash
+  on idempotency_keys(scope, request_hash, created_at desc);
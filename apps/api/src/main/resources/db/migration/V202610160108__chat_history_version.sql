@@ -0,0 +1,4 @@
+-- Bumped by every saved turn, so an API node can check with one primary-key read whether its cached
+-- history window for the session still matches the database.
+alter table chat_sessions
+  add column if not exists history_version bigint not null default 0;
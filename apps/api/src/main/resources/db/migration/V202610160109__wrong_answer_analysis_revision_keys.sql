@@ -0,0 +1,3 @@
+-- Content keys now also hash the question's stem, options, correct answer and knowledge points.
+-- Rows written under the old key can never be looked up again; they are recomputed on next view.
+delete from wrong_answer_analyses;
@@ -0,0 +1,11 @@
+-- An ingest that hit a transient AI failure goes back to PENDING and waits until next_attempt_at.
+-- A job handed to the AI service keeps a lease as its hand-off deadline; if the AI service never
+-- reports back (for example it restarted and lost the background embed), the job is claimed again.
+alter table job_runs
+  add column if not exists next_attempt_at timestamptz;
+
+update job_runs
+set lease_expires_at = now() + interval '30 minutes', updated_at = now()
+where job_type = 'DOCUMENT_INGEST'
+  and status = 'RUNNING'
+  and lease_expires_at is null;
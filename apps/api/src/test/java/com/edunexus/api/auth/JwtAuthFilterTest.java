@@ -0,0 +1,53 @@
+package com.edunexus.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+import com.edunexus.api.service.DbService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class JwtAuthFilterTest {
+
+    @Test
+    void prometheus_shouldAcceptOnlyTheScrapeToken() throws Exception {
+        JwtAuthFilter filter = filter("scrape-secret");
+
+        MockFilterChain scraped = scrape(filter, "Bearer scrape-secret");
+        MockFilterChain rejected = scrape(filter, "Bearer not-the-token");
+
+        assertNotNull(scraped.getRequest());
+        assertNull(rejected.getRequest());
+    }
+
+    @Test
+    void prometheus_shouldStayClosedWithoutAConfiguredToken() throws Exception {
+        JwtAuthFilter filter = filter("");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        request.addHeader("Authorization", "Bearer ");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(401, response.getStatus());
+    }
+
+    private static JwtAuthFilter filter(String scrapeToken) {
+        return new JwtAuthFilter(mock(JwtUtil.class), mock(DbService.class), scrapeToken);
+    }
+
+    private static MockFilterChain scrape(JwtAuthFilter filter, String authorization)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        request.addHeader("Authorization", authorization);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+}
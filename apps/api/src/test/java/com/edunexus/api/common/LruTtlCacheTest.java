@@ -0,0 +1,43 @@
+package com.edunexus.api.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LruTtlCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsedEntryWhenFull() {
+        LruTtlCache<String, String> cache =
+                new LruTtlCache<>(2, Duration.ofMinutes(1), clock::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void get_shouldDropEntriesOlderThanTtl() {
+        LruTtlCache<String, String> cache =
+                new LruTtlCache<>(10, Duration.ofSeconds(30), clock::get);
+        cache.put("a", "1");
+
+        clock.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertEquals("1", cache.get("a"));
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+}
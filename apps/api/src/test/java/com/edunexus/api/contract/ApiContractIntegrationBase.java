@@ -1,6 +1,7 @@
 package com.edunexus.api.contract;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
@@ -11,6 +12,7 @@ import com.edunexus.api.service.AiClient;
 import com.edunexus.api.service.ObjectStorageService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.sql.Connection;
@@ -21,6 +23,7 @@ import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -105,83 +108,74 @@ public abstract class ApiContractIntegrationBase {
 
     @BeforeEach
     void setupExternalStubs() {
-        when(objectStorageService.upload(anyString(), anyString(), any(byte[].class)))
+        when(objectStorageService.upload(anyString(), anyString(), any(), anyLong()))
                 .thenReturn("s3://test-bucket/doc.bin");
         when(objectStorageService.download(anyString())).thenReturn("demo-binary".getBytes());
+        when(objectStorageService.openStream(anyString()))
+                .thenAnswer(invocation -> new ByteArrayInputStream("demo-binary".getBytes()));
         doNothing().when(objectStorageService).delete(anyString());
 
         when(aiClient.chat(any()))
                 .thenReturn(
-                        Map.of(
-                                "answer",
+                        new AiClient.ChatResult(
                                 "这是一个基于课堂资料的回答。",
-                                "citations",
                                 List.of(
-                                        Map.of(
-                                                "documentId",
-                                                        "00000000-0000-0000-0000-000000000999",
-                                                "filename", "physics.pdf",
-                                                "chunkIndex", 1,
-                                                "content", "F=ma",
-                                                "score", 0.92)),
-                                "provider",
+                                        new AiClient.CitationView(
+                                                "00000000-0000-0000-0000-000000000999",
+                                                "physics.pdf",
+                                                1,
+                                                "F=ma",
+                                                0.92f)),
                                 "ollama",
-                                "model",
                                 "qwen3:8b",
-                                "tokenUsage",
-                                Map.of("prompt", 120, "completion", 80),
-                                "latencyMs",
-                                800));
+                                800,
+                                120,
+                                80));
 
         when(aiClient.generateQuestions(any()))
                 .thenReturn(
-                        Map.of(
-                                "questions",
+                        new AiClient.QuestionResult(
+                                "default",
                                 List.of(
-                                        Map.of(
-                                                "question_type", "SINGLE_CHOICE",
-                                                "content", "牛顿第二定律的公式是？",
-                                                "options",
-                                                        Map.of(
-                                                                "A", "F=ma", "B", "E=mc^2", "C",
-                                                                "p=mv", "D", "v=s/t"),
-                                                "correct_answer", "A",
-                                                "explanation", "由力学基本定义得出。",
-                                                "knowledge_points", List.of("牛顿第二定律")),
-                                        Map.of(
-                                                "question_type", "SINGLE_CHOICE",
-                                                "content", "单位牛顿对应哪种量？",
-                                                "options",
-                                                        Map.of(
-                                                                "A", "质量", "B", "力", "C", "速度", "D",
-                                                                "功"),
-                                                "correct_answer", "B",
-                                                "explanation", "牛顿是力的单位。",
-                                                "knowledge_points", List.of("力学单位"))),
-                                "routerDecision",
-                                "default"));
+                                        new AiClient.GeneratedQuestionView(
+                                                "SINGLE_CHOICE",
+                                                "牛顿第二定律的公式是？",
+                                                Map.of(
+                                                        "A", "F=ma", "B", "E=mc^2", "C", "p=mv",
+                                                        "D", "v=s/t"),
+                                                "A",
+                                                "由力学基本定义得出。",
+                                                List.of("牛顿第二定律")),
+                                        new AiClient.GeneratedQuestionView(
+                                                "SINGLE_CHOICE",
+                                                "单位牛顿对应哪种量？",
+                                                Map.of("A", "质量", "B", "力", "C", "速度", "D", "功"),
+                                                "B",
+                                                "牛顿是力的单位。",
+                                                List.of("力学单位")))));
 
         when(aiClient.generatePlan(any()))
                 .thenReturn(
-                        Map.of(
-                                "contentMd",
-                                        "# 教学目标\n- 掌握牛顿第二定律\n\n# 重难点\n- 力与加速度关系\n\n# 教学流程\n1. 导入\n2. 讲解\n\n# 作业与评估\n- 课堂练习",
-                                "provider", "ollama",
-                                "model", "deepseek-r1:8b",
-                                "latencyMs", 1200));
+                        new AiClient.LessonPlanResult(
+                                "# 教学目标\n- 掌握牛顿第二定律\n\n# 重难点\n- 力与加速度关系\n\n# 教学流程\n1. 导入\n2. 讲解\n\n# 作业与评估\n- 课堂练习",
+                                "ollama",
+                                "deepseek-r1:8b",
+                                1200));
 
-        when(aiClient.ingestKb(any()))
+        when(aiClient.ingestKb(any(), any()))
+                .thenReturn(new AiClient.IngestResult("ok", "job-doc-ingest-001", true, 4));
+        when(aiClient.ingestKbStream(any(), any(), anyLong()))
+                .thenReturn(new AiClient.IngestResult("ok", "job-doc-ingest-001", true, 4));
+        when(aiClient.deleteKb(any())).thenReturn(new AiClient.DeleteResult("ok"));
+        when(aiClient.precomputeWrongAsync(any()))
+                .thenReturn(
+                        CompletableFuture.completedFuture(
+                                new AiClient.AnalysisResult(
+                                        "别灰心", "牛顿第二定律", "混淆了合力与质量", "再练两道受力分析题", List.of())));
+        when(aiClient.deleteKbBatchAsync(any()))
                 .thenReturn(
-                        Map.of(
-                                "status",
-                                "ok",
-                                "jobId",
-                                "job-doc-ingest-001",
-                                "background",
-                                true,
-                                "chunks",
-                                4));
-        when(aiClient.deleteKb(any())).thenReturn(Map.of("status", "ok"));
+                        CompletableFuture.completedFuture(
+                                new AiClient.DeleteBatchResult(List.of())));
     }
 
     protected String loginAndGetAccessToken(String username, String password) throws Exception {
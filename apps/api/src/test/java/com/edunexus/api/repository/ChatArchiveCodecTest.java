@@ -0,0 +1,34 @@
+package com.edunexus.api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.edunexus.api.domain.ChatMessage;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ChatArchiveCodecTest {
+
+    @Test
+    void decodeArchive_shouldRestoreEncodedMessagesWithMicrosecondTimestamps() {
+        UUID sessionId = UUID.randomUUID();
+        Instant askedAt = Instant.parse("2026-03-01T08:00:00.123456Z");
+        List<ChatMessage> messages =
+                List.of(
+                        new ChatMessage(
+                                UUID.randomUUID(), sessionId, "USER", "什么是动量？", null, 0, askedAt),
+                        new ChatMessage(
+                                UUID.randomUUID(),
+                                sessionId,
+                                "ASSISTANT",
+                                "动量是质量与速度的乘积。",
+                                "[{\"documentId\":\"d1\",\"score\":0.9}]",
+                                42,
+                                askedAt.plusNanos(1_000)));
+
+        byte[] payload = ChatRepository.encodeArchive(messages);
+
+        assertEquals(messages, ChatRepository.decodeArchive(sessionId, payload));
+    }
+}
@@ -0,0 +1,122 @@
+package com.edunexus.api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.edunexus.api.contract.ApiContractIntegrationBase;
+import com.edunexus.api.domain.ChatMessage;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Compares the single-statement turn insert with the previous six-round-trip sequence. Opt-in:
+ * {@code mvn test -Dtest=ChatTurnPersistenceBenchmarkIT -Dedunexus.bench=true}.
+ */
+@EnabledIfSystemProperty(named = "edunexus.bench", matches = "true")
+class ChatTurnPersistenceBenchmarkIT extends ApiContractIntegrationBase {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2_000;
+    private static final String CITATIONS =
+            "[{\"documentId\":\"00000000-0000-0000-0000-000000000999\",\"score\":0.92}]";
+
+    @Autowired private ChatRepository chatRepo;
+
+    @Autowired private JdbcTemplate jdbc;
+
+    private final Instant startedAt = Instant.now();
+
+    @Test
+    void saveTurn_versusSequentialPath() {
+        UUID studentId =
+                jdbc.queryForObject(
+                        "select id from users where username='student01'", UUID.class);
+
+        for (int i = 0; i < WARMUP; i++) {
+            sequential(chatRepo.createSession(studentId));
+            single(chatRepo.createSession(studentId));
+        }
+        long sequentialNanos = 0;
+        long singleNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            UUID a = chatRepo.createSession(studentId);
+            UUID b = chatRepo.createSession(studentId);
+            long started = System.nanoTime();
+            sequential(a);
+            sequentialNanos += System.nanoTime() - started;
+            started = System.nanoTime();
+            single(b);
+            singleNanos += System.nanoTime() - started;
+        }
+        System.out.printf(
+                "chat turn persistence: sequential=%.1fus single=%.1fus (n=%d)%n",
+                sequentialNanos / 1_000.0 / ITERATIONS,
+                singleNanos / 1_000.0 / ITERATIONS,
+                ITERATIONS);
+
+        UUID sessionId = chatRepo.createSession(studentId);
+        ChatRepository.Turn turn = single(sessionId);
+        List<String> roles =
+                chatRepo.listMessages(sessionId).stream().map(ChatMessage::role).toList();
+        assertEquals(List.of("USER", "ASSISTANT"), roles);
+        assertTrue(turn.assistantMessage().createdAt().isAfter(turn.userMessage().createdAt()));
+        assertEquals("请解释牛顿第二定律", chatRepo.findSession(sessionId).title());
+    }
+
+    @AfterEach
+    void removeBenchmarkSessions() {
+        String benchmarkSessions =
+                "select s.id from chat_sessions s join users u on u.id=s.student_id"
+                        + " where u.username='student01' and s.created_at >= ?";
+        Timestamp since = Timestamp.from(startedAt);
+        jdbc.update(
+                "delete from chat_messages where session_id in (" + benchmarkSessions + ")", since);
+        jdbc.update("delete from chat_sessions where id in (" + benchmarkSessions + ")", since);
+    }
+
+    private ChatRepository.Turn single(UUID sessionId) {
+        return chatRepo.saveTurn(
+                sessionId, UUID.randomUUID(), "请解释牛顿第二定律", Instant.now(), "F=ma", CITATIONS, 0);
+    }
+
+    /** The pre-change sequence: two inserts, touch, title select + update, two reads. */
+    private void sequential(UUID sessionId) {
+        UUID userId = UUID.randomUUID();
+        UUID assistantId = UUID.randomUUID();
+        jdbc.update(
+                "insert into chat_messages(id,session_id,role,content,citations,token_usage) values (?,?,'USER',?,null,0)",
+                userId,
+                sessionId,
+                "请解释牛顿第二定律");
+        jdbc.update(
+                "insert into chat_messages(id,session_id,role,content,citations,token_usage) values (?,?,'ASSISTANT',?,?::jsonb,?)",
+                assistantId,
+                sessionId,
+                "F=ma",
+                CITATIONS,
+                0);
+        jdbc.update("update chat_sessions set updated_at=now() where id=?", sessionId);
+        String title =
+                jdbc.queryForObject(
+                        "select content from chat_messages where session_id=? and role='USER' order by created_at asc limit 1",
+                        String.class,
+                        sessionId);
+        jdbc.update(
+                "update chat_sessions set title=?,updated_at=now() where id=? and title='新建对话'",
+                title,
+                sessionId);
+        jdbc.queryForList(
+                "select id,session_id,role,content,citations,token_usage,created_at from chat_messages where id=?",
+                userId);
+        jdbc.queryForList(
+                "select id,session_id,role,content,citations,token_usage,created_at from chat_messages where id=?",
+                assistantId);
+    }
+}
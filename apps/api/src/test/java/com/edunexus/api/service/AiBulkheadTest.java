@@ -0,0 +1,121 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+class AiBulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AiBulkhead bulkhead(int initialLimit, int maxLimit, int queueSize) {
+        return new AiBulkhead(
+                "chat",
+                initialLimit,
+                maxLimit,
+                queueSize,
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(10),
+                meterRegistry);
+    }
+
+    @Test
+    void acquire_shouldRejectWithRateLimitedWhenQueueIsFull() {
+        AiBulkhead bulkhead = bulkhead(1, 1, 1);
+
+        CompletableFuture<AiBulkhead.Permit> running = bulkhead.acquire();
+        CompletableFuture<AiBulkhead.Permit> queued = bulkhead.acquire();
+        CompletableFuture<AiBulkhead.Permit> shed = bulkhead.acquire();
+
+        assertTrue(running.isDone());
+        assertFalse(queued.isDone());
+        ExecutionException error = assertThrows(ExecutionException.class, shed::get);
+        DependencyException cause = assertInstanceOf(DependencyException.class, error.getCause());
+        assertEquals(ErrorCode.AI_RATE_LIMITED, cause.errorCode());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("edunexus.ai.bulkhead.rejected")
+                        .tag("reason", "queue_full")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void release_shouldHandPermitToNextWaiter() {
+        AiBulkhead bulkhead = bulkhead(1, 1, 4);
+
+        AiBulkhead.Permit first = bulkhead.acquire().join();
+        CompletableFuture<AiBulkhead.Permit> waiter = bulkhead.acquire();
+        assertEquals(1, bulkhead.queued());
+
+        first.release(null);
+
+        assertTrue(waiter.isDone());
+        assertEquals(0, bulkhead.queued());
+        assertEquals(1, bulkhead.inFlight());
+    }
+
+    @Test
+    void release_shouldShrinkLimitOnOverloadAndGrowOnSuccess() {
+        AiBulkhead bulkhead = bulkhead(10, 20, 4);
+
+        bulkhead.acquire()
+                .join()
+                .release(new DependencyException(ErrorCode.AI_RATE_LIMITED, "exhausted"));
+        assertEquals(10 * AiBulkhead.BACKOFF_RATIO, bulkhead.limit(), 1e-9);
+
+        double shrunk = bulkhead.limit();
+        AiBulkhead.Permit[] permits = new AiBulkhead.Permit[5];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = bulkhead.acquire().join();
+        }
+        for (AiBulkhead.Permit permit : permits) {
+            permit.release(null);
+        }
+        assertTrue(bulkhead.limit() > shrunk);
+    }
+
+    @Test
+    void release_shouldBackOffStreamsOnResourceExhaustedOnly() {
+        AiBulkhead bulkhead =
+                new AiBulkhead(
+                        "chatStream", 10, 20, 4, Duration.ofSeconds(5), null, meterRegistry);
+
+        bulkhead.acquire()
+                .join()
+                .release(new DependencyException(ErrorCode.AI_TIMEOUT, "deadline"));
+        assertEquals(10.0, bulkhead.limit(), 1e-9);
+
+        bulkhead.acquire()
+                .join()
+                .release(new DependencyException(ErrorCode.AI_RATE_LIMITED, "exhausted"));
+        assertEquals(10 * AiBulkhead.BACKOFF_RATIO, bulkhead.limit(), 1e-9);
+    }
+
+    @Test
+    void submit_shouldNotAdjustLimitForUnrelatedFailures() {
+        AiBulkhead bulkhead = bulkhead(4, 8, 4);
+
+        CompletableFuture<Object> result =
+                bulkhead.submit(
+                        () ->
+                                CompletableFuture.failedFuture(
+                                        new DependencyException(
+                                                ErrorCode.AI_OUTPUT_INVALID, "bad json")));
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(4.0, bulkhead.limit(), 1e-9);
+        assertEquals(0, bulkhead.inFlight());
+    }
+}
@@ -0,0 +1,155 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class AiCircuitBreakerTest {
+
+    private static final DependencyException UNAVAILABLE =
+            new DependencyException(ErrorCode.AI_MODEL_UNAVAILABLE, "unavailable");
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private AiCircuitBreaker breaker() {
+        return new AiCircuitBreaker(
+                "chat",
+                new AiCircuitBreaker.Settings(10, 4, 50, 80, Duration.ofSeconds(30)),
+                Duration.ofSeconds(5),
+                new SimpleMeterRegistry(),
+                clock::get);
+    }
+
+    @Test
+    void acquire_shouldFailFastOnceFailureRateIsExceeded() {
+        AiCircuitBreaker breaker = breaker();
+
+        breaker.acquire().record(1_000L, null);
+        breaker.acquire().record(1_000L, null);
+        breaker.acquire().record(1_000L, UNAVAILABLE);
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.state());
+        breaker.acquire().record(1_000L, UNAVAILABLE);
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.state());
+        DependencyException error = assertThrows(DependencyException.class, breaker::acquire);
+        assertEquals(ErrorCode.AI_MODEL_UNAVAILABLE, error.errorCode());
+    }
+
+    @Test
+    void acquire_shouldNotTripOnLongStreamsWithoutSlowCallThreshold() {
+        AiCircuitBreaker breaker =
+                new AiCircuitBreaker(
+                        "chatStream",
+                        new AiCircuitBreaker.Settings(10, 4, 50, 80, Duration.ofSeconds(30)),
+                        null,
+                        new SimpleMeterRegistry(),
+                        clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            breaker.acquire().record(Duration.ofMinutes(2).toNanos(), null);
+        }
+
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void acquire_shouldIgnoreInvalidOutputFailures() {
+        AiCircuitBreaker breaker = breaker();
+        DependencyException invalidOutput =
+                new DependencyException(ErrorCode.AI_OUTPUT_INVALID, "bad json");
+
+        for (int i = 0; i < 4; i++) {
+            breaker.acquire().record(1_000L, invalidOutput);
+        }
+
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void acquire_shouldOpenOnSlowCallRate() {
+        AiCircuitBreaker breaker = breaker();
+        long slow = Duration.ofSeconds(6).toNanos();
+
+        for (int i = 0; i < 4; i++) {
+            breaker.acquire().record(slow, null);
+        }
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void halfOpen_shouldCloseAfterSuccessfulTrialCalls() {
+        AiCircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.acquire().record(1_000L, UNAVAILABLE);
+        }
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        AiCircuitBreaker.Permit[] trials = new AiCircuitBreaker.Permit[3];
+        for (int i = 0; i < trials.length; i++) {
+            trials[i] = breaker.acquire();
+        }
+        assertEquals(AiCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertThrows(DependencyException.class, breaker::acquire);
+
+        for (AiCircuitBreaker.Permit trial : trials) {
+            trial.record(1_000L, null);
+        }
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void halfOpen_shouldReopenOnTrialFailure() {
+        AiCircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.acquire().record(1_000L, UNAVAILABLE);
+        }
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        breaker.acquire().record(1_000L, UNAVAILABLE);
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void guard_shouldOpenBreakerWhenAsyncCallsFail() {
+        AiCircuitBreaker breaker = breaker();
+        AiClient.Guard guard =
+                new AiClient.Guard(
+                        breaker,
+                        new AiBulkhead(
+                                "chat",
+                                4,
+                                4,
+                                4,
+                                Duration.ofSeconds(5),
+                                Duration.ofSeconds(10),
+                                new SimpleMeterRegistry()),
+                        null);
+
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> rpc = new CompletableFuture<>();
+            CompletableFuture<String> result = guard.run(() -> rpc);
+            rpc.completeExceptionally(UNAVAILABLE);
+            assertTrue(result.isCompletedExceptionally());
+        }
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.state());
+        ExecutionException rejected =
+                assertThrows(
+                        ExecutionException.class,
+                        () -> guard.run(() -> CompletableFuture.completedFuture("ok")).get());
+        assertEquals(
+                ErrorCode.AI_MODEL_UNAVAILABLE,
+                ((DependencyException) rejected.getCause()).errorCode());
+    }
+}
@@ -0,0 +1,114 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ChatAnswerCacheTest {
+
+    private static final String QUESTION = "请详细解释一下牛顿第二定律的含义和公式推导过程";
+
+    private final UUID teacherId = UUID.randomUUID();
+    private final UUID classId = UUID.randomUUID();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatAnswerCache cache = new ChatAnswerCache(true, 5, 10, 10, 60, meterRegistry);
+
+    @Test
+    void find_shouldMatchQuestionsThatDifferOnlyInPunctuationCaseAndWhitespace() {
+        store("What is Newton's second law?", "F = ma");
+
+        ChatAnswerCache.CachedAnswer hit = find("  what is newtons SECOND law ");
+
+        assertNotNull(hit);
+        assertEquals("F = ma", hit.answer());
+        assertEquals(1.0, count("hit_exact"));
+    }
+
+    @Test
+    void find_shouldMatchNearDuplicateButNotDifferentQuestion() {
+        store(QUESTION, "F = ma");
+
+        assertEquals("F = ma", find(QUESTION + "吧").answer());
+        assertNull(find("请详细解释一下牛顿第一定律的含义和公式推导过程"));
+        assertEquals(1.0, count("hit_near"));
+        assertEquals(1.0, count("miss"));
+    }
+
+    @Test
+    void find_shouldNotServeAnswerToProblemWithDifferentNumbers() {
+        ChatAnswerCache loose = new ChatAnswerCache(true, 64, 10, 10, 60, meterRegistry);
+        String problem =
+                "A block of mass %s kg rests on a frictionless table and is pulled by a"
+                        + " horizontal force of 6 N. What is its acceleration?";
+        loose.put(
+                loose.generation(),
+                teacherId.toString(),
+                classId.toString(),
+                problem.formatted("1"),
+                "6 m/s^2",
+                List.of());
+
+        assertNull(find(loose, problem.formatted("3")));
+        assertNull(find(loose, problem.formatted("1.5")));
+        assertNull(find(loose, problem.formatted("15")));
+        loose.put(
+                loose.generation(),
+                teacherId.toString(),
+                classId.toString(),
+                "质量为三千克的物体受到六牛的水平拉力，求它的加速度",
+                "2 m/s^2",
+                List.of());
+        assertNull(find(loose, "质量为五千克的物体受到六牛的水平拉力，求它的加速度"));
+        assertEquals("6 m/s^2", find(loose, problem.formatted("1") + " Thanks!").answer());
+    }
+
+    @Test
+    void find_shouldKeepScopesApartAndNeverServeUnscopedChats() {
+        store(QUESTION, "F = ma");
+
+        assertNull(cache.find(teacherId.toString(), UUID.randomUUID().toString(), QUESTION));
+        assertNull(cache.find(null, null, QUESTION));
+    }
+
+    @Test
+    void invalidate_shouldDropAnswersAndRejectPutsGeneratedBeforeIt() {
+        long generation = cache.generation();
+        store(QUESTION, "F = ma");
+
+        cache.invalidate(teacherId, classId);
+        cache.put(generation, teacherId.toString(), classId.toString(), QUESTION, "stale", null);
+
+        assertNull(find(QUESTION));
+    }
+
+    private void store(String question, String answer) {
+        cache.put(
+                cache.generation(),
+                teacherId.toString(),
+                classId.toString(),
+                question,
+                answer,
+                List.of());
+    }
+
+    private ChatAnswerCache.CachedAnswer find(String question) {
+        return find(cache, question);
+    }
+
+    private ChatAnswerCache.CachedAnswer find(ChatAnswerCache target, String question) {
+        return target.find(teacherId.toString(), classId.toString(), question);
+    }
+
+    private double count(String result) {
+        return meterRegistry
+                .get("edunexus.chat.answer.cache")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,68 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.edunexus.api.repository.ChatRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChatArchiveServiceTest {
+
+    @Mock private ChatRepository chatRepo;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void compactIdleSessions_shouldContinuePastFailuresAndCountMovedMessages() {
+        UUID failing = UUID.randomUUID();
+        UUID raced = UUID.randomUUID();
+        UUID idle = UUID.randomUUID();
+        when(chatRepo.listCompactionCandidates(any(Instant.class), eq(200)))
+                .thenReturn(List.of(failing, raced, idle));
+        when(chatRepo.compactSession(eq(failing), any(Instant.class)))
+                .thenThrow(new IllegalStateException("boom"));
+        when(chatRepo.compactSession(eq(raced), any(Instant.class))).thenReturn(0);
+        when(chatRepo.compactSession(eq(idle), any(Instant.class))).thenReturn(6);
+
+        service(true).compactIdleSessions();
+
+        verify(chatRepo).compactSession(eq(idle), any(Instant.class));
+        assertEquals(1.0, meterRegistry.counter("edunexus.chat.archive.sessions").count());
+        assertEquals(6.0, meterRegistry.counter("edunexus.chat.archive.messages").count());
+    }
+
+    @Test
+    void compactIdleSessions_shouldDoNothingWhenDisabled() {
+        service(false).compactIdleSessions();
+
+        verifyNoInteractions(chatRepo);
+    }
+
+    @Test
+    void maintainPartitions_shouldCreateAheadAndSwallowFailures() {
+        when(chatRepo.ensureMessagePartitions(3)).thenReturn(1);
+        when(chatRepo.dropEmptyMessagePartitions(any(Instant.class)))
+                .thenThrow(new IllegalStateException("lock timeout"));
+
+        service(true).maintainPartitions();
+
+        verify(chatRepo).ensureMessagePartitions(anyInt());
+    }
+
+    private ChatArchiveService service(boolean enabled) {
+        return new ChatArchiveService(chatRepo, meterRegistry, enabled, 30, 200, 3);
+    }
+}
@@ -0,0 +1,109 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.edunexus.api.domain.ChatMessage;
+import com.edunexus.api.repository.ChatRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChatContextAssemblerTest {
+
+    private final UUID sessionId = UUID.randomUUID();
+    private final Instant base = Instant.parse("2026-10-16T08:00:00Z");
+
+    @Mock private ChatRepository chatRepo;
+
+    private ChatContextAssembler assembler(int windowSize, int tokenBudget) {
+        return new ChatContextAssembler(
+                new ChatHistoryCache(chatRepo, windowSize, 100, 10),
+                chatRepo,
+                new SimpleMeterRegistry(),
+                tokenBudget,
+                1200,
+                100,
+                10);
+    }
+
+    @Test
+    void estimateTokens_shouldCountCjkPerCharacterAndLatinPerFourCharacters() {
+        assertEquals(4, ChatContextAssembler.estimateTokens("牛顿定律"));
+        assertEquals(2, ChatContextAssembler.estimateTokens("F = ma"));
+        assertEquals(0, ChatContextAssembler.estimateTokens(null));
+    }
+
+    @Test
+    void assemble_shouldSendShortSessionVerbatimWithoutReadingSummary() {
+        when(chatRepo.listRecentHistory(sessionId, 10))
+                .thenReturn(List.of(message(0, "USER", "q1"), message(1, "ASSISTANT", "a1")));
+
+        List<AiClient.HistoryTurn> history = assembler(10, 1500).assemble(sessionId, "q2");
+
+        assertEquals(List.of("q1", "a1", "q2"), contents(history));
+        verify(chatRepo, never()).findContextSummary(any());
+    }
+
+    @Test
+    void assemble_shouldFoldTurnsOverBudgetIntoSummary() {
+        List<ChatMessage> window = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            window.add(message(i, i % 2 == 0 ? "USER" : "ASSISTANT", "第" + i + "条消息内容"));
+        }
+        when(chatRepo.listRecentHistory(sessionId, 10)).thenReturn(window);
+        when(chatRepo.findContextSummary(sessionId))
+                .thenReturn(new ChatRepository.ContextSummary(null, null));
+
+        // Each message costs 4 + 7 tokens and the question 4 + 2: room for two messages.
+        List<AiClient.HistoryTurn> history = assembler(10, 30).assemble(sessionId, "问题");
+
+        assertEquals(ChatContextAssembler.SUMMARY_ROLE, history.getFirst().role());
+        assertEquals("学生：第0条消息内容\n助手：第1条消息内容", history.getFirst().content());
+        assertEquals(
+                List.of("第2条消息内容", "第3条消息内容", "问题"),
+                contents(history.subList(1, history.size())));
+        verify(chatRepo)
+                .updateContextSummary(eq(sessionId), anyString(), eq(window.get(1).createdAt()));
+    }
+
+    @Test
+    void assemble_shouldNotFoldMessagesAlreadyInSummary() {
+        List<ChatMessage> window =
+                List.of(
+                        message(0, "USER", "第0条消息内容"),
+                        message(1, "ASSISTANT", "第1条消息内容"),
+                        message(2, "USER", "第2条消息内容"));
+        when(chatRepo.listRecentHistory(sessionId, 10)).thenReturn(window);
+        when(chatRepo.findContextSummary(sessionId))
+                .thenReturn(
+                        new ChatRepository.ContextSummary(
+                                "学生：第0条消息内容\n助手：第1条消息内容", window.get(1).createdAt()));
+
+        List<AiClient.HistoryTurn> history = assembler(10, 20).assemble(sessionId, "问题");
+
+        assertEquals("学生：第0条消息内容\n助手：第1条消息内容", history.getFirst().content());
+        verify(chatRepo, never()).updateContextSummary(any(), any(), any());
+    }
+
+    private List<String> contents(List<AiClient.HistoryTurn> turns) {
+        return turns.stream().map(AiClient.HistoryTurn::content).toList();
+    }
+
+    private ChatMessage message(int seq, String role, String content) {
+        return new ChatMessage(
+                UUID.randomUUID(), sessionId, role, content, null, 0, base.plusSeconds(seq));
+    }
+}
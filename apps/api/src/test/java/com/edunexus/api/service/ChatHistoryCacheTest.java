@@ -0,0 +1,126 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.edunexus.api.domain.ChatMessage;
+import com.edunexus.api.repository.ChatRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class ChatHistoryCacheTest {
+
+    private final UUID sessionId = UUID.randomUUID();
+
+    @Mock private ChatRepository chatRepo;
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void recent_shouldServeAppendedTurnsFromMemoryAndKeepLatestWindow() {
+        ChatHistoryCache cache = new ChatHistoryCache(chatRepo, 3, 100, 10);
+        when(chatRepo.findHistoryVersion(sessionId)).thenReturn(1L, 2L);
+        when(chatRepo.listRecentHistory(sessionId, 3))
+                .thenReturn(List.of(message("USER", "q1"), message("ASSISTANT", "a1")));
+
+        assertEquals(List.of("q1", "a1"), contents(cache.recent(sessionId)));
+        cache.append(turn("q2", "a2", 2));
+
+        assertEquals(List.of("a1", "q2", "a2"), contents(cache.recent(sessionId)));
+        verify(chatRepo, times(1)).listRecentHistory(sessionId, 3);
+    }
+
+    @Test
+    void recent_shouldReloadWhenATurnWasSavedThroughAnotherNode() {
+        ChatHistoryCache cache = new ChatHistoryCache(chatRepo, 3, 100, 10);
+        when(chatRepo.findHistoryVersion(sessionId)).thenReturn(1L, 2L, 3L);
+        when(chatRepo.listRecentHistory(sessionId, 3))
+                .thenReturn(List.of(message("USER", "q1"), message("ASSISTANT", "a1")))
+                .thenReturn(
+                        List.of(
+                                message("ASSISTANT", "a1"),
+                                message("USER", "q2"),
+                                message("ASSISTANT", "a2")));
+
+        cache.recent(sessionId);
+        // Version 2 was saved elsewhere, so this node's own turn 3 does not follow its window.
+        cache.append(turn("q3", "a3", 3));
+
+        assertEquals(List.of("a1", "q2", "a2"), contents(cache.recent(sessionId)));
+        verify(chatRepo, times(2)).listRecentHistory(sessionId, 3);
+    }
+
+    @Test
+    void append_shouldNotDuplicateATurnTheWindowLoadedAlready() {
+        ChatHistoryCache cache = new ChatHistoryCache(chatRepo, 4, 100, 10);
+        ChatRepository.Turn raced = turn("q1", "a1", 1);
+        when(chatRepo.findHistoryVersion(sessionId)).thenReturn(0L, 1L);
+        when(chatRepo.listRecentHistory(sessionId, 4))
+                .thenReturn(List.of(raced.userMessage(), raced.assistantMessage()));
+
+        cache.recent(sessionId);
+        cache.append(raced);
+
+        assertEquals(List.of("q1", "a1"), contents(cache.recent(sessionId)));
+        verify(chatRepo, times(1)).listRecentHistory(sessionId, 4);
+    }
+
+    @Test
+    void invalidate_shouldReloadFromDatabase() {
+        ChatHistoryCache cache = new ChatHistoryCache(chatRepo, 3, 100, 10);
+        when(chatRepo.findHistoryVersion(sessionId)).thenReturn(0L);
+        when(chatRepo.listRecentHistory(sessionId, 3)).thenReturn(List.of());
+
+        cache.recent(sessionId);
+        cache.invalidate(sessionId);
+        cache.recent(sessionId);
+
+        verify(chatRepo, times(2)).listRecentHistory(sessionId, 3);
+    }
+
+    @Test
+    void append_shouldWaitForTransactionCommit() {
+        ChatHistoryCache cache = new ChatHistoryCache(chatRepo, 3, 100, 10);
+        when(chatRepo.findHistoryVersion(sessionId)).thenReturn(0L, 0L, 1L);
+        when(chatRepo.listRecentHistory(sessionId, 3)).thenReturn(List.of());
+        cache.recent(sessionId);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.append(turn("q1", "a1", 1));
+        assertEquals(List.of(), cache.recent(sessionId));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(TransactionSynchronization::afterCommit);
+        assertEquals(List.of("q1", "a1"), contents(cache.recent(sessionId)));
+    }
+
+    private List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::content).toList();
+    }
+
+    private ChatRepository.Turn turn(String question, String answer, long historyVersion) {
+        return new ChatRepository.Turn(
+                message("USER", question), message("ASSISTANT", answer), historyVersion);
+    }
+
+    private ChatMessage message(String role, String content) {
+        return new ChatMessage(
+                UUID.randomUUID(), sessionId, role, content, null, 0, Instant.now());
+    }
+}
@@ -0,0 +1,119 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class ChatStreamReplayTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Runnable> writerTasks = new ArrayList<>();
+
+    @Test
+    void attach_shouldReplayFramesAfterLastEventIdAndFollowNewOnes() {
+        ChatStreamReplay replay = replay(10, 5);
+        replay.publish("a");
+        replay.publish("b");
+        replay.publish("c");
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertEquals(ChatStreamReplay.AttachResult.ATTACHED, replay.attach(emitter, 1));
+        replay.publish("d");
+
+        assertEquals(List.of("id:2", "id:3", "id:4"), emitter.ids);
+    }
+
+    @Test
+    void attach_shouldReportGapWhenFramesWereEvicted() {
+        ChatStreamReplay replay = replay(2, 1);
+        replay.publish("a");
+        replay.publish("b");
+        replay.publish("c");
+
+        assertEquals(
+                ChatStreamReplay.AttachResult.GAP, replay.attach(new RecordingEmitter(), 0));
+        assertEquals(
+                ChatStreamReplay.AttachResult.ATTACHED, replay.attach(new RecordingEmitter(), 1));
+    }
+
+    @Test
+    void publish_shouldKeepBufferingAfterSubscriberWriteFails() {
+        ChatStreamReplay replay = replay(10, 5);
+        RecordingEmitter broken = new RecordingEmitter();
+        broken.failing = true;
+        replay.attach(broken, 0);
+        replay.publish("a");
+        replay.publish("b");
+        replay.complete();
+
+        RecordingEmitter resumed = new RecordingEmitter();
+        replay.attach(resumed, 0);
+
+        assertEquals(List.of("id:1", "id:2"), resumed.ids);
+        assertTrue(broken.ids.isEmpty());
+    }
+
+    @Test
+    void publish_shouldNotWaitForTheClientAndCancelOnceTooFarBehind() {
+        ChatStreamReplay replay =
+                new ChatStreamReplay(
+                        10,
+                        2,
+                        writerTasks::add,
+                        meterRegistry.summary("queue.depth"),
+                        meterRegistry.counter("slow.cancelled"));
+        AtomicInteger cancels = new AtomicInteger();
+        replay.onOverrun(cancels::incrementAndGet);
+        RecordingEmitter emitter = new RecordingEmitter();
+        replay.attach(emitter, 0);
+
+        replay.publish("a");
+        replay.publish("b");
+        assertEquals(2, replay.backlog());
+        assertFalse(replay.overrun());
+
+        replay.publish("c");
+        replay.publish("d");
+        assertTrue(replay.overrun());
+        assertEquals(1, cancels.get());
+        assertEquals(1.0, meterRegistry.counter("slow.cancelled").count());
+        assertTrue(emitter.ids.isEmpty());
+
+        writerTasks.removeFirst().run();
+
+        assertEquals(List.of("id:1", "id:2", "id:3", "id:4"), emitter.ids);
+        assertEquals(0, replay.backlog());
+        assertTrue(writerTasks.isEmpty());
+    }
+
+    private ChatStreamReplay replay(int maxFrames, int maxBacklog) {
+        return new ChatStreamReplay(
+                maxFrames,
+                maxBacklog,
+                Runnable::run,
+                meterRegistry.summary("queue.depth"),
+                meterRegistry.counter("slow.cancelled"));
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> ids = new ArrayList<>();
+        private boolean failing;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("broken pipe");
+            }
+            String head = builder.build().iterator().next().getData().toString();
+            ids.add(head.substring(0, head.indexOf('\n')));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
+import com.edunexus.api.repository.JobRunRepository;
+import com.edunexus.api.repository.JobRunRepository.ClaimedJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentIngestWorkerTest {
+
+    @Mock private JobRunRepository jobRepo;
+
+    @Mock private KnowledgeService knowledgeService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void poll_shouldClaimUpToParallelismAndClearLeaseAfterEachJob() {
+        ClaimedJob first = job(1);
+        ClaimedJob second = job(1);
+        when(jobRepo.claimIngestJobs(anyString(), eq(2), any(Duration.class)))
+                .thenReturn(List.of(first, second));
+
+        worker(Runnable::run, 2).poll();
+
+        verify(knowledgeService).processIngestJob(first);
+        verify(knowledgeService).processIngestJob(second);
+        verify(jobRepo).clearLease(eq(first.id()), anyString(), any(Duration.class));
+        verify(jobRepo).clearLease(eq(second.id()), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void poll_shouldAbandonJobsThatExhaustedTheirAttempts() {
+        ClaimedJob reclaimed = job(4);
+        when(jobRepo.claimIngestJobs(anyString(), anyInt(), any(Duration.class)))
+                .thenReturn(List.of(reclaimed));
+
+        worker(Runnable::run, 2).poll();
+
+        verify(knowledgeService).abandonIngestJob(reclaimed);
+        verify(knowledgeService, never()).processIngestJob(any());
+        assertEquals(1.0, meterRegistry.counter("edunexus.document.ingest.reclaimed").count());
+    }
+
+    @Test
+    void poll_shouldReturnJobToQueueWhenExecutorRejectsIt() {
+        ClaimedJob job = job(1);
+        when(jobRepo.claimIngestJobs(anyString(), anyInt(), any(Duration.class)))
+                .thenReturn(List.of(job));
+        TaskExecutor rejecting =
+                task -> {
+                    throw new TaskRejectedException("full");
+                };
+
+        worker(rejecting, 1).poll();
+
+        verify(jobRepo).releaseClaim(eq(job.id()), anyString());
+        verifyNoInteractions(knowledgeService);
+    }
+
+    @Test
+    void poll_shouldNotClaimWhileAllSlotsAreBusy() {
+        ClaimedJob job = job(1);
+        when(jobRepo.claimIngestJobs(anyString(), eq(1), any(Duration.class)))
+                .thenReturn(List.of(job));
+        List<Runnable> parked = new ArrayList<>();
+        DocumentIngestWorker worker = worker(parked::add, 1);
+
+        worker.poll();
+        worker.poll();
+
+        verify(jobRepo).claimIngestJobs(anyString(), eq(1), any(Duration.class));
+        assertEquals(1, parked.size());
+    }
+
+    @Test
+    void heartbeat_shouldRenewOnlyJobsStillRunningHere() {
+        ClaimedJob running = job(1);
+        ClaimedJob failing = job(1);
+        when(jobRepo.claimIngestJobs(anyString(), anyInt(), any(Duration.class)))
+                .thenReturn(List.of(running, failing));
+        doThrow(new IllegalStateException("parse failed"))
+                .when(knowledgeService)
+                .processIngestJob(failing);
+        List<Runnable> parked = new ArrayList<>();
+        DocumentIngestWorker worker = worker(parked::add, 2);
+
+        worker.poll();
+        parked.get(1).run();
+        worker.heartbeat();
+
+        verify(jobRepo).renewIngestLeases(anyString(), eq(List.of(running.id())), any());
+        verify(jobRepo, never()).clearLease(eq(failing.id()), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void poll_shouldRequeueTransientAiFailuresWithBackoff() {
+        ClaimedJob job = job(2);
+        when(jobRepo.claimIngestJobs(anyString(), anyInt(), any(Duration.class)))
+                .thenReturn(List.of(job));
+        doThrow(new DependencyException(ErrorCode.AI_MODEL_UNAVAILABLE, "熔断"))
+                .when(knowledgeService)
+                .processIngestJob(job);
+
+        worker(Runnable::run, 1).poll();
+
+        verify(jobRepo)
+                .retryLater(eq(job.id()), anyString(), eq(Duration.ofSeconds(60)), eq("熔断"));
+        verify(knowledgeService, never()).failIngestJob(any(), anyString());
+    }
+
+    @Test
+    void poll_shouldFailJobOnceTransientRetriesAreExhausted() {
+        ClaimedJob job = job(3);
+        when(jobRepo.claimIngestJobs(anyString(), anyInt(), any(Duration.class)))
+                .thenReturn(List.of(job));
+        doThrow(new DependencyException(ErrorCode.AI_RATE_LIMITED, "繁忙"))
+                .when(knowledgeService)
+                .processIngestJob(job);
+
+        worker(Runnable::run, 1).poll();
+
+        verify(knowledgeService).failIngestJob(job, "繁忙");
+        verify(jobRepo, never()).retryLater(any(), anyString(), any(), anyString());
+    }
+
+    private DocumentIngestWorker worker(TaskExecutor executor, int parallelism) {
+        return new DocumentIngestWorker(
+                jobRepo,
+                knowledgeService,
+                executor,
+                meterRegistry,
+                true,
+                parallelism,
+                3,
+                120,
+                30,
+                1800);
+    }
+
+    private static ClaimedJob job(int attempt) {
+        UUID jobId = UUID.randomUUID();
+        UUID documentId = UUID.randomUUID();
+        return new ClaimedJob(
+                jobId, documentId, attempt, "trace-" + jobId, "kb-ingest-" + documentId);
+    }
+}
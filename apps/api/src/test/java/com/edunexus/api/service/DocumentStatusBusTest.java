@@ -0,0 +1,61 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class DocumentStatusBusTest {
+
+    private final List<Runnable> parkedWrites = new ArrayList<>();
+
+    @Test
+    void publish_shouldDropOnlyTheStreamThatStoppedReading() {
+        DocumentStatusBus bus = bus(2);
+        UUID slowTeacher = UUID.randomUUID();
+        bus.subscribe(slowTeacher);
+        bus.subscribe(UUID.randomUUID());
+
+        bus.publish(event(slowTeacher, "PARSING"));
+        assertEquals(2, bus.streams());
+
+        bus.publish(event(slowTeacher, "EMBEDDING"));
+        assertEquals(1, bus.streams());
+    }
+
+    @Test
+    void publish_shouldQueueOneWriterPerStream() {
+        DocumentStatusBus bus = bus(64);
+        UUID teacherId = UUID.randomUUID();
+        bus.subscribe(teacherId);
+        bus.subscribe(teacherId);
+
+        bus.publish(event(teacherId, "PARSING"));
+        bus.publish(event(teacherId, "READY"));
+
+        assertEquals(2, parkedWrites.size());
+        parkedWrites.forEach(Runnable::run);
+        assertEquals(2, bus.streams());
+    }
+
+    private DocumentStatusBus bus(int maxPending) {
+        return new DocumentStatusBus(
+                null,
+                null,
+                new ObjectMapper(),
+                parkedWrites::add,
+                new SimpleMeterRegistry(),
+                false,
+                60_000L,
+                maxPending);
+    }
+
+    private static DocumentStatusBus.DocumentStatusEvent event(UUID teacherId, String status) {
+        return new DocumentStatusBus.DocumentStatusEvent(
+                UUID.randomUUID(), teacherId, UUID.randomUUID(), status, null);
+    }
+}
@@ -1,24 +1,37 @@
 package com.edunexus.api.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import com.edunexus.api.common.DependencyException;
+import com.edunexus.api.common.ErrorCode;
 import com.edunexus.api.domain.Document;
 import com.edunexus.api.repository.ClassroomRepository;
 import com.edunexus.api.repository.DocumentRepository;
+import com.edunexus.api.repository.JobRunRepository;
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.task.TaskExecutor;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +47,10 @@ class KnowledgeServiceTest {
 
     @Mock private GovernanceService governanceService;
 
+    @Mock private ChatAnswerCache answerCache;
+
+    @Mock private DocumentStatusBus statusBus;
+
     private final TaskExecutor directExecutor = Runnable::run;
 
     @Test
@@ -48,21 +65,26 @@ class KnowledgeServiceTest {
                         objectStorageService,
                         aiClient,
                         governanceService,
+                        answerCache,
+                        statusBus,
                         true,
+                        50,
+                        4,
+                        200,
                         directExecutor);
 
         when(documentRepo.findReadyDuplicatesForDocument(currentDocumentId))
                 .thenReturn(List.of(duplicate));
-        when(aiClient.deleteKb(org.mockito.ArgumentMatchers.any()))
-                .thenReturn(Map.of("status", "ok"));
+        when(aiClient.deleteKbBatchAsync(any())).thenReturn(deleted(duplicateId));
 
         service.cleanupSupersededReadyDocuments(currentDocumentId, "trace-cleanup");
 
-        ArgumentCaptor<Map<String, Object>> deletePayload = ArgumentCaptor.forClass(Map.class);
-        verify(aiClient).deleteKb(deletePayload.capture());
-        assertEquals(duplicateId.toString(), deletePayload.getValue().get("documentId"));
-        assertEquals("trace-cleanup", deletePayload.getValue().get("traceId"));
-        assertEquals("kb-delete-" + duplicateId, deletePayload.getValue().get("idempotencyKey"));
+        ArgumentCaptor<AiClient.DeleteBatchCall> deletePayload =
+                ArgumentCaptor.forClass(AiClient.DeleteBatchCall.class);
+        verify(aiClient).deleteKbBatchAsync(deletePayload.capture());
+        assertEquals(List.of(duplicateId.toString()), deletePayload.getValue().documentIds());
+        assertEquals("trace-cleanup", deletePayload.getValue().traceId());
+        assertTrue(deletePayload.getValue().idempotencyKey().startsWith("kb-delete-batch-"));
         verify(objectStorageService).delete("s3://bucket/old-readme.md");
         verify(documentRepo).softDelete(duplicateId);
     }
@@ -79,13 +101,19 @@ class KnowledgeServiceTest {
                         objectStorageService,
                         aiClient,
                         governanceService,
+                        answerCache,
+                        statusBus,
                         true,
+                        50,
+                        4,
+                        200,
                         directExecutor);
 
         when(documentRepo.findReadyDuplicatesForDocument(currentDocumentId))
                 .thenReturn(List.of(duplicate));
-        when(aiClient.deleteKb(org.mockito.ArgumentMatchers.any()))
-                .thenThrow(new RuntimeException("qdrant unavailable"));
+        when(aiClient.deleteKbBatchAsync(any()))
+                .thenReturn(
+                        CompletableFuture.failedFuture(new RuntimeException("qdrant unavailable")));
 
         service.cleanupSupersededReadyDocuments(currentDocumentId, "trace-cleanup");
 
@@ -104,21 +132,25 @@ class KnowledgeServiceTest {
                         objectStorageService,
                         aiClient,
                         governanceService,
+                        answerCache,
+                        statusBus,
                         true,
+                        50,
+                        4,
+                        200,
                         directExecutor);
 
         when(documentRepo.listSupersededReadyDocuments()).thenReturn(List.of(duplicate));
-        when(aiClient.deleteKb(org.mockito.ArgumentMatchers.any()))
-                .thenReturn(Map.of("status", "ok"));
+        when(aiClient.deleteKbBatchAsync(any())).thenReturn(deleted(duplicateId));
 
         service.cleanupDuplicateReadyDocumentsOnStartup();
 
-        ArgumentCaptor<Map<String, Object>> deletePayload = ArgumentCaptor.forClass(Map.class);
-        verify(aiClient).deleteKb(deletePayload.capture());
-        assertEquals(duplicateId.toString(), deletePayload.getValue().get("documentId"));
+        ArgumentCaptor<AiClient.DeleteBatchCall> deletePayload =
+                ArgumentCaptor.forClass(AiClient.DeleteBatchCall.class);
+        verify(aiClient).deleteKbBatchAsync(deletePayload.capture());
+        assertEquals(List.of(duplicateId.toString()), deletePayload.getValue().documentIds());
         assertTrue(
-                String.valueOf(deletePayload.getValue().get("traceId"))
-                        .startsWith("startup-document-dedupe-"));
+                deletePayload.getValue().traceId().startsWith("startup-document-dedupe-"));
         verify(documentRepo).softDelete(duplicateId);
     }
 
@@ -133,20 +165,230 @@ class KnowledgeServiceTest {
                         objectStorageService,
                         aiClient,
                         governanceService,
+                        answerCache,
+                        statusBus,
+                        true,
+                        50,
+                        4,
+                        200,
+                        directExecutor);
+
+        when(documentRepo.listSupersededReadyDocuments()).thenReturn(List.of());
+        when(documentRepo.listUnpurgedDeletedDocuments(any(), anyInt()))
+                .thenReturn(List.of(deleted));
+        when(aiClient.deleteKbBatchAsync(any())).thenReturn(deleted(deletedId));
+        when(objectStorageService.deleteAll(List.of("s3://bucket/deleted-readme.md")))
+                .thenReturn(Set.of());
+
+        service.cleanupDuplicateReadyDocumentsOnStartup();
+
+        ArgumentCaptor<AiClient.DeleteBatchCall> deletePayload =
+                ArgumentCaptor.forClass(AiClient.DeleteBatchCall.class);
+        verify(aiClient).deleteKbBatchAsync(deletePayload.capture());
+        assertEquals(List.of(deletedId.toString()), deletePayload.getValue().documentIds());
+        verify(documentRepo).markPurged(List.of(deletedId));
+        verify(documentRepo).savePurgeCheckpoint(null);
+    }
+
+    @Test
+    void cleanupDuplicateReadyDocumentsOnStartup_shouldResumePurgeFromCheckpointPageByPage() {
+        UUID checkpoint = UUID.randomUUID();
+        Document first = document(UUID.randomUUID(), "a.md", "s3://bucket/a.md");
+        Document second = document(UUID.randomUUID(), "b.md", "s3://bucket/b.md");
+        Document third = document(UUID.randomUUID(), "c.md", "s3://bucket/c.md");
+        KnowledgeService service =
+                new KnowledgeService(
+                        documentRepo,
+                        classroomRepo,
+                        objectStorageService,
+                        aiClient,
+                        governanceService,
+                        answerCache,
+                        statusBus,
                         true,
+                        50,
+                        4,
+                        2,
                         directExecutor);
 
         when(documentRepo.listSupersededReadyDocuments()).thenReturn(List.of());
-        when(documentRepo.listSoftDeletedDocuments()).thenReturn(List.of(deleted));
-        when(aiClient.deleteKb(org.mockito.ArgumentMatchers.any()))
-                .thenReturn(Map.of("status", "ok"));
+        when(documentRepo.purgeCheckpoint()).thenReturn(checkpoint);
+        when(documentRepo.listUnpurgedDeletedDocuments(checkpoint, 2))
+                .thenReturn(List.of(first, second));
+        when(documentRepo.listUnpurgedDeletedDocuments(second.id(), 2))
+                .thenReturn(List.of(third));
+        when(aiClient.deleteKbBatchAsync(any()))
+                .thenReturn(deleted(first.id(), second.id()))
+                .thenReturn(deleted(third.id()));
+        when(objectStorageService.deleteAll(any())).thenReturn(Set.of("s3://bucket/b.md"));
 
         service.cleanupDuplicateReadyDocumentsOnStartup();
 
-        ArgumentCaptor<Map<String, Object>> deletePayload = ArgumentCaptor.forClass(Map.class);
-        verify(aiClient).deleteKb(deletePayload.capture());
-        assertEquals(deletedId.toString(), deletePayload.getValue().get("documentId"));
-        verify(objectStorageService).delete("s3://bucket/deleted-readme.md");
+        verify(documentRepo).markPurged(List.of(first.id()));
+        verify(documentRepo).markPurged(List.of(third.id()));
+        verify(documentRepo).savePurgeCheckpoint(second.id());
+        verify(documentRepo).savePurgeCheckpoint(null);
+    }
+
+    @Test
+    void cleanupSupersededReadyDocuments_shouldBatchIdsAndSkipPerIdFailures() {
+        UUID currentDocumentId = UUID.randomUUID();
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        UUID thirdId = UUID.randomUUID();
+        KnowledgeService service =
+                new KnowledgeService(
+                        documentRepo,
+                        classroomRepo,
+                        objectStorageService,
+                        aiClient,
+                        governanceService,
+                        answerCache,
+                        statusBus,
+                        true,
+                        2,
+                        2,
+                        200,
+                        directExecutor);
+
+        when(documentRepo.findReadyDuplicatesForDocument(currentDocumentId))
+                .thenReturn(
+                        List.of(
+                                document(firstId, "a.md", "s3://bucket/a.md"),
+                                document(secondId, "b.md", "s3://bucket/b.md"),
+                                document(thirdId, "c.md", "s3://bucket/c.md")));
+        when(aiClient.deleteKbBatchAsync(any()))
+                .thenReturn(
+                        CompletableFuture.completedFuture(
+                                new AiClient.DeleteBatchResult(
+                                        List.of(
+                                                new AiClient.DeleteBatchItem(
+                                                        firstId.toString(), "ok", ""),
+                                                new AiClient.DeleteBatchItem(
+                                                        secondId.toString(),
+                                                        "failed",
+                                                        "qdrant timeout")))))
+                .thenReturn(deleted(thirdId));
+
+        service.cleanupSupersededReadyDocuments(currentDocumentId, "trace-cleanup");
+
+        ArgumentCaptor<AiClient.DeleteBatchCall> deletePayload =
+                ArgumentCaptor.forClass(AiClient.DeleteBatchCall.class);
+        verify(aiClient, times(2)).deleteKbBatchAsync(deletePayload.capture());
+        assertEquals(
+                List.of(firstId.toString(), secondId.toString()),
+                deletePayload.getAllValues().get(0).documentIds());
+        assertEquals(
+                List.of(thirdId.toString()), deletePayload.getAllValues().get(1).documentIds());
+        verify(documentRepo).softDelete(firstId);
+        verify(documentRepo, never()).softDelete(secondId);
+        verify(documentRepo).softDelete(thirdId);
+        verify(objectStorageService, never()).delete("s3://bucket/b.md");
+    }
+
+    @Test
+    void uploadDocument_shouldReuseReadyDocumentWithSameContent() {
+        UUID teacherId = UUID.randomUUID();
+        UUID classId = UUID.randomUUID();
+        UUID existingId = UUID.randomUUID();
+        Document existing = document(existingId, "第一章.pdf", "s3://bucket/chapter-1.pdf");
+        KnowledgeService service =
+                new KnowledgeService(
+                        documentRepo,
+                        classroomRepo,
+                        objectStorageService,
+                        aiClient,
+                        governanceService,
+                        answerCache,
+                        statusBus,
+                        true,
+                        50,
+                        4,
+                        200,
+                        directExecutor);
+
+        when(documentRepo.findReadyByContentHash(teacherId, classId, "abc123"))
+                .thenReturn(existing);
+
+        KnowledgeService.UploadResult result =
+                service.uploadDocument(
+                        teacherId,
+                        classId,
+                        "chapter-1-copy.pdf",
+                        "application/pdf",
+                        1024,
+                        new ByteArrayResource(new byte[1024]),
+                        "abc123",
+                        "trace-upload",
+                        null);
+
+        assertEquals(existingId, result.documentId());
+        assertEquals("READY", result.document().status());
+        verify(objectStorageService, never()).upload(anyString(), anyString(), any(), anyLong());
+        verify(governanceService, never()).createJobRun(anyString(), any(), any());
+        verifyNoInteractions(aiClient);
+    }
+
+    @Test
+    void processIngestJob_shouldLeaveTransientAiFailuresToTheWorker() {
+        Document doc = document(UUID.randomUUID(), "notes.md", "s3://bucket/notes.md");
+        JobRunRepository.ClaimedJob job =
+                new JobRunRepository.ClaimedJob(
+                        UUID.randomUUID(), doc.id(), 1, "trace-ingest", "kb-ingest-" + doc.id());
+        when(documentRepo.findById(doc.id())).thenReturn(doc);
+        when(objectStorageService.openStream(doc.storagePath()))
+                .thenReturn(new ByteArrayInputStream(new byte[] {1}));
+        when(aiClient.ingestKbStream(any(), any(), anyLong()))
+                .thenThrow(new DependencyException(ErrorCode.AI_MODEL_UNAVAILABLE, "熔断"));
+
+        assertThrows(DependencyException.class, () -> service().processIngestJob(job));
+
+        verify(documentRepo, never()).updateStatus(doc.id(), "FAILED", "熔断");
+        verify(governanceService, never()).markJobDeadLetter(any(), anyString());
+    }
+
+    @Test
+    void constructor_shouldRejectDeleteBatchLargerThanAiServiceAccepts() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new KnowledgeService(
+                                documentRepo,
+                                classroomRepo,
+                                objectStorageService,
+                                aiClient,
+                                governanceService,
+                                answerCache,
+                                statusBus,
+                                true,
+                                AiClient.MAX_DELETE_BATCH + 1,
+                                4,
+                                200,
+                                directExecutor));
+    }
+
+    private KnowledgeService service() {
+        return new KnowledgeService(
+                documentRepo,
+                classroomRepo,
+                objectStorageService,
+                aiClient,
+                governanceService,
+                answerCache,
+                statusBus,
+                true,
+                50,
+                4,
+                200,
+                directExecutor);
+    }
+
+    private static CompletableFuture<AiClient.DeleteBatchResult> deleted(UUID... documentIds) {
+        return CompletableFuture.completedFuture(
+                new AiClient.DeleteBatchResult(
+                        Arrays.stream(documentIds)
+                                .map(id -> new AiClient.DeleteBatchItem(id.toString(), "ok", ""))
+                                .toList()));
     }
 
     private Document document(UUID id, String filename, String storagePath) {
@@ -0,0 +1,118 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+@ExtendWith(MockitoExtension.class)
+class ObjectStorageServiceTest {
+
+    private static final int PART_BYTES = 5 * 1024 * 1024;
+
+    @Mock private S3Client s3;
+
+    @Test
+    void upload_shouldPutContentThatFitsInOnePartInASingleRequest() {
+        ObjectStorageService storage = new ObjectStorageService(s3, "kb", 5);
+
+        String path =
+                storage.upload(
+                        "notes.md", "text/markdown", new ByteArrayResource(new byte[10]), 10);
+
+        assertTrue(path.startsWith("s3://kb/documents/"));
+        verify(s3).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_shouldSendLargeContentAsBoundedParts() {
+        int size = 2 * PART_BYTES + 3;
+        when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+        ObjectStorageService storage = new ObjectStorageService(s3, "kb", 5);
+
+        storage.upload("book.pdf", "application/pdf", new ByteArrayResource(new byte[size]), size);
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3, times(3)).uploadPart(parts.capture(), any(RequestBody.class));
+        assertEquals(
+                List.of((long) PART_BYTES, (long) PART_BYTES, 3L),
+                parts.getAllValues().stream().map(UploadPartRequest::contentLength).toList());
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3).completeMultipartUpload(complete.capture());
+        assertEquals(3, complete.getValue().multipartUpload().parts().size());
+    }
+
+    @Test
+    void upload_shouldAbortMultipartUploadWhenAPartFails() {
+        int size = PART_BYTES + 1;
+        when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(new IllegalStateException("connection reset"));
+        ObjectStorageService storage = new ObjectStorageService(s3, "kb", 5);
+
+        assertThrows(
+                IllegalStateException.class,
+                () ->
+                        storage.upload(
+                                "book.pdf",
+                                "application/pdf",
+                                new ByteArrayResource(new byte[size]),
+                                size));
+
+        verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void deleteAll_shouldBatchKeysPerBucketAndReportFailedPaths() {
+        when(s3.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(
+                        DeleteObjectsResponse.builder()
+                                .errors(S3Error.builder().key("documents/b.md").build())
+                                .build());
+        ObjectStorageService storage = new ObjectStorageService(s3, "kb", 5);
+
+        Set<String> failed =
+                storage.deleteAll(
+                        List.of(
+                                "s3://kb/documents/a.md",
+                                "s3://kb/documents/b.md",
+                                "not-an-s3-path"));
+
+        assertEquals(Set.of("s3://kb/documents/b.md", "not-an-s3-path"), failed);
+        ArgumentCaptor<DeleteObjectsRequest> request =
+                ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3).deleteObjects(request.capture());
+        assertEquals(2, request.getValue().delete().objects().size());
+    }
+}
@@ -0,0 +1,182 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class SingleFlightRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlightRegistry registry =
+            new SingleFlightRegistry(mock(DbService.class), false, meterRegistry);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void execute_shouldShareLeaderResultWithConcurrentCaller() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Object plan = new Object();
+
+        CompletableFuture<Object> leader =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                registry.execute(
+                                        "teacher.plan.generate",
+                                        "hash-1",
+                                        () -> {
+                                            calls.incrementAndGet();
+                                            leaderStarted.countDown();
+                                            await(releaseLeader);
+                                            return plan;
+                                        }));
+        leaderStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Object> follower =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                registry.execute(
+                                        "teacher.plan.generate",
+                                        "hash-1",
+                                        () -> {
+                                            calls.incrementAndGet();
+                                            return new Object();
+                                        }));
+        while (coalesced() < 1.0) {
+            Thread.onSpinWait();
+        }
+        releaseLeader.countDown();
+
+        assertSame(plan, leader.get(5, TimeUnit.SECONDS));
+        assertSame(plan, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(0, registry.inFlightCount());
+    }
+
+    @Test
+    void execute_shouldNotCoalesceDifferentRequestHashes() {
+        Object first = registry.execute("teacher.plan.generate", "hash-1", Object::new);
+        Object second = registry.execute("teacher.plan.generate", "hash-2", Object::new);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void execute_shouldReleaseKeyWhenLeaderFails() {
+        assertThrows(
+                IllegalStateException.class,
+                () ->
+                        registry.execute(
+                                "student.aiq.generate",
+                                "hash-1",
+                                () -> {
+                                    throw new IllegalStateException("boom");
+                                }));
+
+        assertEquals(0, registry.inFlightCount());
+        assertEquals("ok", registry.execute("student.aiq.generate", "hash-1", () -> "ok"));
+    }
+
+    @Test
+    void execute_shouldHoldResultUntilLeaderTransactionCompletes() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        registry.execute("student.aiq.generate", "hash-1", () -> "generated");
+
+        assertEquals(1, registry.inFlightCount());
+        List<TransactionSynchronization> synchronizations =
+                TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(
+                sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertEquals(0, registry.inFlightCount());
+    }
+
+    @Test
+    void execute_shouldReuseSnapshotCommittedByLeaderOnAnotherInstance() {
+        DbService db = mock(DbService.class);
+        when(db.one(startsWith("select pg_try_advisory_xact_lock"), any()))
+                .thenReturn(Map.of("locked", false));
+        SingleFlightRegistry cluster = new SingleFlightRegistry(db, true, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            Object data =
+                    cluster.execute(
+                            "teacher.plan.generate",
+                            "hash-1",
+                            () -> {
+                                calls.incrementAndGet();
+                                return "generated";
+                            },
+                            () -> "leader-snapshot");
+
+            assertEquals("leader-snapshot", data);
+            assertEquals(0, calls.get());
+            verify(db).one(startsWith("select pg_advisory_xact_lock"), any());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void execute_shouldRunWorkWithoutReplayWhenItTakesTheClusterLockFirst() {
+        DbService db = mock(DbService.class);
+        when(db.one(startsWith("select pg_try_advisory_xact_lock"), any()))
+                .thenReturn(Map.of("locked", true));
+        SingleFlightRegistry cluster = new SingleFlightRegistry(db, true, meterRegistry);
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            Object data =
+                    cluster.execute(
+                            "teacher.plan.generate",
+                            "hash-1",
+                            () -> "generated",
+                            () -> {
+                                throw new AssertionError("leader must not replay");
+                            });
+
+            assertEquals("generated", data);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    private double coalesced() {
+        var counter = meterRegistry.find("edunexus.singleflight.coalesced").counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
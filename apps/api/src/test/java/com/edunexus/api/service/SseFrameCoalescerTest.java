@@ -0,0 +1,137 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+class SseFrameCoalescerTest {
+
+    private final CapturingSink sink = new CapturingSink();
+    private final ManualScheduler scheduler = new ManualScheduler();
+
+    private SseFrameCoalescer coalescer(int maxBytes) {
+        return new SseFrameCoalescer(
+                sink,
+                new ObjectMapper(),
+                scheduler,
+                Runnable::run,
+                Duration.ofMillis(40),
+                maxBytes);
+    }
+
+    @Test
+    void delta_shouldBatchTextUntilTimerFires() {
+        SseFrameCoalescer frames = coalescer(512);
+
+        frames.delta("牛顿");
+        frames.delta("第二定律");
+        assertTrue(sink.frames.isEmpty());
+
+        scheduler.fire();
+
+        assertEquals(List.of("{\"delta\":\"牛顿第二定律\"}"), sink.frames);
+    }
+
+    @Test
+    void delta_shouldFlushAsSoonAsByteThresholdIsReached() {
+        SseFrameCoalescer frames = coalescer(8);
+
+        frames.delta("abcd");
+        frames.delta("ef\"h");
+
+        assertEquals(List.of("{\"delta\":\"abcdef\\\"h\"}"), sink.frames);
+    }
+
+    @Test
+    void citations_shouldBeSentOnceAfterPendingText() {
+        SseFrameCoalescer frames = coalescer(512);
+        List<Map<String, String>> citations = List.of(Map.of("filename", "physics.md"));
+
+        frames.delta("a");
+        frames.citations(citations);
+        frames.citations(citations);
+        frames.delta("b");
+        frames.send("[DONE]");
+
+        assertEquals(
+                List.of(
+                        "{\"delta\":\"a\"}",
+                        "{\"delta\":\"\",\"citations\":[{\"filename\":\"physics.md\"}]}",
+                        "{\"delta\":\"b\"}",
+                        "[DONE]"),
+                sink.frames);
+    }
+
+    @Test
+    void delta_shouldFailFastAfterAWriteFails() {
+        SseFrameCoalescer frames = coalescer(1);
+        sink.failing = true;
+
+        assertThrows(RuntimeException.class, () -> frames.delta("a"));
+        sink.failing = false;
+        assertThrows(RuntimeException.class, () -> frames.delta("b"));
+        assertTrue(sink.frames.isEmpty());
+    }
+
+    @Test
+    void delta_shouldMergeTextWhileTheReaderIsBehind() {
+        SseFrameCoalescer frames = coalescer(4);
+        sink.backlog = 1;
+
+        frames.delta("abcd");
+        frames.delta("efgh");
+        scheduler.fire();
+        assertTrue(sink.frames.isEmpty());
+
+        sink.backlog = 0;
+        scheduler.fire();
+
+        assertEquals(List.of("{\"delta\":\"abcdefgh\"}"), sink.frames);
+    }
+
+    private static final class CapturingSink implements SseFrameCoalescer.FrameSink {
+        private final List<Object> frames = new ArrayList<>();
+        private boolean failing;
+        private int backlog;
+
+        @Override
+        public int backlog() {
+            return backlog;
+        }
+
+        @Override
+        public void send(Object payload) throws IOException {
+            if (failing) {
+                throw new IOException("client gone");
+            }
+            frames.add(payload);
+        }
+    }
+
+    private static final class ManualScheduler extends ThreadPoolTaskScheduler {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, Instant startTime) {
+            tasks.add(task);
+            return null;
+        }
+
+        void fire() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            due.forEach(Runnable::run);
+        }
+    }
+}
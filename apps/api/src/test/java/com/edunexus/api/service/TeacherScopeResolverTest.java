@@ -0,0 +1,98 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.edunexus.api.domain.TeacherBinding;
+import com.edunexus.api.repository.TeacherStudentRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TeacherScopeResolverTest {
+
+    private final UUID studentId = UUID.randomUUID();
+    private final UUID teacherId = UUID.randomUUID();
+    private final AtomicReference<Instant> now =
+            new AtomicReference<>(Instant.parse("2026-10-16T08:00:00Z"));
+
+    @Mock private TeacherStudentRepository teacherStudentRepo;
+
+    private TeacherScopeResolver resolver() {
+        return new TeacherScopeResolver(
+                teacherStudentRepo,
+                100,
+                Duration.ofMinutes(10),
+                Duration.ofSeconds(15),
+                now::get);
+    }
+
+    @Test
+    void scopeFor_shouldServeRepeatedLookupsFromCache() {
+        when(teacherStudentRepo.bindingVersion()).thenReturn(1L);
+        when(teacherStudentRepo.listActiveBindings(studentId))
+                .thenReturn(List.of(new TeacherBinding(teacherId, null, null)));
+        TeacherScopeResolver resolver = resolver();
+
+        assertEquals(teacherId, resolver.scopeFor(studentId).teacherId());
+        assertEquals(teacherId, resolver.scopeFor(studentId).teacherId());
+
+        verify(teacherStudentRepo, times(1)).listActiveBindings(studentId);
+    }
+
+    @Test
+    void scopeFor_shouldReloadAfterBindingVersionChanges() {
+        when(teacherStudentRepo.bindingVersion()).thenReturn(1L, 2L);
+        when(teacherStudentRepo.listActiveBindings(studentId))
+                .thenReturn(List.of(new TeacherBinding(teacherId, null, null)))
+                .thenReturn(List.of());
+        TeacherScopeResolver resolver = resolver();
+
+        assertEquals(teacherId, resolver.scopeFor(studentId).teacherId());
+        resolver.pollVersion();
+
+        assertNull(resolver.scopeFor(studentId));
+    }
+
+    @Test
+    void scopeFor_shouldReloadOnceRevocationTimePasses() {
+        Instant revokedAt = now.get().plusSeconds(60);
+        when(teacherStudentRepo.bindingVersion()).thenReturn(1L);
+        when(teacherStudentRepo.listActiveBindings(studentId))
+                .thenReturn(List.of(new TeacherBinding(teacherId, null, revokedAt)))
+                .thenReturn(List.of());
+        TeacherScopeResolver resolver = resolver();
+
+        assertEquals(teacherId, resolver.scopeFor(studentId).teacherId());
+        now.set(revokedAt);
+
+        assertNull(resolver.scopeFor(studentId));
+    }
+
+    @Test
+    void scopeFor_shouldBypassCacheWhileVersionPollingFails() {
+        when(teacherStudentRepo.bindingVersion())
+                .thenReturn(1L)
+                .thenThrow(new IllegalStateException("connection refused"));
+        when(teacherStudentRepo.listActiveBindings(studentId))
+                .thenReturn(List.of(new TeacherBinding(teacherId, null, null)))
+                .thenReturn(List.of());
+        TeacherScopeResolver resolver = resolver();
+        assertEquals(teacherId, resolver.scopeFor(studentId).teacherId());
+
+        now.set(now.get().plusSeconds(16));
+        resolver.pollVersion();
+
+        assertNull(resolver.scopeFor(studentId));
+    }
+}
@@ -0,0 +1,76 @@
+package com.edunexus.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.edunexus.api.domain.Question;
+import com.edunexus.api.repository.WrongAnswerAnalysisRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class WrongAnswerAnalysisServiceTest {
+
+    private final WrongAnswerAnalysisRepository analysisRepo =
+            mock(WrongAnswerAnalysisRepository.class);
+    private final AiClient aiClient = mock(AiClient.class);
+    private final WrongAnswerAnalysisService service =
+            new WrongAnswerAnalysisService(
+                    analysisRepo, aiClient, new ObjectMapper(), Runnable::run, true, 100, 30);
+
+    @Test
+    void precompute_shouldUseTheBatchLane() {
+        when(analysisRepo.findByKeys(anyCollection())).thenReturn(List.of());
+        when(aiClient.precomputeWrongAsync(any()))
+                .thenReturn(
+                        CompletableFuture.completedFuture(
+                                new AiClient.AnalysisResult("别灰心", "受力分析", "漏了摩擦力", "再练一题", List.of())));
+
+        service.precomputeAfterCommit(
+                List.of(new WrongAnswerAnalysisService.WrongAnswer(question("F=ma", "A"), "B")));
+
+        verify(aiClient).precomputeWrongAsync(any());
+        verify(aiClient, never()).analyzeWrongAsync(any());
+        verify(analysisRepo).insert(any(), anyString());
+    }
+
+    @Test
+    void contentKey_shouldChangeWhenTheQuestionIsEdited() {
+        String original = WrongAnswerAnalysisService.contentKey(question("F=ma", "A"), "b");
+
+        assertEquals(original, WrongAnswerAnalysisService.contentKey(question("F=ma", "A"), "B"));
+        assertNotEquals(
+                original, WrongAnswerAnalysisService.contentKey(question("F=ma", "B"), "B"));
+        assertNotEquals(
+                original, WrongAnswerAnalysisService.contentKey(question("F=mg", "A"), "B"));
+    }
+
+    static Question question(String content, String correctAnswer) {
+        return new Question(
+                UUID.fromString("7f4a1c2e-0000-4000-8000-000000000001"),
+                "物理",
+                "SINGLE_CHOICE",
+                "EASY",
+                content,
+                "{\"A\":\"正确\",\"B\":\"错误\"}",
+                correctAnswer,
+                null,
+                "[\"牛顿第二定律\"]",
+                5,
+                "MANUAL",
+                null,
+                null,
+                true,
+                Instant.parse("2026-10-01T00:00:00Z"));
+    }
+}
@@ -1,4 +1,10 @@
-import { apiClient, unwrapResponse } from "../../../services/api-client";
+import {
+  API_BASE_URL,
+  ApiClientError,
+  apiClient,
+  authorizedFetch,
+  unwrapResponse
+} from "../../../services/api-client";
 import {
   type ApiEnvelope,
   type BulkSuggestionRequest,
@@ -48,6 +54,60 @@ export async function listKnowledgeDocuments(status?: DocumentStatus): Promise<D
   return unwrapResponse(response) || [];
 }
 
+export interface DocumentStatusEvent {
+  documentId: string;
+  classId: string;
+  status: DocumentStatus;
+  errorMessage?: string | null;
+}
+
+export type DocumentStreamEvent = { type: "ready" } | ({ type: "status" } & DocumentStatusEvent);
+
+/**
+ * Reads the teacher's document status stream until `signal` aborts or the server ends it.
+ * A `ready` event arrives first on every connection; reload the list when it does.
+ * Fails with the response status when the session cannot be refreshed (401/403).
+ */
+export async function streamKnowledgeDocumentStatus(
+  onEvent: (event: DocumentStreamEvent) => void,
+  signal: AbortSignal
+): Promise<void> {
+  const response = await authorizedFetch(`${API_BASE_URL}/teacher/knowledge/documents/events`, {
+    headers: { Accept: "text/event-stream" },
+    signal
+  });
+  if (!response.ok || !response.body) {
+    throw new ApiClientError("订阅文档状态失败", { status: response.status });
+  }
+
+  const reader = response.body.getReader();
+  const decoder = new TextDecoder("utf-8");
+  let buffer = "";
+  while (true) {
+    const { value, done } = await reader.read();
+    if (done) {
+      return;
+    }
+    buffer += decoder.decode(value, { stream: true }).replace(/\r/g, "");
+    let boundary = buffer.indexOf("\n\n");
+    while (boundary >= 0) {
+      const lines = buffer.slice(0, boundary).split("\n");
+      buffer = buffer.slice(boundary + 2);
+      const name = lines.find((line) => line.startsWith("event:"))?.slice(6).trim();
+      const data = lines
+        .filter((line) => line.startsWith("data:"))
+        .map((line) => line.slice(5).trimStart())
+        .join("\n");
+      if (name === "ready") {
+        onEvent({ type: "ready" });
+      } else if (name === "status" && data) {
+        onEvent({ type: "status", ...(JSON.parse(data) as DocumentStatusEvent) });
+      }
+      boundary = buffer.indexOf("\n\n");
+    }
+  }
+}
+
 export async function listTeacherClassrooms(): Promise<TeacherClassroomVO[]> {
   const response = await apiClient.get<ApiEnvelope<TeacherClassroomVO[]>>("/teacher/classrooms");
   return unwrapResponse(response) || [];
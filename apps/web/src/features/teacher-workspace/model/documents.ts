@@ -1,6 +1,7 @@
 import { defineStore } from "pinia";
 import { toErrorMessage } from "../../../services/error-message";
 import {
+  type DocumentStatusEvent,
   deleteKnowledgeDocument,
   listKnowledgeDocuments,
   uploadKnowledgeDocument
@@ -41,6 +42,17 @@ export const useDocumentStore = defineStore("teacher-documents", {
       }
     },
 
+    /** Updates a listed document in place; returns false when it is not in the list. */
+    applyStatus(event: DocumentStatusEvent): boolean {
+      const document = this.documents.find((row) => row.id === event.documentId);
+      if (!document) {
+        return false;
+      }
+      document.status = event.status;
+      document.errorMessage = event.errorMessage ?? null;
+      return true;
+    },
+
     async uploadDocument(file: File, classId: string): Promise<void> {
       this.operationLoading = true;
       this.operationError = "";
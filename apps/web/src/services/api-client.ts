@@ -159,6 +159,31 @@ async function refreshAccessToken(): Promise<RefreshData | null> {
   return refreshPromise;
 }
 
+/**
+ * `fetch` for responses axios cannot stream (SSE). Like {@link apiClient}, a 401 refreshes the
+ * session once and retries; if the refresh fails the 401 response is returned to the caller.
+ */
+export async function authorizedFetch(url: string, init: RequestInit = {}): Promise<Response> {
+  const send = (token: string) => {
+    const headers = new Headers(init.headers);
+    if (token) {
+      headers.set("Authorization", `Bearer ${token}`);
+    }
+    return fetch(url, { ...init, headers });
+  };
+
+  const response = await send(readAccessToken());
+  if (response.status !== 401) {
+    return response;
+  }
+  const refreshed = await refreshAccessToken();
+  if (!refreshed?.accessToken) {
+    return response;
+  }
+  void response.body?.cancel();
+  return send(refreshed.accessToken);
+}
+
 apiClient.interceptors.request.use((config) => {
   const requestConfig = config as InternalAxiosRequestConfig & RequestMetrics;
   requestConfig.__startedAt = Date.now();
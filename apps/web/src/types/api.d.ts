@@ -158,6 +158,28 @@ export interface paths {
     patch?: never;
     trace?: never;
   };
+  "/student/chat/session/{sessionId}/message/{messageId}/stream": {
+    parameters: {
+      query?: never;
+      header?: never;
+      path?: never;
+      cookie?: never;
+    };
+    /**
+     * 断线后续接流式回复
+     * @description SSE 流式回复的每一帧都带有递增的 `id`，首帧 `data` 中的 `messageId` 用于续接。
+     *     连接断开不会中止生成；客户端携带 `Last-Event-ID` 重连即可收到其后的所有帧，
+     *     回复结束后在短时间内仍可续接。
+     */
+    get: operations["resumeChatMessageStream"];
+    put?: never;
+    post?: never;
+    delete?: never;
+    options?: never;
+    head?: never;
+    patch?: never;
+    trace?: never;
+  };
   "/student/exercise/questions": {
     parameters: {
       query?: never;
@@ -363,6 +385,23 @@ export interface paths {
     patch?: never;
     trace?: never;
   };
+  "/teacher/knowledge/documents/events": {
+    parameters: {
+      query?: never;
+      header?: never;
+      path?: never;
+      cookie?: never;
+    };
+    /** 订阅文档处理状态变化 */
+    get: operations["streamKnowledgeDocumentStatus"];
+    put?: never;
+    post?: never;
+    delete?: never;
+    options?: never;
+    head?: never;
+    patch?: never;
+    trace?: never;
+  };
   "/teacher/classrooms": {
     parameters: {
       query?: never;
@@ -890,10 +929,20 @@ export interface components {
       correctAnswer?: string;
       isCorrect?: boolean;
       analysis?: string | null;
+      /** @description 后台预生成的 AI 错因解析；答对或尚未生成时为 null */
+      aiAnalysis?: components["schemas"]["WrongAnswerAnalysisVO"] | null;
       knowledgePoints?: string[] | null;
       /** @description 教师建议（若存在） */
       teacherSuggestion?: string | null;
     };
+    /** @description AI 错因解析（同一题目的相同错误答案共享） */
+    WrongAnswerAnalysisVO: {
+      encourage?: string;
+      concept?: string;
+      rootCause?: string;
+      nextPractice?: string;
+      steps?: string[];
+    };
     /** @description 错题本条目 */
     WrongBookEntryVO: {
       /** Format: uuid */
@@ -1580,6 +1629,42 @@ export interface operations {
       403: components["responses"]["Forbidden"];
     };
   };
+  resumeChatMessageStream: {
+    parameters: {
+      query?: never;
+      header?: {
+        "Last-Event-ID"?: string;
+      };
+      path: {
+        sessionId: components["parameters"]["SessionId"];
+        messageId: string;
+      };
+      cookie?: never;
+    };
+    requestBody?: never;
+    responses: {
+      /** @description SSE 流（text/event-stream），从 Last-Event-ID 之后的帧开始 */
+      200: {
+        headers: {
+          [name: string]: unknown;
+        };
+        content: {
+          "text/event-stream": string;
+        };
+      };
+      403: components["responses"]["Forbidden"];
+      404: components["responses"]["NotFound"];
+      /** @description 缓冲区已不包含断点之后的内容，需重新发送消息 */
+      409: {
+        headers: {
+          [name: string]: unknown;
+        };
+        content: {
+          "application/json": components["schemas"]["ApiResponse"];
+        };
+      };
+    };
+  };
   listExerciseQuestions: {
     parameters: {
       query?: {
@@ -1900,6 +1985,27 @@ export interface operations {
       };
     };
   };
+  streamKnowledgeDocumentStatus: {
+    parameters: {
+      query?: never;
+      header?: never;
+      path?: never;
+      cookie?: never;
+    };
+    requestBody?: never;
+    responses: {
+      /** @description SSE 流（text/event-stream） */
+      200: {
+        headers: {
+          [name: string]: unknown;
+        };
+        content: {
+          "text/event-stream": string;
+        };
+      };
+      403: components["responses"]["Forbidden"];
+    };
+  };
   listTeacherClassrooms: {
     parameters: {
       query?: never;